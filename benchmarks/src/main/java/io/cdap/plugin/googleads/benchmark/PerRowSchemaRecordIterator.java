@@ -0,0 +1,107 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.googleads.benchmark;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.googleads.common.ReportValueParser;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Record conversion as the single-report source did it before {@code ReportRowMapper}: the schema of every cell
+ * is looked up by field name and inspected for every row. Kept as the baseline of the streaming benchmarks.
+ */
+public class PerRowSchemaRecordIterator implements Iterator<StructuredRecord>, Closeable {
+
+  private final CSVParser csvParser;
+  private final Iterator<CSVRecord> csvRecordIterator;
+  private final Schema schema;
+  private final List<String> reportFields;
+  private final ReportValueParser valueParser = new ReportValueParser();
+
+  public PerRowSchemaRecordIterator(Reader reader, Schema schema, List<String> reportFields) throws IOException {
+    this.csvParser = new CSVParser(reader, CSVFormat.DEFAULT);
+    this.csvRecordIterator = csvParser.iterator();
+    this.schema = schema;
+    this.reportFields = reportFields;
+  }
+
+  @Override
+  public boolean hasNext() {
+    return csvRecordIterator.hasNext();
+  }
+
+  @Override
+  public StructuredRecord next() {
+    CSVRecord csvRecord = csvRecordIterator.next();
+    Iterator<String> reportFieldsIterator = reportFields.iterator();
+    Iterator<String> csvValuesIterator = csvRecord.iterator();
+    StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+    while (reportFieldsIterator.hasNext() && csvValuesIterator.hasNext()) {
+      setValue(builder, reportFieldsIterator.next(), csvValuesIterator.next());
+    }
+    return builder.build();
+  }
+
+  private void setValue(StructuredRecord.Builder builder, String name, String value) {
+    Schema fieldSchema = schema.getField(name).getSchema();
+    if (fieldSchema.isNullable()) {
+      fieldSchema = fieldSchema.getNonNullable();
+    }
+    if (fieldSchema.getLogicalType() == Schema.LogicalType.DECIMAL) {
+      if (valueParser.parseLong(value)) {
+        builder.setDecimal(name, BigDecimal.valueOf(valueParser.getLongValue(), fieldSchema.getScale()));
+      }
+      return;
+    }
+    if (fieldSchema.getLogicalType() == Schema.LogicalType.DATE) {
+      if (valueParser.parseDate(value)) {
+        builder.setDate(name, LocalDate.of(valueParser.getYear(), valueParser.getMonth(), valueParser.getDay()));
+      }
+      return;
+    }
+    switch (fieldSchema.getType()) {
+      case LONG:
+        if (valueParser.parseLong(value)) {
+          builder.set(name, valueParser.getLongValue());
+        }
+        break;
+      case DOUBLE:
+        if (valueParser.parseDouble(value)) {
+          builder.set(name, valueParser.getDoubleValue());
+        }
+        break;
+      default:
+        builder.set(name, value);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    csvParser.close();
+  }
+}
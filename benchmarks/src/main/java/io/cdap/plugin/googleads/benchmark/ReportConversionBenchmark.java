@@ -0,0 +1,207 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.googleads.benchmark;
+
+import com.google.api.ads.adwords.lib.jaxb.v201809.DownloadFormat;
+import com.google.common.io.CharStreams;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.doubleclick.source.reporting.common.ReportTransformer;
+import io.cdap.plugin.googleads.common.GoogleAdsHelper;
+import io.cdap.plugin.googleads.common.ReportPresetHelper;
+import io.cdap.plugin.googleads.common.ReportRecordIterator;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Measures the conversion of CSV reports to {@link StructuredRecord}s:
+ * <ul>
+ *   <li>{@link #listMaterializing} reads the report into a string and collects all records into a list,
+ *   as {@code GoogleAdsHelper.buildReportStructure} does</li>
+ *   <li>{@link #streaming} and {@link #streamingTyped} convert records while reading the report, as the
+ *   single-report record reader does, with string and typed schemas</li>
+ *   <li>{@link #streamingPerRowSchema} and {@link #streamingTypedPerRowSchema} are the same with the per-row
+ *   schema lookups the record reader did before it compiled a row mapper per split</li>
+ *   <li>{@link #doubleClickTransform} is {@code ReportTransformer.transformReportFromCsv}</li>
+ * </ul>
+ * Reports are read from a CSV file or, with the GZIPPED_CSV download format, inflated from a gzipped file while
+ * they are converted. The "rows" secondary result is the row throughput. Run with {@code -prof gc} for allocation
+ * rates and GC counts.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class ReportConversionBenchmark {
+
+  @Param({
+    "Account Performance Report: Customer table",
+    "Adgroup Performance Report: AdGroup table",
+    "Ad Performance Report: Ad table"
+  })
+  public String preset;
+
+  // 10000000 rows may be added with -p rows=...; the list materializing variants need a large heap for them
+  @Param({"100000", "1000000"})
+  public int rows;
+
+  @Param({"CSV", "GZIPPED_CSV"})
+  public String downloadFormat;
+
+  private Path reportFile;
+  private List<String> fields;
+  private Schema stringSchema;
+  private Schema typedSchema;
+
+  /**
+   * Counts converted rows, so that JMH reports rows per second next to reports per second.
+   */
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  @State(Scope.Thread)
+  public static class RowCounter {
+    public long rows;
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    fields = new ReportPresetHelper().getReportPreset(preset).getFields();
+    stringSchema = SyntheticReport.getSchema(fields, false);
+    typedSchema = SyntheticReport.getSchema(fields, true);
+    reportFile = Files.createTempFile("google-ads-benchmark-", ".csv");
+    SyntheticReport.write(reportFile, fields, rows, 42);
+    if (getDownloadFormat() == DownloadFormat.GZIPPED_CSV) {
+      Path csvFile = reportFile;
+      reportFile = Files.createTempFile("google-ads-benchmark-", ".csv.gz");
+      try (OutputStream outputStream = new GZIPOutputStream(Files.newOutputStream(reportFile))) {
+        Files.copy(csvFile, outputStream);
+      }
+      Files.delete(csvFile);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(reportFile);
+  }
+
+  @Benchmark
+  public List<StructuredRecord> listMaterializing(RowCounter counter) throws IOException {
+    String report;
+    try (Reader reader = openReport()) {
+      report = CharStreams.toString(reader);
+    }
+    List<StructuredRecord> records = new ArrayList<>();
+    try (ReportRecordIterator iterator = new ReportRecordIterator(new StringReader(report), stringSchema, fields)) {
+      iterator.forEachRemaining(records::add);
+    }
+    counter.rows += records.size();
+    return records;
+  }
+
+  @Benchmark
+  public void streaming(RowCounter counter, Blackhole blackhole) throws IOException {
+    stream(stringSchema, counter, blackhole);
+  }
+
+  @Benchmark
+  public void streamingTyped(RowCounter counter, Blackhole blackhole) throws IOException {
+    stream(typedSchema, counter, blackhole);
+  }
+
+  @Benchmark
+  public void streamingPerRowSchema(RowCounter counter, Blackhole blackhole) throws IOException {
+    streamPerRowSchema(stringSchema, counter, blackhole);
+  }
+
+  @Benchmark
+  public void streamingTypedPerRowSchema(RowCounter counter, Blackhole blackhole) throws IOException {
+    streamPerRowSchema(typedSchema, counter, blackhole);
+  }
+
+  @Benchmark
+  public List<StructuredRecord> doubleClickTransform(RowCounter counter) throws IOException {
+    InputStream fileStream = Files.newInputStream(reportFile);
+    try (InputStream inputStream = getDownloadFormat() == DownloadFormat.GZIPPED_CSV
+      ? new GZIPInputStream(fileStream)
+      : fileStream) {
+      List<StructuredRecord> records = ReportTransformer.transformReportFromCsv(inputStream, stringSchema);
+      counter.rows += records.size();
+      return records;
+    }
+  }
+
+  private void stream(Schema schema, RowCounter counter, Blackhole blackhole) throws IOException {
+    try (Reader reader = openReport();
+         ReportRecordIterator iterator = new ReportRecordIterator(reader, schema, fields)) {
+      while (iterator.hasNext()) {
+        blackhole.consume(iterator.next());
+        counter.rows++;
+      }
+    }
+  }
+
+  private void streamPerRowSchema(Schema schema, RowCounter counter, Blackhole blackhole) throws IOException {
+    try (Reader reader = openReport();
+         PerRowSchemaRecordIterator iterator = new PerRowSchemaRecordIterator(reader, schema, fields)) {
+      while (iterator.hasNext()) {
+        blackhole.consume(iterator.next());
+        counter.rows++;
+      }
+    }
+  }
+
+  /**
+   * Opens the report as the single-report source opens a download, inflating gzipped reports while they are read.
+   */
+  private Reader openReport() throws IOException {
+    return new BufferedReader(GoogleAdsHelper.openReportReader(Files.newInputStream(reportFile),
+                                                               getDownloadFormat()));
+  }
+
+  private DownloadFormat getDownloadFormat() {
+    return DownloadFormat.valueOf(downloadFormat);
+  }
+}
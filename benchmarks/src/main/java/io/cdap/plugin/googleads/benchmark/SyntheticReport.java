@@ -0,0 +1,177 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.googleads.benchmark;
+
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.googleads.common.ReportSchemaBuilder;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates synthetic CSV reports which resemble Google Ads report downloads. Field types are derived from
+ * field names, since the actual types are only available from ReportDefinitionService. Values include the
+ * formats the API produces, such as micros, percentages, "--" placeholders and quoted values with commas.
+ */
+public class SyntheticReport {
+
+  private static final String[] DAYS_OF_WEEK = {
+    "Monday", "Tuesday", "Wednesday", "Thursday", "Friday", "Saturday", "Sunday"
+  };
+  private static final String[] DEVICES = {"Computers", "Mobile devices with full browsers", "Tablets", "Other"};
+
+  /**
+   * Kind of generated value, mapped to a report field type.
+   */
+  enum FieldKind {
+    DATE("Date"),
+    LONG("Long"),
+    MONEY("Money"),
+    PERCENT("Double"),
+    DOUBLE("Double"),
+    STRING("String");
+
+    private final String fieldType;
+
+    FieldKind(String fieldType) {
+      this.fieldType = fieldType;
+    }
+  }
+
+  static FieldKind getFieldKind(String fieldName) {
+    if (fieldName.equals("Date")) {
+      return FieldKind.DATE;
+    }
+    if (fieldName.contains("Ctr") || fieldName.contains("Rate") || fieldName.contains("Share")
+      || fieldName.contains("Percentage")) {
+      return FieldKind.PERCENT;
+    }
+    if (fieldName.contains("Cost") || fieldName.contains("Cpc") || fieldName.contains("Cpm")
+      || fieldName.contains("Cpv") || fieldName.contains("Bid") || fieldName.contains("Budget")) {
+      return FieldKind.MONEY;
+    }
+    if (fieldName.contains("Conversions") || fieldName.contains("Value") || fieldName.equals("AveragePosition")) {
+      return FieldKind.DOUBLE;
+    }
+    if (fieldName.equals("Id") || fieldName.endsWith("Id") || fieldName.endsWith("Count")
+      || fieldName.equals("Impressions") || fieldName.equals("Clicks") || fieldName.endsWith("Views")
+      || fieldName.equals("Interactions")) {
+      return FieldKind.LONG;
+    }
+    return FieldKind.STRING;
+  }
+
+  /**
+   * Returns the report field types of the fields, as ReportDefinitionService would.
+   */
+  public static Map<String, String> getFieldTypes(List<String> fields) {
+    Map<String, String> fieldTypes = new HashMap<>();
+    for (String field : fields) {
+      fieldTypes.put(field, getFieldKind(field).fieldType);
+    }
+    return fieldTypes;
+  }
+
+  /**
+   * Returns the output schema of the fields, typed or with string fields only, as the single-report source builds it.
+   */
+  public static Schema getSchema(List<String> fields, boolean typed) {
+    Map<String, String> fieldTypes = getFieldTypes(fields);
+    List<Schema.Field> schemaFields = new ArrayList<>();
+    for (String field : fields) {
+      String fieldType = typed ? fieldTypes.get(field) : null;
+      schemaFields.add(Schema.Field.of(field, ReportSchemaBuilder.getFieldSchema(fieldType)));
+    }
+    return Schema.recordOf("GoogleAdsReport", schemaFields);
+  }
+
+  /**
+   * Writes a report with the given number of rows to the file.
+   */
+  public static void write(Path file, List<String> fields, int rows, long seed) throws IOException {
+    Random random = new Random(seed);
+    FieldKind[] kinds = new FieldKind[fields.size()];
+    for (int i = 0; i < kinds.length; i++) {
+      kinds[i] = getFieldKind(fields.get(i));
+    }
+    StringBuilder line = new StringBuilder();
+    try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      for (int row = 0; row < rows; row++) {
+        line.setLength(0);
+        for (int column = 0; column < kinds.length; column++) {
+          if (column > 0) {
+            line.append(',');
+          }
+          appendValue(line, kinds[column], fields.get(column), row, random);
+        }
+        line.append('\n');
+        writer.write(line.toString());
+      }
+    }
+  }
+
+  private static void appendValue(StringBuilder line, FieldKind kind, String fieldName, int row, Random random) {
+    // about 1 in 50 numeric values is unavailable
+    if (kind != FieldKind.STRING && kind != FieldKind.DATE && random.nextInt(50) == 0) {
+      line.append("--");
+      return;
+    }
+    switch (kind) {
+      case DATE:
+        line.append(String.format("2019-%02d-%02d", 1 + row % 12, 1 + row % 28));
+        break;
+      case LONG:
+        line.append(random.nextInt(100000));
+        break;
+      case MONEY:
+        line.append(random.nextInt(1000000) * 10000L);
+        break;
+      case PERCENT:
+        if (random.nextInt(20) == 0) {
+          line.append("< 10%");
+        } else {
+          line.append(random.nextInt(10000) / 100.0).append('%');
+        }
+        break;
+      case DOUBLE:
+        line.append(random.nextInt(1000000) / 100.0);
+        break;
+      default:
+        appendString(line, fieldName, row, random);
+    }
+  }
+
+  private static void appendString(StringBuilder line, String fieldName, int row, Random random) {
+    if (fieldName.equals("DayOfWeek")) {
+      line.append(DAYS_OF_WEEK[row % DAYS_OF_WEEK.length]);
+    } else if (fieldName.equals("Device")) {
+      line.append(DEVICES[random.nextInt(DEVICES.length)]);
+    } else if (random.nextInt(10) == 0) {
+      line.append('"').append(fieldName).append(' ').append(random.nextInt(1000)).append(", brand\"");
+    } else {
+      line.append(fieldName).append(' ').append(random.nextInt(1000));
+    }
+  }
+}
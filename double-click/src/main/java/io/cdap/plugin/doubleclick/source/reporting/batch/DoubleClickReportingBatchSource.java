@@ -26,10 +26,13 @@ import io.cdap.cdap.api.dataset.lib.KeyValue;
 import io.cdap.cdap.etl.api.Emitter;
 import io.cdap.cdap.etl.api.FailureCollector;
 import io.cdap.cdap.etl.api.PipelineConfigurer;
+import io.cdap.cdap.etl.api.StageMetrics;
+import io.cdap.cdap.etl.api.batch.BatchRuntimeContext;
 import io.cdap.cdap.etl.api.batch.BatchSource;
 import io.cdap.cdap.etl.api.batch.BatchSourceContext;
 import io.cdap.plugin.common.IdUtils;
 import io.cdap.plugin.common.LineageRecorder;
+import io.cdap.plugin.doubleclick.source.reporting.common.ReportMetrics;
 import org.apache.hadoop.io.NullWritable;
 
 import java.util.stream.Collectors;
@@ -45,7 +48,12 @@ public class DoubleClickReportingBatchSource extends BatchSource<NullWritable, S
   public static final String NAME = "DoubleClickCampaignManagerReportingBatchSource";
   public static final String DESCRIPTION = "Reads data from DFA Reporting and Trafficking API.";
 
+  private static final long METRICS_INTERVAL_MILLIS = 1000;
+
   private final DoubleClickReportingBatchSourceConfig config;
+  private StageMetrics stageMetrics;
+  private ReportMetrics reportMetrics;
+  private String runKey;
 
   public DoubleClickReportingBatchSource(DoubleClickReportingBatchSourceConfig config) {
     this.config = config;
@@ -60,7 +68,8 @@ public class DoubleClickReportingBatchSource extends BatchSource<NullWritable, S
                                  .map(Schema.Field::getName)
                                  .collect(Collectors.toList()));
 
-    batchSourceContext.setInput(Input.of(config.referenceName, new DoubleClickReportingFormatProvider(config)));
+    batchSourceContext.setInput(Input.of(config.referenceName, new DoubleClickReportingFormatProvider(
+      config, ReportMetrics.getRunKey(batchSourceContext))));
   }
 
   @Override
@@ -71,9 +80,28 @@ public class DoubleClickReportingBatchSource extends BatchSource<NullWritable, S
     pipelineConfigurer.getStageConfigurer().setOutputSchema(config.getSchema());
   }
 
+  @Override
+  public void initialize(BatchRuntimeContext context) throws Exception {
+    super.initialize(context);
+    stageMetrics = context.getMetrics();
+    runKey = ReportMetrics.getRunKey(context);
+    reportMetrics = ReportMetrics.attach(runKey);
+  }
+
   @Override
   public void transform(KeyValue<NullWritable, StructuredRecord> input, Emitter<StructuredRecord> emitter) {
     emitter.emit(input.getValue());
+    // the reader runs in the same JVM, its metrics are published while records are emitted
+    reportMetrics.drainTo(stageMetrics, METRICS_INTERVAL_MILLIS);
+  }
+
+  @Override
+  public void destroy() {
+    if (reportMetrics != null) {
+      reportMetrics.drainTo(stageMetrics);
+      ReportMetrics.detach(runKey);
+    }
+    super.destroy();
   }
 
   private void validateConfiguration(FailureCollector failureCollector) {
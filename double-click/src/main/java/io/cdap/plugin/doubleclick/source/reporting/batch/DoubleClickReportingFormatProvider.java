@@ -19,6 +19,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import io.cdap.cdap.api.data.batch.InputFormatProvider;
+import io.cdap.plugin.doubleclick.source.reporting.common.ReportMetrics;
 
 import java.util.Map;
 
@@ -32,9 +33,13 @@ public class DoubleClickReportingFormatProvider implements InputFormatProvider {
 
   private final Map<String, String> conf;
 
-  public DoubleClickReportingFormatProvider(DoubleClickReportingBatchSourceConfig config) {
+  /**
+   * @param runKey key of the stage in the current run, under which the reader publishes its metrics
+   */
+  public DoubleClickReportingFormatProvider(DoubleClickReportingBatchSourceConfig config, String runKey) {
     this.conf = new ImmutableMap.Builder<String, String>()
       .put(PROPERTY_CONFIG_JSON, gson.toJson(config))
+      .put(ReportMetrics.PROPERTY_RUN_KEY, runKey)
       .build();
   }
 
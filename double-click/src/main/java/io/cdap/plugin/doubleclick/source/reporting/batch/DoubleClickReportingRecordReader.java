@@ -18,12 +18,17 @@ package io.cdap.plugin.doubleclick.source.reporting.batch;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.plugin.doubleclick.source.reporting.common.ReportCounter;
+import io.cdap.plugin.doubleclick.source.reporting.common.ReportMetrics;
 import io.cdap.plugin.doubleclick.source.reporting.common.ReportTransformer;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.Counter;
 import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.Iterator;
@@ -37,9 +42,13 @@ import java.util.List;
 public class DoubleClickReportingRecordReader extends RecordReader<NullWritable, StructuredRecord> {
 
   private static final Gson gson = new GsonBuilder().create();
+  private static final Logger log = LoggerFactory.getLogger(DoubleClickReportingRecordReader.class);
 
   private Iterator<StructuredRecord> iterator;
   private StructuredRecord currentValue;
+  private int recordCount;
+  private int recordsRead;
+  private Counter recordsCounter;
 
   @Override
   public void initialize(InputSplit split, TaskAttemptContext context) throws IOException, InterruptedException {
@@ -47,14 +56,38 @@ public class DoubleClickReportingRecordReader extends RecordReader<NullWritable,
     String configJson = conf.get(DoubleClickReportingFormatProvider.PROPERTY_CONFIG_JSON);
     DoubleClickReportingBatchSourceConfig config = gson.fromJson(configJson,
                                                                  DoubleClickReportingBatchSourceConfig.class);
-    List<StructuredRecord> reportStructure = ReportTransformer.transformReportFromCsv(config);
+    ReportMetrics metrics = new ReportMetrics();
+    List<StructuredRecord> reportStructure = ReportTransformer.transformReportFromCsv(config, metrics);
     iterator = reportStructure.listIterator();
+    recordCount = reportStructure.size();
+    recordsCounter = context.getCounter(ReportCounter.RECORDS_READ);
+    publishMetrics(context, conf.get(ReportMetrics.PROPERTY_RUN_KEY), metrics);
+  }
+
+  /**
+   * Publishes the metrics of the report download as Hadoop counters and adds them to the metrics of the stage.
+   * Emitted records are counted while they are read.
+   */
+  private void publishMetrics(TaskAttemptContext context, String runKey, ReportMetrics metrics) {
+    for (ReportCounter counter : ReportCounter.values()) {
+      if (counter != ReportCounter.RECORDS_READ) {
+        context.getCounter(counter).increment(metrics.get(counter));
+      }
+    }
+    metrics.add(ReportCounter.RECORDS_READ, recordCount);
+    ReportMetrics.addToRun(runKey, metrics);
+    log.info("Read report: {} records, {} bytes, {} status requests, {} ms to first byte, {} ms downloading, " +
+               "{} ms parsing", recordCount, metrics.get(ReportCounter.BYTES_DOWNLOADED),
+             metrics.get(ReportCounter.POLL_ITERATIONS), metrics.get(ReportCounter.TIME_TO_FIRST_BYTE_MILLIS),
+             metrics.get(ReportCounter.DOWNLOAD_MILLIS), metrics.get(ReportCounter.PARSE_MILLIS));
   }
 
   @Override
   public boolean nextKeyValue() {
     if (iterator.hasNext()) {
       currentValue = iterator.next();
+      recordsRead++;
+      recordsCounter.increment(1);
       return true;
     }
     return false;
@@ -72,7 +105,8 @@ public class DoubleClickReportingRecordReader extends RecordReader<NullWritable,
 
   @Override
   public float getProgress() {
-    return 0;
+    // the report is downloaded completely before the first record is read, so progress is the share of emitted rows
+    return recordCount == 0 ? 0 : (float) recordsRead / recordCount;
   }
 
   @Override
@@ -0,0 +1,43 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.doubleclick.source.reporting.common;
+
+/**
+ * Counters published by the DoubleClick record reader, as Hadoop counters and as metrics of the source stage.
+ */
+public enum ReportCounter {
+  RECORDS_READ("report.records.read"),
+  BYTES_DOWNLOADED("report.bytes.downloaded"),
+  // number of report file status requests until the report was available
+  POLL_ITERATIONS("report.poll.iterations"),
+  // time until the report file download starts
+  TIME_TO_FIRST_BYTE_MILLIS("report.time.to.first.byte.ms"),
+  // time spent waiting for report content
+  DOWNLOAD_MILLIS("report.download.ms"),
+  // time spent parsing and converting rows, excluding waiting for content
+  PARSE_MILLIS("report.parse.ms");
+
+  private final String metricName;
+
+  ReportCounter(String metricName) {
+    this.metricName = metricName;
+  }
+
+  public String getMetricName() {
+    return metricName;
+  }
+}
@@ -86,6 +86,14 @@ public class ReportHelper {
   }
 
   public static File runReport(DoubleClickReportingBatchSourceConfig config, Long reportId)
+    throws IOException, InterruptedException {
+    return runReport(config, reportId, new ReportMetrics());
+  }
+
+  /**
+   * Runs the report and waits until its file is available, counting the status requests in the given metrics.
+   */
+  public static File runReport(DoubleClickReportingBatchSourceConfig config, Long reportId, ReportMetrics metrics)
     throws IOException, InterruptedException {
     // Run the report.
     File file = reporting.reports()
@@ -104,6 +112,7 @@ public class ReportHelper {
         .build();
 
     do {
+      metrics.add(ReportCounter.POLL_ITERATIONS, 1);
       file = reporting.files()
         .get(file.getReportId(), file.getId())
         .setOauthToken(config.getAccessToken())
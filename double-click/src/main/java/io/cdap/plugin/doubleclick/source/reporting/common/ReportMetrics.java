@@ -0,0 +1,148 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.doubleclick.source.reporting.common;
+
+import io.cdap.cdap.etl.api.StageContext;
+import io.cdap.cdap.etl.api.StageMetrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+
+/**
+ * Values of {@link ReportCounter}s. The record reader has no access to the metrics of the stage, so it adds the
+ * values of the report to a per-JVM instance of the stage in the current pipeline run, which the source publishes
+ * from the same JVM while it emits records.
+ */
+public class ReportMetrics {
+
+  /**
+   * Hadoop configuration property holding the run key of the stage, see {@link #getRunKey(StageContext)}.
+   */
+  public static final String PROPERTY_RUN_KEY = "cdap.doubleclick.reporting.metrics.run.key";
+
+  private static final Map<String, ReportMetrics> RUN_METRICS = new ConcurrentHashMap<>();
+
+  private final Map<ReportCounter, AtomicLong> values = new EnumMap<>(ReportCounter.class);
+  private volatile long lastDrainMillis;
+  // number of stage instances publishing these metrics, only changed while the run metrics map is updated
+  private int attachedStages;
+
+  public ReportMetrics() {
+    for (ReportCounter counter : ReportCounter.values()) {
+      values.put(counter, new AtomicLong());
+    }
+  }
+
+  /**
+   * Returns the key of the stage in the current pipeline run. The logical start time is the same in the driver and
+   * in all tasks of a run, so stages with the same reference name or of concurrent runs do not share metrics.
+   */
+  public static String getRunKey(StageContext context) {
+    return String.join("/", context.getNamespace(), context.getPipelineName(), context.getStageName(),
+                       String.valueOf(context.getLogicalStartTime()));
+  }
+
+  /**
+   * Returns the metrics accumulated by the readers of the stage run with the given key in this JVM, or null if no
+   * stage instance of the run is attached to them.
+   */
+  @Nullable
+  public static ReportMetrics getAttached(@Nullable String runKey) {
+    return runKey == null ? null : RUN_METRICS.get(runKey);
+  }
+
+  /**
+   * Adds the metrics of a reader to the stage run with the given key, if a stage instance of the run in this JVM is
+   * attached to them. Readers without an attached stage, like those of tasks in other JVMs, keep their values in the
+   * Hadoop counters only.
+   *
+   * @return whether the metrics were added
+   */
+  public static boolean addToRun(@Nullable String runKey, ReportMetrics metrics) {
+    if (runKey == null) {
+      return false;
+    }
+    // added while the entry is locked, so the metrics are never added to an instance that was just released
+    return RUN_METRICS.computeIfPresent(runKey, (key, runMetrics) -> {
+      runMetrics.addAll(metrics);
+      return runMetrics;
+    }) != null;
+  }
+
+  /**
+   * Returns the metrics of the stage run, created by the first stage instance which attaches to them, and keeps them
+   * until every stage instance which attached to them has detached.
+   */
+  public static ReportMetrics attach(String runKey) {
+    return RUN_METRICS.compute(runKey, (key, metrics) -> {
+      ReportMetrics runMetrics = metrics == null ? new ReportMetrics() : metrics;
+      runMetrics.attachedStages++;
+      return runMetrics;
+    });
+  }
+
+  /**
+   * Releases the metrics of the stage run once the last attached stage instance has published them.
+   */
+  public static void detach(String runKey) {
+    RUN_METRICS.computeIfPresent(runKey, (key, metrics) -> --metrics.attachedStages > 0 ? metrics : null);
+  }
+
+  public void add(ReportCounter counter, long value) {
+    values.get(counter).addAndGet(value);
+  }
+
+  public void addAll(ReportMetrics metrics) {
+    for (ReportCounter counter : ReportCounter.values()) {
+      add(counter, metrics.get(counter));
+    }
+  }
+
+  public long get(ReportCounter counter) {
+    return values.get(counter).get();
+  }
+
+  /**
+   * Publishes the accumulated values like {@link #drainTo(StageMetrics)}, unless they were published less than
+   * the given interval ago.
+   */
+  public void drainTo(StageMetrics stageMetrics, long intervalMillis) {
+    long now = System.currentTimeMillis();
+    if (now - lastDrainMillis >= intervalMillis) {
+      drainTo(stageMetrics);
+    }
+  }
+
+  /**
+   * Publishes the accumulated values to the stage metrics and resets them.
+   */
+  public void drainTo(StageMetrics stageMetrics) {
+    lastDrainMillis = System.currentTimeMillis();
+    for (Map.Entry<ReportCounter, AtomicLong> value : values.entrySet()) {
+      long delta = value.getValue().getAndSet(0);
+      // stage metrics only take int counts
+      while (delta > 0) {
+        int count = (int) Math.min(delta, Integer.MAX_VALUE);
+        stageMetrics.count(value.getKey().getMetricName(), count);
+        delta -= count;
+      }
+    }
+  }
+}
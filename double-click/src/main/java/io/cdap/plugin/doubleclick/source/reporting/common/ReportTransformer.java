@@ -23,12 +23,14 @@ import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -41,13 +43,40 @@ public class ReportTransformer {
    */
   public static List<StructuredRecord> transformReportFromCsv(DoubleClickReportingBatchSourceConfig config)
     throws IOException, InterruptedException {
+    return transformReportFromCsv(config, new ReportMetrics());
+  }
+
+  /**
+   * Same as {@link #transformReportFromCsv(DoubleClickReportingBatchSourceConfig)}, but collects the timings and
+   * sizes of the report run, download and parsing in the given metrics.
+   */
+  public static List<StructuredRecord> transformReportFromCsv(DoubleClickReportingBatchSourceConfig config,
+                                                              ReportMetrics metrics)
+    throws IOException, InterruptedException {
     Long reportId = (config.getReportId() == null) ? ReportHelper.createReport(config) : config.getReportId();
-    File report = ReportHelper.runReport(config, reportId);
-    InputStream reportAsInputStream = ReportHelper.downloadReport(config, report);
+    File report = ReportHelper.runReport(config, reportId, metrics);
+    long start = System.nanoTime();
+    TrackedInputStream reportAsInputStream = new TrackedInputStream(ReportHelper.downloadReport(config, report));
+    metrics.add(ReportCounter.TIME_TO_FIRST_BYTE_MILLIS, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    long parseStart = System.nanoTime();
+    List<StructuredRecord> records = transformReportFromCsv(reportAsInputStream, config.getSchema());
+    // the report is parsed while it is downloaded, the time spent waiting for content is download time
+    long readNanos = reportAsInputStream.readNanos;
+    metrics.add(ReportCounter.BYTES_DOWNLOADED, reportAsInputStream.bytesRead);
+    metrics.add(ReportCounter.DOWNLOAD_MILLIS, TimeUnit.NANOSECONDS.toMillis(readNanos));
+    metrics.add(ReportCounter.PARSE_MILLIS, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - parseStart - readNanos));
+    return records;
+  }
+
+  /**
+   * Transforms a downloaded report in CSV format to {@link StructuredRecord} instances accordingly to given schema.
+   */
+  public static List<StructuredRecord> transformReportFromCsv(InputStream reportAsInputStream, Schema schema)
+    throws IOException {
     CSVParser csvParser = CSVParser.parse(reportAsInputStream, Charset.defaultCharset(), CSVFormat.DEFAULT);
 
     List<StructuredRecord> reportStructure = new ArrayList<>();
-    List<String> reportFields = config.getSchema()
+    List<String> reportFields = schema
       .getFields()
       .stream()
       .map(Schema.Field::getName)
@@ -56,7 +85,7 @@ public class ReportTransformer {
     for (CSVRecord csvRecord : csvParser) {
       Iterator<String> reportFieldsIterator = reportFields.iterator();
       Iterator<String> csvRecordIterator = csvRecord.iterator();
-      StructuredRecord.Builder builder = StructuredRecord.builder(config.getSchema());
+      StructuredRecord.Builder builder = StructuredRecord.builder(schema);
       while (reportFieldsIterator.hasNext() && csvRecordIterator.hasNext()) {
         builder.set(reportFieldsIterator.next(), csvRecordIterator.next());
       }
@@ -64,4 +93,38 @@ public class ReportTransformer {
     }
     return reportStructure;
   }
+
+  /**
+   * Counts the bytes read from the wrapped stream and the time spent waiting for them.
+   */
+  private static class TrackedInputStream extends FilterInputStream {
+    private long bytesRead;
+    private long readNanos;
+
+    private TrackedInputStream(InputStream inputStream) {
+      super(inputStream);
+    }
+
+    @Override
+    public int read() throws IOException {
+      long start = System.nanoTime();
+      int b = super.read();
+      readNanos += System.nanoTime() - start;
+      if (b >= 0) {
+        bytesRead++;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      long start = System.nanoTime();
+      int read = super.read(b, off, len);
+      readNanos += System.nanoTime() - start;
+      if (read > 0) {
+        bytesRead += read;
+      }
+      return read;
+    }
+  }
 }
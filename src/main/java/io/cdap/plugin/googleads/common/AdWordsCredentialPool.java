@@ -0,0 +1,159 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.googleads.common;
+
+import com.google.api.ads.common.lib.auth.OfflineCredentials;
+import com.google.api.ads.common.lib.exception.OAuthException;
+import com.google.api.ads.common.lib.exception.ValidationException;
+import com.google.api.client.auth.oauth2.Credential;
+import com.google.common.hash.Hashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-JVM pool of OAuth credentials keyed by client ID, client secret and refresh token. All sessions and splits
+ * in the JVM which use the same credentials share one access token, which is refreshed shortly before it expires
+ * instead of being exchanged again for every session.
+ */
+public class AdWordsCredentialPool {
+
+  // refresh a bit earlier than the credential itself does, so long downloads do not start with a stale token
+  static final long REFRESH_BEFORE_EXPIRY_SECONDS = 300;
+
+  private static final Logger log = LoggerFactory.getLogger(AdWordsCredentialPool.class);
+  private static final AdWordsCredentialPool INSTANCE = new AdWordsCredentialPool();
+
+  private final Map<CredentialKey, Credential> credentials = new ConcurrentHashMap<>();
+  private final AtomicLong refreshCount = new AtomicLong();
+
+  public static AdWordsCredentialPool getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Returns the shared credential of the refresh token, generating it on first use.
+   */
+  public Credential getCredential(String clientId, String clientSecret, String refreshToken)
+    throws OAuthException, ValidationException {
+    CredentialKey key = new CredentialKey(clientId, clientSecret, refreshToken);
+    Credential credential = credentials.get(key);
+    if (credential == null) {
+      synchronized (this) {
+        credential = credentials.get(key);
+        if (credential == null) {
+          credential = new OfflineCredentials.Builder()
+            .forApi(OfflineCredentials.Api.ADWORDS)
+            .withClientSecrets(clientId, clientSecret)
+            .withRefreshToken(refreshToken)
+            .build()
+            .generateCredential();
+          refreshCount.incrementAndGet();
+          credentials.put(key, credential);
+        }
+      }
+    }
+    refreshIfExpiring(credential);
+    return credential;
+  }
+
+  void putCredential(String clientId, String clientSecret, String refreshToken, Credential credential) {
+    credentials.put(new CredentialKey(clientId, clientSecret, refreshToken), credential);
+  }
+
+  /**
+   * Returns the number of access tokens obtained or refreshed since the last call and resets it.
+   */
+  public long drainRefreshCount() {
+    return refreshCount.getAndSet(0);
+  }
+
+  /**
+   * Removes all pooled credentials.
+   */
+  public void clear() {
+    credentials.clear();
+  }
+
+  private void refreshIfExpiring(Credential credential) {
+    if (!isExpiring(credential)) {
+      return;
+    }
+    synchronized (credential) {
+      // another thread may have refreshed the token while this one was waiting
+      if (!isExpiring(credential)) {
+        return;
+      }
+      refreshCount.incrementAndGet();
+      try {
+        if (!credential.refreshToken()) {
+          log.warn("Failed to refresh OAuth access token, the current token is used until it expires");
+        }
+      } catch (IOException e) {
+        log.warn("Failed to refresh OAuth access token, the current token is used until it expires", e);
+      }
+    }
+  }
+
+  private static boolean isExpiring(Credential credential) {
+    Long expiresInSeconds = credential.getExpiresInSeconds();
+    return expiresInSeconds != null && expiresInSeconds <= REFRESH_BEFORE_EXPIRY_SECONDS;
+  }
+
+  /**
+   * Identifies the OAuth client and refresh token a credential belongs to. A pipeline with a corrected client
+   * secret must not reuse a credential generated with the old one, so the secret is part of the key, but only
+   * its hash is kept.
+   */
+  private static class CredentialKey {
+    private final String clientId;
+    private final String clientSecretHash;
+    private final String refreshToken;
+
+    private CredentialKey(String clientId, String clientSecret, String refreshToken) {
+      this.clientId = clientId;
+      this.clientSecretHash = clientSecret == null
+        ? null
+        : Hashing.sha256().hashString(clientSecret, StandardCharsets.UTF_8).toString();
+      this.refreshToken = refreshToken;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      CredentialKey that = (CredentialKey) o;
+      return Objects.equals(clientId, that.clientId) && Objects.equals(clientSecretHash, that.clientSecretHash)
+        && Objects.equals(refreshToken, that.refreshToken);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(clientId, clientSecretHash, refreshToken);
+    }
+  }
+}
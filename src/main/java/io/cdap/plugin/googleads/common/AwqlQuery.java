@@ -0,0 +1,171 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.googleads.common;
+
+import com.google.common.base.Strings;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+
+/**
+ * AWQL report query of the form {@code SELECT <fields> FROM <report type> [WHERE <conditions>]
+ * [DURING <date range>]}. The selected fields and the report type are parsed, so the query can be used in place
+ * of a report type and report fields, while the date range is replaced per split. Keywords inside quoted values
+ * are ignored.
+ */
+public class AwqlQuery {
+
+  private static final Pattern CLAUSE = Pattern.compile("\\b(SELECT|FROM|WHERE|DURING|ORDER\\s+BY|LIMIT)\\b",
+                                                        Pattern.CASE_INSENSITIVE);
+  private static final Pattern NAME = Pattern.compile("\\w+");
+
+  private final List<String> fields;
+  private final String reportType;
+  private final String where;
+  private final String during;
+
+  private AwqlQuery(List<String> fields, String reportType, @Nullable String where, @Nullable String during) {
+    this.fields = Collections.unmodifiableList(fields);
+    this.reportType = reportType;
+    this.where = where;
+    this.during = during;
+  }
+
+  /**
+   * Parses the query.
+   *
+   * @throws IllegalArgumentException if the query is not a valid report query
+   */
+  public static AwqlQuery parse(String query) {
+    // quoted values are blanked out, so keywords are only searched in the query structure
+    String structure = maskQuotedValues(query);
+    Matcher matcher = CLAUSE.matcher(structure);
+    String[] clauses = new String[4];
+    int clause = -1;
+    int valueStart = 0;
+    while (matcher.find()) {
+      String keyword = matcher.group(1).toUpperCase();
+      if (keyword.startsWith("ORDER") || keyword.equals("LIMIT")) {
+        throw new IllegalArgumentException(
+          String.format("Report queries do not support %s clauses", keyword.replaceAll("\\s+", " ")));
+      }
+      int next = indexOf(keyword);
+      boolean leadingText = clause < 0 && !structure.substring(0, matcher.start()).trim().isEmpty();
+      if (next <= clause || (clause < 0 && next != 0) || leadingText) {
+        throw new IllegalArgumentException(String.format("Unexpected %s in query '%s'", keyword, query));
+      }
+      if (clause >= 0) {
+        clauses[clause] = query.substring(valueStart, matcher.start()).trim();
+      }
+      clause = next;
+      valueStart = matcher.end();
+    }
+    if (clause < 0) {
+      throw new IllegalArgumentException(String.format("Query '%s' does not start with SELECT", query));
+    }
+    clauses[clause] = query.substring(valueStart).trim();
+    if (clauses[1] == null) {
+      throw new IllegalArgumentException(String.format("Query '%s' has no FROM clause", query));
+    }
+
+    List<String> fields = new ArrayList<>();
+    for (String field : clauses[0].split(",", -1)) {
+      field = field.trim();
+      if (!NAME.matcher(field).matches()) {
+        throw new IllegalArgumentException(String.format("Invalid selected field '%s'", field));
+      }
+      fields.add(field);
+    }
+    if (!NAME.matcher(clauses[1]).matches()) {
+      throw new IllegalArgumentException(String.format("Invalid report type '%s'", clauses[1]));
+    }
+    for (int optional = 2; optional < clauses.length; optional++) {
+      if (clauses[optional] != null && clauses[optional].isEmpty()) {
+        throw new IllegalArgumentException(String.format("Query '%s' has an empty clause", query));
+      }
+    }
+    return new AwqlQuery(fields, clauses[1], clauses[2], clauses[3]);
+  }
+
+  public List<String> getFields() {
+    return fields;
+  }
+
+  public String getReportType() {
+    return reportType;
+  }
+
+  @Nullable
+  public String getWhere() {
+    return where;
+  }
+
+  @Nullable
+  public String getDuring() {
+    return during;
+  }
+
+  /**
+   * Returns the query text for the given date range in YYYYMMDD format, which replaces the DURING clause.
+   */
+  public String toQuery(String startDate, String endDate) {
+    StringBuilder query = new StringBuilder("SELECT ")
+      .append(String.join(", ", fields))
+      .append(" FROM ")
+      .append(reportType);
+    if (!Strings.isNullOrEmpty(where)) {
+      query.append(" WHERE ").append(where);
+    }
+    return query.append(" DURING ").append(startDate).append(',').append(endDate).toString();
+  }
+
+  private static int indexOf(String keyword) {
+    switch (keyword) {
+      case "SELECT":
+        return 0;
+      case "FROM":
+        return 1;
+      case "WHERE":
+        return 2;
+      default:
+        return 3;
+    }
+  }
+
+  private static String maskQuotedValues(String query) {
+    char[] chars = query.toCharArray();
+    char quote = 0;
+    for (int index = 0; index < chars.length; index++) {
+      char current = chars[index];
+      if (quote != 0) {
+        chars[index] = ' ';
+        if (current == '\\' && index + 1 < chars.length) {
+          chars[++index] = ' ';
+        } else if (current == quote) {
+          quote = 0;
+        }
+      } else if (current == '\'' || current == '"') {
+        quote = current;
+      }
+    }
+    return new String(chars);
+  }
+}
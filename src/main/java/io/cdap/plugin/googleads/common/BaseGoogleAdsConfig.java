@@ -17,18 +17,27 @@ package io.cdap.plugin.googleads.common;
 
 import com.google.api.ads.common.lib.exception.OAuthException;
 import com.google.api.ads.common.lib.exception.ValidationException;
+import com.google.common.base.Strings;
 import io.cdap.cdap.api.annotation.Description;
 import io.cdap.cdap.api.annotation.Macro;
 import io.cdap.cdap.api.annotation.Name;
 import io.cdap.cdap.etl.api.FailureCollector;
 import io.cdap.plugin.common.ReferencePluginConfig;
 
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 
 /**
  * Provides all required configuration for reading Google AdWords reports
@@ -45,6 +54,18 @@ public class BaseGoogleAdsConfig extends ReferencePluginConfig {
   public static final String INCLUDE_REPORT_SUMMARY = "includeReportSummary";
   public static final String USE_RAW_ENUM_VALUES = "useRawEnumValues";
   public static final String INCLUDE_ZERO_IMPRESSIONS = "includeZeroImpressions";
+  public static final String DISCOVER_CLIENT_CUSTOMERS = "discoverClientCustomers";
+  public static final String METADATA_CACHE_TTL = "metadataCacheTtl";
+  public static final String METADATA_CACHE_DIRECTORY = "metadataCacheDirectory";
+  public static final long DEFAULT_METADATA_CACHE_TTL = 24 * 60;
+  public static final String MAX_REQUESTS_PER_SECOND = "maxRequestsPerSecond";
+  public static final String MAX_CONCURRENT_REQUESTS = "maxConcurrentRequests";
+  public static final String QUOTA_LOCK_DIRECTORY = "quotaLockDirectory";
+  public static final String WATERMARK_DIRECTORY = "watermarkDirectory";
+  public static final String LOOKBACK_DAYS = "lookbackDays";
+  public static final int DEFAULT_LOOKBACK_DAYS = 1;
+  public static final String ENDPOINT = "endpoint";
+  public static final String PRESETS_FILE = "presetsFile";
   @Name(REFRESH_TOKEN)
   @Description("Authorization to download the report")
   @Macro
@@ -62,9 +83,15 @@ public class BaseGoogleAdsConfig extends ReferencePluginConfig {
   @Macro
   public String developerToken;
   @Name(CLIENT_CUSTOMER_ID)
-  @Description("Customer ID of the client account")
+  @Description("Customer ID of the client account. Multiple comma-separated customer IDs are allowed.")
   @Macro
   public String clientCustomerId;
+  @Name(DISCOVER_CLIENT_CUSTOMERS)
+  @Description("Set to true if Customer ID is a manager account and the report should be downloaded" +
+    " for every client account under it.")
+  @Macro
+  @Nullable
+  public Boolean discoverClientCustomers;
   @Name(INCLUDE_REPORT_SUMMARY)
   @Description("Specifies whether report include a summary row containing the report totals.")
   @Macro
@@ -88,6 +115,60 @@ public class BaseGoogleAdsConfig extends ReferencePluginConfig {
   @Description("End date for the report data. YYYYMMDD format. \"TODAY\" value is allowed.")
   @Macro
   public String endDate;
+  @Name(METADATA_CACHE_TTL)
+  @Description("Number of minutes report field metadata is cached for. 0 disables the cache. Default is 1440.")
+  @Macro
+  @Nullable
+  public Long metadataCacheTtl;
+  @Name(METADATA_CACHE_DIRECTORY)
+  @Description("Local directory in which report field metadata is cached across runs. " +
+    "If not set, metadata is only cached in memory.")
+  @Macro
+  @Nullable
+  public String metadataCacheDirectory;
+  @Name(MAX_REQUESTS_PER_SECOND)
+  @Description("Maximum number of report download requests per second for the developer token, " +
+    "shared by all tasks using the same quota lock directory. Not limited if not set.")
+  @Macro
+  @Nullable
+  public Double maxRequestsPerSecond;
+  @Name(MAX_CONCURRENT_REQUESTS)
+  @Description("Maximum number of report download requests running at the same time for the developer token, " +
+    "shared by all tasks using the same quota lock directory. Not limited if not set.")
+  @Macro
+  @Nullable
+  public Integer maxConcurrentRequests;
+  @Name(QUOTA_LOCK_DIRECTORY)
+  @Description("Directory in which quota state is kept. Defaults to the local temporary directory, " +
+    "so limits apply per machine. Use a shared file system supporting file locks to apply them cluster-wide.")
+  @Macro
+  @Nullable
+  public String quotaLockDirectory;
+  @Name(WATERMARK_DIRECTORY)
+  @Description("Directory in which the last downloaded date of every report and customer is stored. " +
+    "If set, each run only downloads the days after the previous run, starting no earlier than the start date.")
+  @Macro
+  @Nullable
+  public String watermarkDirectory;
+  @Name(LOOKBACK_DAYS)
+  @Description("Number of already downloaded days which incremental runs download again, because their data " +
+    "may still change, for example because of late conversions. Default is 1.")
+  @Macro
+  @Nullable
+  public Integer lookbackDays;
+  @Name(ENDPOINT)
+  @Description("Base URL of the AdWords API server. Only needs to be set to send requests to a different server, " +
+    "such as a local stand-in server for testing. Defaults to the Google AdWords API server.")
+  @Macro
+  @Nullable
+  public String endpoint;
+  @Name(PRESETS_FILE)
+  @Description("Path of a JSON file with additional report presets, in the same format as the presets shipped " +
+    "with the plugin. Presets with the name of a shipped preset replace it. Changes to the file are picked up " +
+    "within a minute.")
+  @Macro
+  @Nullable
+  public String presetsFile;
 
   public BaseGoogleAdsConfig(String referenceName) {
     super(referenceName);
@@ -97,6 +178,14 @@ public class BaseGoogleAdsConfig extends ReferencePluginConfig {
     GoogleAdsHelper googleAdsHelper = new GoogleAdsHelper();
     validateAuthorization(failureCollector, googleAdsHelper);
     validateDateRange(failureCollector);
+    validateMetadataCache(failureCollector);
+    validateQuota(failureCollector);
+    validateEndpoint(failureCollector);
+    validatePresetsFile(failureCollector);
+    if (!containsMacro(LOOKBACK_DAYS) && lookbackDays != null && lookbackDays < 0) {
+      failureCollector.addFailure("lookbackDays must not be negative.", "Enter 0 or a positive number.")
+        .withConfigProperty(LOOKBACK_DAYS);
+    }
   }
 
   protected void validateAuthorization(FailureCollector failureCollector, GoogleAdsHelper googleAdsHelper) {
@@ -145,6 +234,135 @@ public class BaseGoogleAdsConfig extends ReferencePluginConfig {
     }
   }
 
+  protected void validateMetadataCache(FailureCollector failureCollector) {
+    if (!containsMacro(METADATA_CACHE_TTL) && metadataCacheTtl != null && metadataCacheTtl < 0) {
+      failureCollector.addFailure("metadataCacheTtl must not be negative.", "Enter 0 or a positive number.")
+        .withConfigProperty(METADATA_CACHE_TTL);
+    }
+  }
+
+  protected void validateQuota(FailureCollector failureCollector) {
+    if (!containsMacro(MAX_REQUESTS_PER_SECOND) && maxRequestsPerSecond != null && maxRequestsPerSecond <= 0) {
+      failureCollector.addFailure("maxRequestsPerSecond must be positive.", "Enter a positive number.")
+        .withConfigProperty(MAX_REQUESTS_PER_SECOND);
+    }
+    if (!containsMacro(MAX_CONCURRENT_REQUESTS) && maxConcurrentRequests != null && maxConcurrentRequests <= 0) {
+      failureCollector.addFailure("maxConcurrentRequests must be positive.", "Enter a positive number.")
+        .withConfigProperty(MAX_CONCURRENT_REQUESTS);
+    }
+  }
+
+  protected void validateEndpoint(FailureCollector failureCollector) {
+    if (containsMacro(ENDPOINT) || Strings.isNullOrEmpty(endpoint)) {
+      return;
+    }
+    try {
+      URL url = new URL(endpoint);
+      if (!"http".equals(url.getProtocol()) && !"https".equals(url.getProtocol())) {
+        failureCollector.addFailure("endpoint must be an HTTP or HTTPS URL.", "Enter a valid URL.")
+          .withConfigProperty(ENDPOINT);
+      }
+    } catch (MalformedURLException e) {
+      failureCollector.addFailure("Invalid endpoint URL.", "Enter a valid URL.")
+        .withConfigProperty(ENDPOINT);
+    }
+  }
+
+  protected void validatePresetsFile(FailureCollector failureCollector) {
+    if (containsMacro(PRESETS_FILE) || getPresetsFile() == null) {
+      return;
+    }
+    try {
+      getReportPresetHelper().getReportPresets();
+    } catch (IOException e) {
+      failureCollector.addFailure(String.format("Can`t read report presets: %s", e.getMessage()),
+                                  "Enter the path of a valid presets file.")
+        .withConfigProperty(PRESETS_FILE);
+    }
+  }
+
+  /**
+   * Returns the configured customer IDs. These are the manager accounts if client discovery is enabled.
+   */
+  public List<String> getClientCustomerIds() {
+    if (Strings.isNullOrEmpty(clientCustomerId)) {
+      return Collections.emptyList();
+    }
+    return Arrays.stream(clientCustomerId.split(","))
+      .map(String::trim)
+      .filter(id -> !id.isEmpty())
+      .collect(Collectors.toList());
+  }
+
+  @Nullable
+  public String getDefaultClientCustomerId() {
+    List<String> clientCustomerIds = getClientCustomerIds();
+    return clientCustomerIds.isEmpty() ? clientCustomerId : clientCustomerIds.get(0);
+  }
+
+  public boolean isDiscoverClientCustomers() {
+    return Boolean.TRUE.equals(discoverClientCustomers);
+  }
+
+  /**
+   * Returns true if the report is downloaded for more than one customer, in which case the customer ID is
+   * added to the output records.
+   */
+  public boolean isMultiCustomer() {
+    return isDiscoverClientCustomers() || getClientCustomerIds().size() > 1;
+  }
+
+  public long getMetadataCacheTtl() {
+    return metadataCacheTtl == null ? DEFAULT_METADATA_CACHE_TTL : metadataCacheTtl;
+  }
+
+  @Nullable
+  public String getMetadataCacheDirectory() {
+    return Strings.isNullOrEmpty(metadataCacheDirectory) ? null : metadataCacheDirectory;
+  }
+
+  public double getMaxRequestsPerSecond() {
+    return maxRequestsPerSecond == null ? 0 : maxRequestsPerSecond;
+  }
+
+  public int getMaxConcurrentRequests() {
+    return maxConcurrentRequests == null ? 0 : maxConcurrentRequests;
+  }
+
+  public String getQuotaLockDirectory() {
+    return Strings.isNullOrEmpty(quotaLockDirectory) ? System.getProperty("java.io.tmpdir") : quotaLockDirectory;
+  }
+
+  public boolean isIncremental() {
+    return !Strings.isNullOrEmpty(watermarkDirectory);
+  }
+
+  @Nullable
+  public String getWatermarkDirectory() {
+    return watermarkDirectory;
+  }
+
+  public int getLookbackDays() {
+    return lookbackDays == null ? DEFAULT_LOOKBACK_DAYS : lookbackDays;
+  }
+
+  @Nullable
+  public String getPresetsFile() {
+    return Strings.isNullOrEmpty(presetsFile) ? null : presetsFile;
+  }
+
+  /**
+   * Returns the helper for the shipped presets and the presets of the configured presets file.
+   */
+  public ReportPresetHelper getReportPresetHelper() {
+    return new ReportPresetHelper(getPresetsFile());
+  }
+
+  @Nullable
+  public String getEndpoint() {
+    return Strings.isNullOrEmpty(endpoint) ? null : endpoint;
+  }
+
   public String getStartDate() {
     return getDate(startDate);
   }
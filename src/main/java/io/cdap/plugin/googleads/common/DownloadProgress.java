@@ -0,0 +1,192 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.googleads.common;
+
+import com.google.common.io.CountingInputStream;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Tracks how much of a report download has been read. Progress is the number of bytes read from the response,
+ * before decompression, relative to the expected download size. The Google Ads API does not expose the response
+ * length, so unless the report is read from a local copy, the expected size is estimated from the number of days
+ * in the downloaded date range. The time spent waiting for the content and the other metrics of the download are
+ * collected as well.
+ */
+public class DownloadProgress {
+
+  // rough size of one day of a report, only used to scale progress when the response length is unknown
+  public static final long ESTIMATED_BYTES_PER_DAY = 1024 * 1024;
+  // estimated progress never reaches 1, since the estimate may be lower than the actual size
+  private static final float MAX_ESTIMATED_PROGRESS = 0.99f;
+
+  // written by the thread reading the report, read by the task thread for progress and metrics
+  private volatile long expectedBytes;
+  private volatile boolean estimated;
+  private volatile CountingInputStream inputStream;
+  private volatile boolean aborted;
+  private volatile long recordsRead;
+  private volatile boolean finished;
+  private volatile long readNanos;
+  private final ReportMetrics metrics = new ReportMetrics();
+
+  /**
+   * @param expectedBytes the expected download size
+   * @param estimated true if the expected size is an estimate rather than the actual response length
+   */
+  public DownloadProgress(long expectedBytes, boolean estimated) {
+    this.expectedBytes = Math.max(expectedBytes, 1);
+    this.estimated = estimated;
+  }
+
+  /**
+   * Creates progress for a split of the given date range, in YYYYMMDD format.
+   */
+  public static DownloadProgress forDateRange(@Nullable String startDate, @Nullable String endDate) {
+    return new DownloadProgress(getDays(startDate, endDate) * ESTIMATED_BYTES_PER_DAY, true);
+  }
+
+  static long getDays(@Nullable String startDate, @Nullable String endDate) {
+    if (startDate == null || endDate == null) {
+      return 1;
+    }
+    try {
+      LocalDate start = LocalDate.parse(startDate, DateTimeFormatter.BASIC_ISO_DATE);
+      LocalDate end = LocalDate.parse(endDate, DateTimeFormatter.BASIC_ISO_DATE);
+      return Math.max(ChronoUnit.DAYS.between(start, end) + 1, 1);
+    } catch (DateTimeParseException e) {
+      return 1;
+    }
+  }
+
+  /**
+   * Sets the exact number of bytes which will be read, once it is known.
+   */
+  public void expect(long bytes) {
+    expectedBytes = Math.max(bytes, 1);
+    estimated = false;
+  }
+
+  /**
+   * Wraps the downloaded stream, so that bytes read from it and the time spent waiting for them are counted.
+   */
+  public synchronized InputStream track(InputStream inputStream) throws IOException {
+    if (aborted) {
+      inputStream.close();
+      throw new IOException("Download was aborted");
+    }
+    this.inputStream = new CountingInputStream(inputStream);
+    return new TimedInputStream(this.inputStream);
+  }
+
+  /**
+   * Closes the tracked stream, so that a read blocked in another thread fails instead of waiting for content.
+   * Streams tracked afterwards are closed right away.
+   */
+  public synchronized void abort() throws IOException {
+    aborted = true;
+    if (inputStream != null) {
+      inputStream.close();
+    }
+  }
+
+  /**
+   * Adds time spent waiting for report content outside of the tracked stream, such as copying it to a local file.
+   */
+  public void addReadNanos(long nanos) {
+    readNanos += nanos;
+  }
+
+  /**
+   * Returns the time spent waiting for report content.
+   */
+  public long getReadNanos() {
+    return readNanos;
+  }
+
+  /**
+   * Returns the metrics of the download, other than bytes and records, which are tracked by the progress itself.
+   */
+  public ReportMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Marks the download as completely read.
+   */
+  public void finish() {
+    finished = true;
+  }
+
+  public void recordRead() {
+    // only the thread reading the report counts its records
+    recordsRead++;
+  }
+
+  public long getRecordsRead() {
+    return recordsRead;
+  }
+
+  public long getBytesRead() {
+    return inputStream == null ? 0 : inputStream.getCount();
+  }
+
+  public float getProgress() {
+    if (finished) {
+      return 1f;
+    }
+    float progress = (float) getBytesRead() / expectedBytes;
+    return Math.min(progress, estimated ? MAX_ESTIMATED_PROGRESS : 1f);
+  }
+
+  /**
+   * Measures the time spent in reads of the wrapped stream.
+   */
+  private class TimedInputStream extends FilterInputStream {
+
+    private TimedInputStream(InputStream inputStream) {
+      super(inputStream);
+    }
+
+    @Override
+    public int read() throws IOException {
+      long start = System.nanoTime();
+      try {
+        return super.read();
+      } finally {
+        readNanos += System.nanoTime() - start;
+      }
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      long start = System.nanoTime();
+      try {
+        return super.read(b, off, len);
+      } finally {
+        readNanos += System.nanoTime() - start;
+      }
+    }
+  }
+}
@@ -16,9 +16,14 @@
 package io.cdap.plugin.googleads.common;
 
 import com.google.api.ads.adwords.axis.factory.AdWordsServices;
+import com.google.api.ads.adwords.axis.utils.v201809.SelectorBuilder;
+import com.google.api.ads.adwords.axis.v201809.cm.ApiException;
 import com.google.api.ads.adwords.axis.v201809.cm.ReportDefinitionField;
 import com.google.api.ads.adwords.axis.v201809.cm.ReportDefinitionReportType;
 import com.google.api.ads.adwords.axis.v201809.cm.ReportDefinitionServiceInterface;
+import com.google.api.ads.adwords.axis.v201809.mcm.ManagedCustomer;
+import com.google.api.ads.adwords.axis.v201809.mcm.ManagedCustomerPage;
+import com.google.api.ads.adwords.axis.v201809.mcm.ManagedCustomerServiceInterface;
 import com.google.api.ads.adwords.lib.client.AdWordsSession;
 import com.google.api.ads.adwords.lib.client.reporting.ReportingConfiguration;
 import com.google.api.ads.adwords.lib.factory.AdWordsServicesInterface;
@@ -31,35 +36,72 @@ import com.google.api.ads.adwords.lib.utils.ReportDownloadResponse;
 import com.google.api.ads.adwords.lib.utils.ReportDownloadResponseException;
 import com.google.api.ads.adwords.lib.utils.ReportException;
 import com.google.api.ads.adwords.lib.utils.v201809.ReportDownloaderInterface;
-import com.google.api.ads.common.lib.auth.OfflineCredentials;
 import com.google.api.ads.common.lib.exception.OAuthException;
 import com.google.api.ads.common.lib.exception.ValidationException;
 import com.google.api.client.auth.oauth2.Credential;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CharStreams;
 import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.plugin.googleads.source.multiple.MultiReportBatchSourceGoogleAdsConfig;
+import io.cdap.plugin.googleads.source.multiple.OutputMode;
 import io.cdap.plugin.googleads.source.single.BatchSourceGoogleAdsConfig;
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVParser;
-import org.apache.commons.csv.CSVRecord;
+import org.apache.hadoop.conf.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.Reader;
 import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import javax.annotation.Nullable;
 
 /**
  * Helper class to incorporate GoogleAds api interaction
  */
 public class GoogleAdsHelper {
 
+  private static final int MANAGED_CUSTOMER_PAGE_SIZE = 500;
+  private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+  private static final Logger log = LoggerFactory.getLogger(GoogleAdsHelper.class);
+
+  private final RetryPolicy retryPolicy;
+
+  public GoogleAdsHelper() {
+    this(RetryPolicy.getDefault());
+  }
+
+  public GoogleAdsHelper(RetryPolicy retryPolicy) {
+    this.retryPolicy = retryPolicy;
+  }
+
   private ReportingConfiguration getReportingConfiguration(BaseGoogleAdsConfig baseGoogleAdsConfig) {
     ReportingConfiguration.Builder builder = new ReportingConfiguration.Builder();
     if (baseGoogleAdsConfig instanceof MultiReportBatchSourceGoogleAdsConfig) {
       MultiReportBatchSourceGoogleAdsConfig config = (MultiReportBatchSourceGoogleAdsConfig) baseGoogleAdsConfig;
-      builder = builder.skipReportHeader(!config.includeReportHeader)
-        .skipColumnHeader(!config.includeColumnHeader);
+      // parsed rows must not contain header rows
+      boolean parseRows = config.getOutputMode() == OutputMode.ROWS;
+      builder = builder.skipReportHeader(parseRows || !config.includeReportHeader)
+        .skipColumnHeader(parseRows || !config.includeColumnHeader);
     } else {
       builder = builder.skipReportHeader(true)
         .skipColumnHeader(true);
@@ -70,45 +112,218 @@ public class GoogleAdsHelper {
   }
 
   public AdWordsSession getAdWordsSession(BaseGoogleAdsConfig baseGoogleAdsConfig)
+    throws OAuthException, ValidationException {
+    return getAdWordsSession(baseGoogleAdsConfig, baseGoogleAdsConfig.getDefaultClientCustomerId());
+  }
+
+  public AdWordsSession getAdWordsSession(BaseGoogleAdsConfig baseGoogleAdsConfig, @Nullable String customerId)
     throws OAuthException, ValidationException {
     AdWordsSession session;
-    Credential credential = new OfflineCredentials.Builder()
-      .forApi(OfflineCredentials.Api.ADWORDS)
-      .withClientSecrets(baseGoogleAdsConfig.clientId, baseGoogleAdsConfig.clientSecret)
-      .withRefreshToken(baseGoogleAdsConfig.refreshToken)
-      .build()
-      .generateCredential();
-
-    session = new AdWordsSession.Builder()
-      .withClientCustomerId(baseGoogleAdsConfig.clientCustomerId)
+    // sessions are mutable and cheap to build, the pooled credential avoids a token exchange per session
+    Credential credential = AdWordsCredentialPool.getInstance().getCredential(baseGoogleAdsConfig.clientId,
+                                                                              baseGoogleAdsConfig.clientSecret,
+                                                                              baseGoogleAdsConfig.refreshToken);
+
+    AdWordsSession.Builder builder = new AdWordsSession.Builder()
+      .withClientCustomerId(customerId)
       .withDeveloperToken(baseGoogleAdsConfig.developerToken)
-      .withOAuth2Credential(credential)
-      .build();
+      .withOAuth2Credential(credential);
+    if (baseGoogleAdsConfig.getEndpoint() != null) {
+      builder = builder.withEndpoint(baseGoogleAdsConfig.getEndpoint());
+    }
+    session = builder.build();
     return session;
   }
 
   public List<StructuredRecord> buildReportStructure(BatchSourceGoogleAdsConfig config)
     throws IOException, OAuthException, ValidationException, ReportDownloadResponseException, ReportException {
     String report = downloadReport(config, null);
-    Reader reader = new StringReader(report);
-    CSVParser csvParser = new CSVParser(reader, CSVFormat.DEFAULT);
-
     List<StructuredRecord> reportStructure = new ArrayList<>();
-    List<String> reportFields = config.getReportFields();
-
-    for (CSVRecord csvRecord : csvParser) {
-      Iterator<String> reportFieldsIterator = reportFields.iterator();
-      Iterator<String> csvRecordIterator = csvRecord.iterator();
-      StructuredRecord.Builder builder = StructuredRecord.builder(config.getSchema());
-      while (reportFieldsIterator.hasNext() && csvRecordIterator.hasNext()) {
-        builder.set(reportFieldsIterator.next(), csvRecordIterator.next());
-      }
-      reportStructure.add(builder.build());
+    try (ReportRecordIterator iterator = new ReportRecordIterator(new StringReader(report), config.getSchema(),
+                                                                  config.getReportFields())) {
+      iterator.forEachRemaining(reportStructure::add);
     }
     return reportStructure;
   }
 
+  /**
+   * Downloads the report and returns an iterator which parses records directly from the response stream,
+   * without materializing the whole report in memory. The iterator must be closed to release the connection.
+   */
+  public ReportRecordIterator buildReportIterator(BatchSourceGoogleAdsConfig config, GoogleAdsReportSplit split)
+    throws IOException, OAuthException, ValidationException, ReportDownloadResponseException, ReportException {
+    return buildReportIterator(config, split, config.getSchema());
+  }
+
+  /**
+   * Same as {@link #buildReportIterator(BatchSourceGoogleAdsConfig, GoogleAdsReportSplit)}, but uses the already
+   * resolved output schema, so typed schemas do not need to query report field types again.
+   */
+  public ReportRecordIterator buildReportIterator(BatchSourceGoogleAdsConfig config, GoogleAdsReportSplit split,
+                                                  Schema schema)
+    throws IOException, OAuthException, ValidationException, ReportDownloadResponseException, ReportException {
+    return buildReportIterator(config, split, schema, new DownloadProgress(1, true));
+  }
+
+  /**
+   * Same as {@link #buildReportIterator(BatchSourceGoogleAdsConfig, GoogleAdsReportSplit, Schema)}, but counts
+   * the downloaded bytes in the given progress.
+   */
+  public ReportRecordIterator buildReportIterator(BatchSourceGoogleAdsConfig config, GoogleAdsReportSplit split,
+                                                  Schema schema, DownloadProgress progress)
+    throws IOException, OAuthException, ValidationException, ReportDownloadResponseException, ReportException {
+    InputStream inputStream;
+    if (config.isSpillToDisk()) {
+      Path file = downloadReportFile(config, split, progress);
+      try {
+        // the file is deleted once the iterator, and with it the channel, is closed
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.DELETE_ON_CLOSE);
+        progress.expect(channel.size());
+        inputStream = Channels.newInputStream(channel);
+      } catch (IOException e) {
+        Files.deleteIfExists(file);
+        throw e;
+      }
+    } else {
+      long start = System.nanoTime();
+      inputStream = openReportStream(config, split, progress);
+      addTimeToFirstByte(progress, start);
+    }
+    Reader reader = openReportReader(progress.track(inputStream), config.getDownloadFormat());
+    Map<String, String> constantValues = config.isMultiCustomer()
+      ? Collections.singletonMap(BatchSourceGoogleAdsConfig.CLIENT_CUSTOMER_ID_FIELD, getCustomerId(config, split))
+      : Collections.emptyMap();
+    return new ReportRecordIterator(reader, schema, config.getReportFields(), constantValues);
+  }
+
+  /**
+   * Downloads the report of the split into a local temporary file. The download is retried as a whole if the
+   * connection breaks while the report body is transferred, so parsing never sees a partial report. Failed
+   * requests and broken transfers share one retry budget.
+   */
+  protected Path downloadReportFile(BaseGoogleAdsConfig config, GoogleAdsReportSplit split,
+                                    DownloadProgress progress)
+    throws IOException, OAuthException, ValidationException, ReportDownloadResponseException, ReportException {
+    RetryPolicy.Attempts attempts = retryPolicy.start();
+    while (true) {
+      long start = System.nanoTime();
+      InputStream reportStream = openReportStream(config, split, progress, attempts);
+      addTimeToFirstByte(progress, start);
+      long copyStart = System.nanoTime();
+      Path file = Files.createTempFile("google-ads-report-", ".tmp");
+      try (InputStream inputStream = reportStream) {
+        Files.copy(inputStream, file, StandardCopyOption.REPLACE_EXISTING);
+        return file;
+      } catch (IOException e) {
+        Files.deleteIfExists(file);
+        ReportException error = new ReportException(String.format("Failed to download report %s", split), e);
+        long delay = attempts.onFailure(error);
+        if (delay < 0) {
+          throw error;
+        }
+        progress.getMetrics().add(ReportCounter.DOWNLOAD_RETRIES, 1);
+        log.debug("Retrying download of report {} in {} ms after failure: {}", split, delay, e.toString());
+        sleep(delay);
+      } finally {
+        progress.addReadNanos(System.nanoTime() - copyStart);
+      }
+    }
+  }
+
+  private static void addTimeToFirstByte(DownloadProgress progress, long startNanos) {
+    progress.getMetrics().add(ReportCounter.TIME_TO_FIRST_BYTE_MILLIS,
+                              TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+  }
+
+  /**
+   * Returns the customer IDs reports are downloaded for. If client discovery is enabled, the configured
+   * customers are treated as manager accounts and all client accounts under them are returned.
+   */
+  public List<String> getClientCustomerIds(BaseGoogleAdsConfig config)
+    throws OAuthException, ValidationException, IOException {
+    if (!config.isDiscoverClientCustomers()) {
+      return config.getClientCustomerIds();
+    }
+    Set<String> clientCustomerIds = new LinkedHashSet<>();
+    for (String managerCustomerId : config.getClientCustomerIds()) {
+      clientCustomerIds.addAll(getManagedClientCustomerIds(config, managerCustomerId));
+    }
+    return new ArrayList<>(clientCustomerIds);
+  }
+
+  /**
+   * Returns the customers splits are planned for. If the config has a single customer, its splits use the default
+   * client customer of the session, so the only customer is returned as null.
+   */
+  public List<String> getPlannedCustomerIds(BaseGoogleAdsConfig config)
+    throws OAuthException, ValidationException, IOException {
+    return config.isMultiCustomer() ? getClientCustomerIds(config) : Collections.singletonList(null);
+  }
+
+  /**
+   * Sets the watermarks of the given reports and of the customers planned by a completed incremental run to the
+   * end date of that run.
+   *
+   * @param customerIds customers as returned by {@link #getPlannedCustomerIds(BaseGoogleAdsConfig)} when the run
+   *                    was planned
+   */
+  public void updateWatermarks(BaseGoogleAdsConfig config, Collection<String> reportNames,
+                               Collection<String> customerIds, String endDate) throws IOException {
+    List<String> watermarkCustomerIds = customerIds.stream()
+      .map(customerId -> customerId == null ? config.getDefaultClientCustomerId() : customerId)
+      .collect(Collectors.toList());
+    new WatermarkStore(config.getWatermarkDirectory(), new Configuration())
+      .update(reportNames, watermarkCustomerIds, endDate);
+  }
+
+  private List<String> getManagedClientCustomerIds(BaseGoogleAdsConfig config, String managerCustomerId)
+    throws OAuthException, ValidationException, IOException {
+    AdWordsSession session = getAdWordsSession(config, managerCustomerId);
+    ManagedCustomerServiceInterface managedCustomerService =
+      AdWordsServices.getInstance().get(session, ManagedCustomerServiceInterface.class);
+
+    List<String> clientCustomerIds = new ArrayList<>();
+    int offset = 0;
+    ManagedCustomerPage page;
+    do {
+      page = managedCustomerService.get(new SelectorBuilder()
+                                          .fields("CustomerId", "CanManageClients")
+                                          .offset(offset)
+                                          .limit(MANAGED_CUSTOMER_PAGE_SIZE)
+                                          .build());
+      if (page.getEntries() != null) {
+        for (ManagedCustomer customer : page.getEntries()) {
+          // manager accounts, including the requested one, have no reports of their own
+          if (!Boolean.TRUE.equals(customer.getCanManageClients())) {
+            clientCustomerIds.add(String.valueOf(customer.getCustomerId()));
+          }
+        }
+      }
+      offset += MANAGED_CUSTOMER_PAGE_SIZE;
+    } while (page.getTotalNumEntries() != null && offset < page.getTotalNumEntries());
+    return clientCustomerIds;
+  }
+
+  private String getCustomerId(BaseGoogleAdsConfig config, GoogleAdsReportSplit split) {
+    return split.getCustomerId() == null ? config.getDefaultClientCustomerId() : split.getCustomerId();
+  }
+
   public ReportDefinitionField[] getReportDefinitionFields(BaseGoogleAdsConfig config, String reportType)
+    throws OAuthException, ValidationException, IOException {
+    ReportDefinitionCache cache = ReportDefinitionCache.getInstance();
+    long ttlMillis = ReportDefinitionCache.toTtlMillis(config.getMetadataCacheTtl());
+    ReportDefinitionField[] fields = cache.get(reportType, ttlMillis, config.getMetadataCacheDirectory());
+    if (fields != null) {
+      return fields;
+    }
+    fields = fetchReportDefinitionFields(config, reportType);
+    if (ttlMillis > 0) {
+      cache.put(reportType, fields, config.getMetadataCacheDirectory());
+    }
+    return fields;
+  }
+
+  protected ReportDefinitionField[] fetchReportDefinitionFields(BaseGoogleAdsConfig config, String reportType)
     throws OAuthException, ValidationException, IOException {
     AdWordsSession session = getAdWordsSession(config);
     AdWordsServicesInterface adWordsServices = AdWordsServices.getInstance();
@@ -116,48 +331,184 @@ public class GoogleAdsHelper {
     ReportDefinitionServiceInterface reportDefinitionService =
       adWordsServices.get(session, ReportDefinitionServiceInterface.class);
 
-    // Get report fields.
-    return reportDefinitionService
-      .getReportFields(ReportDefinitionReportType.fromValue(reportType));
+    // Get report fields, waiting out rate limits.
+    RetryPolicy.Attempts attempts = retryPolicy.start();
+    while (true) {
+      try {
+        return reportDefinitionService
+          .getReportFields(ReportDefinitionReportType.fromValue(reportType));
+      } catch (ApiException e) {
+        long delay = attempts.onFailure(e);
+        if (delay < 0) {
+          throw e;
+        }
+        log.debug("Retrying report definition request in {} ms after failure: {}", delay, e.toString());
+        sleep(delay);
+      }
+    }
   }
 
   public String downloadReport(BaseGoogleAdsConfig config, String reportName)
     throws OAuthException, ValidationException, IOException, ReportException, ReportDownloadResponseException {
-    ReportDownloaderInterface reportDownloader = getReportDownloaderInterface(config);
-    ReportDefinition reportDefinition = getReportDefinition(config, reportName);
+    return downloadSplitReport(config, new GoogleAdsReportSplit(reportName));
+  }
+
+  public String downloadSplitReport(BaseGoogleAdsConfig config, GoogleAdsReportSplit split)
+    throws OAuthException, ValidationException, IOException, ReportException, ReportDownloadResponseException {
+    return downloadSplitReport(config, split, new DownloadProgress(1, true));
+  }
+
+  /**
+   * Downloads the report of the split as a string, counting the downloaded bytes in the given progress.
+   */
+  public String downloadSplitReport(BaseGoogleAdsConfig config, GoogleAdsReportSplit split,
+                                    DownloadProgress progress)
+    throws OAuthException, ValidationException, IOException, ReportException, ReportDownloadResponseException {
+    try (Reader reader = openSplitReport(config, split, progress)) {
+      return CharStreams.toString(reader);
+    }
+  }
 
-    int maxTries = 3;
-    int count = 0;
+  /**
+   * Downloads the report of the split as the raw response bytes, without decoding or decompressing them,
+   * counting the downloaded bytes in the given progress.
+   */
+  public byte[] downloadSplitReportBytes(BaseGoogleAdsConfig config, GoogleAdsReportSplit split,
+                                         DownloadProgress progress)
+    throws OAuthException, ValidationException, IOException, ReportException, ReportDownloadResponseException {
+    long start = System.nanoTime();
+    InputStream reportStream = openReportStream(config, split, progress);
+    addTimeToFirstByte(progress, start);
+    try (InputStream inputStream = progress.track(reportStream)) {
+      return ByteStreams.toByteArray(inputStream);
+    }
+  }
+
+  /**
+   * Downloads the report of the split and returns a reader over the response stream, counting the downloaded
+   * bytes in the given progress. Gzipped reports are decompressed. The reader must be closed to release the
+   * connection.
+   */
+  public Reader openSplitReport(BaseGoogleAdsConfig config, GoogleAdsReportSplit split, DownloadProgress progress)
+    throws OAuthException, ValidationException, IOException, ReportException, ReportDownloadResponseException {
+    long start = System.nanoTime();
+    InputStream reportStream = openReportStream(config, split, progress);
+    addTimeToFirstByte(progress, start);
+    DownloadFormat downloadFormat = config instanceof BatchSourceGoogleAdsConfig
+      ? ((BatchSourceGoogleAdsConfig) config).getDownloadFormat()
+      : ((MultiReportBatchSourceGoogleAdsConfig) config).getDownloadFormat();
+    return openReportReader(progress.track(reportStream), downloadFormat);
+  }
+
+  /**
+   * Opens a reader over the report content. Gzipped reports are decompressed while they are read,
+   * so the uncompressed report is never held in memory.
+   */
+  public static Reader openReportReader(InputStream inputStream, DownloadFormat downloadFormat) throws IOException {
+    InputStream content = downloadFormat == DownloadFormat.GZIPPED_CSV || downloadFormat == DownloadFormat.GZIPPED_XML
+      ? new GZIPInputStream(inputStream, GZIP_BUFFER_SIZE)
+      : inputStream;
+    return new InputStreamReader(content, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Downloads the report of the split, retrying failed requests, and returns the response body, which must be
+   * closed. Retries are counted in the metrics of the given progress. If concurrency is limited, the quota permit
+   * of the download is held until the body is closed or read to the end, so the limit applies to whole downloads
+   * rather than to request starts.
+   */
+  protected InputStream openReportStream(BaseGoogleAdsConfig config, GoogleAdsReportSplit split,
+                                         DownloadProgress progress)
+    throws OAuthException, ValidationException, IOException, ReportException, ReportDownloadResponseException {
+    return openReportStream(config, split, progress, retryPolicy.start());
+  }
+
+  /**
+   * Same as {@link #openReportStream(BaseGoogleAdsConfig, GoogleAdsReportSplit, DownloadProgress)}, but counts
+   * failed requests against the given attempts, so callers retrying the transfer of the body share one retry
+   * budget.
+   */
+  private InputStream openReportStream(BaseGoogleAdsConfig config, GoogleAdsReportSplit split,
+                                       DownloadProgress progress, RetryPolicy.Attempts attempts)
+    throws OAuthException, ValidationException, IOException, ReportException, ReportDownloadResponseException {
+    QuotaGovernor quotaGovernor = QuotaGovernor.forConfig(config);
     while (true) {
+      long delay;
+      // every attempt counts against the quota
+      QuotaGovernor.Permit permit = quotaGovernor == null ? null : quotaGovernor.acquire();
+      boolean downloading = false;
       try {
-        ReportDownloadResponse response = reportDownloader.downloadReport(
-          reportDefinition);
-        return response.getAsString();
-      } catch (ReportException e) {
-        if (++count == maxTries) {
+        ReportDownloadResponse response = downloadReportResponse(config, split);
+        if (attempts.getRetries() > 0) {
+          log.info("Downloaded report {} after {} retries and {} ms of backoff, last failure: {}", split,
+                   attempts.getRetries(), attempts.getWaitMillis(), attempts.getLastError().toString());
+        }
+        InputStream inputStream = response.getInputStream();
+        downloading = true;
+        return permit == null ? inputStream : permit.holdWhileReading(inputStream);
+      } catch (ReportException | ReportDownloadResponseException e) {
+        delay = attempts.onFailure(e);
+        if (delay < 0) {
+          log.warn("Failed to download report {} after {} retries and {} ms of backoff", split,
+                   attempts.getRetries(), attempts.getWaitMillis(), e);
           throw e;
         }
+        progress.getMetrics().add(ReportCounter.DOWNLOAD_RETRIES, 1);
+        log.debug("Retrying download of report {} in {} ms after failure: {}", split, delay, e.toString());
+      } finally {
+        // the slot is not held while waiting to retry
+        if (!downloading && permit != null) {
+          permit.close();
+        }
       }
+      sleep(delay);
     }
   }
 
-  protected ReportDownloaderInterface getReportDownloaderInterface(BaseGoogleAdsConfig config)
+  /**
+   * Sends one download request for the report of the split, without retries or quota limits.
+   */
+  protected ReportDownloadResponse downloadReportResponse(BaseGoogleAdsConfig config, GoogleAdsReportSplit split)
+    throws OAuthException, ValidationException, IOException, ReportException, ReportDownloadResponseException {
+    ReportDownloaderInterface reportDownloader = getReportDownloaderInterface(config, getCustomerId(config, split));
+    AwqlQuery awqlQuery = config instanceof BatchSourceGoogleAdsConfig
+      ? ((BatchSourceGoogleAdsConfig) config).getAwqlQuery()
+      : null;
+    if (awqlQuery == null) {
+      return reportDownloader.downloadReport(getReportDefinition(config, split));
+    }
+    String query = awqlQuery.toQuery(getStartDate(config, split), getEndDate(config, split));
+    return reportDownloader.downloadReport(query, ((BatchSourceGoogleAdsConfig) config).getDownloadFormat());
+  }
+
+  private static void sleep(long millis) throws InterruptedIOException {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting to retry report download");
+    }
+  }
+
+  protected ReportDownloaderInterface getReportDownloaderInterface(BaseGoogleAdsConfig config,
+                                                                  @Nullable String customerId)
     throws OAuthException, ValidationException {
-    AdWordsSession session = getAdWordsSession(config);
+    AdWordsSession session = getAdWordsSession(config, customerId);
     session.setReportingConfiguration(getReportingConfiguration(config));
     AdWordsServicesInterface adWordsServices = AdWordsServices.getInstance();
     return adWordsServices.getUtility(session, ReportDownloaderInterface.class);
   }
 
   private ReportDefinition getReportDefinition(BaseGoogleAdsConfig config,
-                                               String reportPreset)
+                                               GoogleAdsReportSplit split)
     throws IOException {
+    String reportPreset = split.getReportName();
     MultiReportBatchSourceGoogleAdsConfig multiReportConfig = null;
     BatchSourceGoogleAdsConfig singleReportConfig = null;
     ReportPreset preset = null;
     if (config instanceof MultiReportBatchSourceGoogleAdsConfig) {
       multiReportConfig = (MultiReportBatchSourceGoogleAdsConfig) config;
-      ReportPresetHelper presetHelper = new ReportPresetHelper();
+      ReportPresetHelper presetHelper = multiReportConfig.getReportPresetHelper();
       preset = presetHelper.getReportPreset(reportPreset);
     }
     if (config instanceof BatchSourceGoogleAdsConfig) {
@@ -168,10 +519,12 @@ public class GoogleAdsHelper {
       selector.getFields().addAll(preset.getFields());
     } else if (singleReportConfig != null) {
       selector.getFields().addAll(singleReportConfig.getReportFields());
+      // rows are filtered by Google, so filtered rows are never downloaded
+      selector.getPredicates().addAll(singleReportConfig.getFilters());
     }
     DateRange dateRange = new DateRange();
-    dateRange.setMax(config.getEndDate());
-    dateRange.setMin(config.getStartDate());
+    dateRange.setMax(getEndDate(config, split));
+    dateRange.setMin(getStartDate(config, split));
     selector.setDateRange(dateRange);
 
     // Create report definition.
@@ -180,13 +533,21 @@ public class GoogleAdsHelper {
     if (preset != null && multiReportConfig != null) {
       reportDefinition.setReportName(reportPreset);
       reportDefinition.setReportType(preset.getType());
-      reportDefinition.setDownloadFormat(multiReportConfig.getReportFormat());
+      reportDefinition.setDownloadFormat(multiReportConfig.getDownloadFormat());
     } else if (singleReportConfig != null) {
       reportDefinition.setReportName(singleReportConfig.getReportType().value());
       reportDefinition.setReportType(singleReportConfig.getReportType());
-      reportDefinition.setDownloadFormat(DownloadFormat.CSV);
+      reportDefinition.setDownloadFormat(singleReportConfig.getDownloadFormat());
     }
     reportDefinition.setSelector(selector);
     return reportDefinition;
   }
+
+  private static String getStartDate(BaseGoogleAdsConfig config, GoogleAdsReportSplit split) {
+    return split.getStartDate() == null ? config.getStartDate() : split.getStartDate();
+  }
+
+  private static String getEndDate(BaseGoogleAdsConfig config, GoogleAdsReportSplit split) {
+    return split.getEndDate() == null ? config.getEndDate() : split.getEndDate();
+  }
 }
@@ -22,34 +22,72 @@ import org.apache.hadoop.mapreduce.InputSplit;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import javax.annotation.Nullable;
 
 /**
- * GoogleAds split by report preset.
+ * GoogleAds split by report preset and, optionally, by client customer and date range.
  */
 public class GoogleAdsReportSplit extends InputSplit implements Writable {
 
   private String reportName;
+  @Nullable
+  private String customerId;
+  @Nullable
+  private String startDate;
+  @Nullable
+  private String endDate;
+  private long expectedBytes;
 
   public GoogleAdsReportSplit() {
   }
 
   public GoogleAdsReportSplit(String reportName) {
+    this(reportName, null, null, null);
+  }
+
+  public GoogleAdsReportSplit(String reportName, @Nullable String startDate, @Nullable String endDate) {
+    this(reportName, null, startDate, endDate);
+  }
+
+  public GoogleAdsReportSplit(String reportName, @Nullable String customerId,
+                              @Nullable String startDate, @Nullable String endDate) {
+    this(reportName, customerId, startDate, endDate, 0);
+  }
+
+  /**
+   * Creates a split with the number of bytes its report is expected to have, so that larger splits can be
+   * scheduled first.
+   */
+  public GoogleAdsReportSplit(String reportName, @Nullable String customerId,
+                              @Nullable String startDate, @Nullable String endDate, long expectedBytes) {
     this.reportName = reportName;
+    this.customerId = customerId;
+    this.startDate = startDate;
+    this.endDate = endDate;
+    this.expectedBytes = expectedBytes;
   }
 
   @Override
   public void readFields(DataInput dataInput) throws IOException {
     reportName = dataInput.readUTF();
+    customerId = readNullableString(dataInput);
+    startDate = readNullableString(dataInput);
+    endDate = readNullableString(dataInput);
+    expectedBytes = dataInput.readLong();
   }
 
   @Override
   public void write(DataOutput dataOutput) throws IOException {
     dataOutput.writeUTF(reportName);
+    writeNullableString(dataOutput, customerId);
+    writeNullableString(dataOutput, startDate);
+    writeNullableString(dataOutput, endDate);
+    dataOutput.writeLong(expectedBytes);
   }
 
   @Override
   public long getLength() {
-    return 0;
+    return expectedBytes;
   }
 
   @Override
@@ -57,7 +95,48 @@ public class GoogleAdsReportSplit extends InputSplit implements Writable {
     return new String[0];
   }
 
+  @Override
+  public String toString() {
+    return String.format("%s [customer %s, %s - %s]", reportName, customerId, startDate, endDate);
+  }
+
   public String getReportName() {
     return reportName;
   }
+
+  /**
+   * Returns the client customer ID the split is downloaded for, or null if the configured customer is used.
+   */
+  @Nullable
+  public String getCustomerId() {
+    return customerId;
+  }
+
+  /**
+   * Returns the first day of the split in YYYYMMDD format, or null if the split covers the configured date range.
+   */
+  @Nullable
+  public String getStartDate() {
+    return startDate;
+  }
+
+  /**
+   * Returns the last day of the split in YYYYMMDD format, or null if the split covers the configured date range.
+   */
+  @Nullable
+  public String getEndDate() {
+    return endDate;
+  }
+
+  @Nullable
+  private static String readNullableString(DataInput dataInput) throws IOException {
+    return dataInput.readBoolean() ? dataInput.readUTF() : null;
+  }
+
+  private static void writeNullableString(DataOutput dataOutput, @Nullable String value) throws IOException {
+    dataOutput.writeBoolean(value != null);
+    if (value != null) {
+      dataOutput.writeUTF(value);
+    }
+  }
 }
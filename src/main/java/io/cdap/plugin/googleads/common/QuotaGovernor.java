@@ -0,0 +1,256 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.googleads.common;
+
+import com.google.common.base.Strings;
+import com.google.common.hash.Hashing;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.Nullable;
+
+/**
+ * Limits the rate and the concurrency of report downloads per developer token across all tasks which share a
+ * lock directory. The rate is enforced with a token bucket whose state is kept in a locked file, the concurrency
+ * with a fixed number of slot files of which each running download holds a lock. With a local directory the
+ * limits apply to all tasks on one machine, with a directory on a shared file system supporting locks they
+ * apply to the whole cluster.
+ */
+public class QuotaGovernor {
+
+  private static final long POLL_MILLIS = 50;
+  private static final int BUCKET_STATE_SIZE = Double.BYTES + Long.BYTES;
+  // file locks belong to the JVM, so threads of one JVM are coordinated in memory
+  private static final Map<Path, Object> BUCKET_MONITORS = new ConcurrentHashMap<>();
+  private static final Set<Path> HELD_SLOTS = ConcurrentHashMap.newKeySet();
+
+  private final Path directory;
+  private final double requestsPerSecond;
+  private final int maxConcurrentRequests;
+
+  /**
+   * @param directory directory which holds the bucket and slot files of one developer token
+   * @param requestsPerSecond maximum number of requests per second, not limited if not positive
+   * @param maxConcurrentRequests maximum number of concurrent requests, not limited if not positive
+   * @throws IOException if the directory cannot be created
+   */
+  public QuotaGovernor(Path directory, double requestsPerSecond, int maxConcurrentRequests) throws IOException {
+    this.directory = Files.createDirectories(directory);
+    this.requestsPerSecond = requestsPerSecond;
+    this.maxConcurrentRequests = maxConcurrentRequests;
+  }
+
+  /**
+   * Returns the governor of the developer token of the config, or null if the config sets no quota limits.
+   */
+  @Nullable
+  public static QuotaGovernor forConfig(BaseGoogleAdsConfig config) throws IOException {
+    if (config.getMaxRequestsPerSecond() <= 0 && config.getMaxConcurrentRequests() <= 0) {
+      return null;
+    }
+    // the token itself is not written to disk
+    String tokenHash = Hashing.sha256()
+      .hashString(Strings.nullToEmpty(config.developerToken), StandardCharsets.UTF_8)
+      .toString()
+      .substring(0, 16);
+    Path directory = Paths.get(config.getQuotaLockDirectory(), "google-ads-quota", tokenHash);
+    return new QuotaGovernor(directory, config.getMaxRequestsPerSecond(), config.getMaxConcurrentRequests());
+  }
+
+  /**
+   * Blocks until a request may be sent. The returned permit must be closed once the response has been read.
+   */
+  public Permit acquire() throws IOException {
+    Permit permit = maxConcurrentRequests > 0 ? acquireSlot() : new Permit(null, null, null);
+    try {
+      if (requestsPerSecond > 0) {
+        takeToken();
+      }
+    } catch (IOException e) {
+      permit.close();
+      throw e;
+    }
+    return permit;
+  }
+
+  private Permit acquireSlot() throws IOException {
+    while (true) {
+      for (int slot = 0; slot < maxConcurrentRequests; slot++) {
+        Path path = directory.resolve("slot-" + slot);
+        // closing any channel of a locked file may release the lock, so a slot held in this JVM is not touched
+        if (!HELD_SLOTS.add(path)) {
+          continue;
+        }
+        FileChannel channel = null;
+        try {
+          channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+          FileLock lock = channel.tryLock();
+          if (lock != null) {
+            return new Permit(path, channel, lock);
+          }
+        } catch (IOException | RuntimeException e) {
+          closeQuietly(channel);
+          HELD_SLOTS.remove(path);
+          throw e;
+        }
+        channel.close();
+        HELD_SLOTS.remove(path);
+      }
+      sleep(POLL_MILLIS);
+    }
+  }
+
+  private void takeToken() throws IOException {
+    Path path = directory.resolve("bucket");
+    Object monitor = BUCKET_MONITORS.computeIfAbsent(path, key -> new Object());
+    double capacity = Math.max(1, requestsPerSecond);
+    while (true) {
+      long waitMillis;
+      synchronized (monitor) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                                    StandardOpenOption.WRITE);
+             FileLock lock = channel.lock()) {
+          long now = System.currentTimeMillis();
+          ByteBuffer state = ByteBuffer.allocate(BUCKET_STATE_SIZE);
+          double tokens = capacity;
+          if (channel.read(state, 0) == BUCKET_STATE_SIZE) {
+            state.flip();
+            double storedTokens = state.getDouble();
+            long refilledAt = state.getLong();
+            tokens = Math.min(capacity, storedTokens + Math.max(0, now - refilledAt) * requestsPerSecond / 1000);
+          }
+          if (tokens >= 1) {
+            tokens -= 1;
+            waitMillis = 0;
+          } else {
+            waitMillis = (long) Math.ceil((1 - tokens) * 1000 / requestsPerSecond);
+          }
+          state.clear();
+          state.putDouble(tokens).putLong(now).flip();
+          channel.write(state, 0);
+        }
+      }
+      if (waitMillis == 0) {
+        return;
+      }
+      sleep(waitMillis);
+    }
+  }
+
+  private static void sleep(long millis) throws InterruptedIOException {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for Google Ads quota");
+    }
+  }
+
+  private static void closeQuietly(@Nullable Closeable closeable) {
+    if (closeable == null) {
+      return;
+    }
+    try {
+      closeable.close();
+    } catch (IOException e) {
+      // nothing to do, the original failure is rethrown
+    }
+  }
+
+  /**
+   * Permission to send one request, which holds a concurrency slot if concurrency is limited.
+   */
+  public static class Permit implements Closeable {
+    private final Path slot;
+    private final FileChannel channel;
+    private final FileLock lock;
+    // the download and the thread closing it on abort may close the permit at the same time
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private Permit(@Nullable Path slot, @Nullable FileChannel channel, @Nullable FileLock lock) {
+      this.slot = slot;
+      this.channel = channel;
+      this.lock = lock;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (channel == null || !closed.compareAndSet(false, true)) {
+        return;
+      }
+      try {
+        try {
+          lock.release();
+        } finally {
+          channel.close();
+        }
+      } finally {
+        HELD_SLOTS.remove(slot);
+      }
+    }
+
+    /**
+     * Returns a stream over the given response body which closes this permit once the body is closed or read to
+     * the end, so the permit is held for the whole download.
+     */
+    public InputStream holdWhileReading(InputStream inputStream) {
+      return new FilterInputStream(inputStream) {
+        @Override
+        public int read() throws IOException {
+          int value = super.read();
+          if (value < 0) {
+            Permit.this.close();
+          }
+          return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+          int count = super.read(buffer, offset, length);
+          if (count < 0) {
+            Permit.this.close();
+          }
+          return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+          try {
+            super.close();
+          } finally {
+            Permit.this.close();
+          }
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.googleads.common;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterator which splits a report into records of consecutive chunks while reading it from the underlying reader,
+ * so at most about one chunk of the report is held in memory. Chunks end at row boundaries, line breaks inside
+ * quoted values do not end a row. A chunk holds as many rows as fit into the chunk size, a row larger than the
+ * chunk size makes up a chunk of its own.
+ */
+public class ReportChunkIterator implements Iterator<StructuredRecord>, Closeable {
+
+  public static final String CHUNK_INDEX_FIELD = "chunk_index";
+  public static final String BYTE_OFFSET_FIELD = "byte_offset";
+  public static final String CHUNK_FIELD = "chunk";
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final Reader reader;
+  private final Schema schema;
+  private final long chunkBytes;
+  private final Map<String, String> constantValues;
+  private final char[] buffer = new char[BUFFER_SIZE];
+  // complete rows which were not emitted yet, followed by the part of the current row read so far
+  private final StringBuilder rows = new StringBuilder();
+  private int position;
+  private int limit;
+  private boolean endOfReport;
+  private boolean inQuotes;
+  private int completeLength;
+  private long completeBytes;
+  private long rowBytes;
+  private long byteOffset;
+  private int chunkIndex;
+  private StructuredRecord next;
+
+  /**
+   * Creates an iterator over chunks of the report.
+   *
+   * @param schema output schema, which contains the chunk fields and the constant fields
+   * @param chunkBytes maximum size of a chunk in UTF-8 bytes
+   * @param constantValues values, such as the report name, which are set on every record
+   */
+  public ReportChunkIterator(Reader reader, Schema schema, long chunkBytes, Map<String, String> constantValues) {
+    this.reader = reader;
+    this.schema = schema;
+    this.chunkBytes = chunkBytes;
+    this.constantValues = constantValues;
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (next == null) {
+      try {
+        next = readChunk();
+      } catch (IOException e) {
+        throw new UncheckedIOException("Failed to read report", e);
+      }
+    }
+    return next != null;
+  }
+
+  @Override
+  public StructuredRecord next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    StructuredRecord record = next;
+    next = null;
+    return record;
+  }
+
+  @Override
+  public void close() throws IOException {
+    reader.close();
+  }
+
+  private StructuredRecord readChunk() throws IOException {
+    while (true) {
+      if (position == limit) {
+        limit = endOfReport ? -1 : reader.read(buffer);
+        position = 0;
+        if (limit < 0) {
+          endOfReport = true;
+          limit = 0;
+          return readLastChunk();
+        }
+      }
+      char current = buffer[position++];
+      rows.append(current);
+      rowBytes += getUtf8Length(current);
+      if (current == '"') {
+        // escaped quotes toggle twice, so the parity tells whether a line break is inside a quoted value
+        inQuotes = !inQuotes;
+      } else if (current == '\n' && !inQuotes) {
+        StructuredRecord chunk = completeBytes > 0 && completeBytes + rowBytes > chunkBytes
+          ? takeCompleteRows()
+          : null;
+        completeLength = rows.length();
+        completeBytes += rowBytes;
+        rowBytes = 0;
+        if (chunk != null) {
+          return chunk;
+        }
+      }
+    }
+  }
+
+  private StructuredRecord readLastChunk() {
+    if (rows.length() == 0) {
+      return null;
+    }
+    // the last row may not end with a line break
+    if (completeBytes > 0 && rowBytes > 0 && completeBytes + rowBytes > chunkBytes) {
+      return takeCompleteRows();
+    }
+    completeLength = rows.length();
+    completeBytes += rowBytes;
+    rowBytes = 0;
+    return takeCompleteRows();
+  }
+
+  private StructuredRecord takeCompleteRows() {
+    String chunk = rows.substring(0, completeLength);
+    rows.delete(0, completeLength);
+    StructuredRecord.Builder builder = StructuredRecord.builder(schema)
+      .set(CHUNK_INDEX_FIELD, chunkIndex++)
+      .set(BYTE_OFFSET_FIELD, byteOffset)
+      .set(CHUNK_FIELD, chunk);
+    for (Map.Entry<String, String> constantValue : constantValues.entrySet()) {
+      builder.set(constantValue.getKey(), constantValue.getValue());
+    }
+    byteOffset += completeBytes;
+    completeLength = 0;
+    completeBytes = 0;
+    return builder.build();
+  }
+
+  private static int getUtf8Length(char value) {
+    if (value < 0x80) {
+      return 1;
+    }
+    if (value < 0x800) {
+      return 2;
+    }
+    // each half of a surrogate pair counts for half of the four bytes of the code point
+    return Character.isSurrogate(value) ? 2 : 3;
+  }
+}
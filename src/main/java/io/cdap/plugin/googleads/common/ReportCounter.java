@@ -0,0 +1,46 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.googleads.common;
+
+/**
+ * Counters published by the Google Ads record readers, as Hadoop counters and, except for OAuth refreshes, as
+ * metrics of the source stage.
+ */
+public enum ReportCounter {
+  BYTES_DOWNLOADED("report.bytes.downloaded"),
+  RECORDS_READ("report.records.read"),
+  SPLITS_READ("report.splits.read"),
+  // time until the report response starts, including retries of failed requests
+  TIME_TO_FIRST_BYTE_MILLIS("report.time.to.first.byte.ms"),
+  // time spent waiting for report content, from the network or a spilled copy
+  DOWNLOAD_MILLIS("report.download.ms"),
+  // time spent parsing and converting rows, excluding waiting for content
+  PARSE_MILLIS("report.parse.ms"),
+  DOWNLOAD_RETRIES("report.download.retries"),
+  // credentials are shared by all stages in a JVM, so refreshes are only published as a job-wide Hadoop counter
+  OAUTH_REFRESHES("oauth.refreshes");
+
+  private final String metricName;
+
+  ReportCounter(String metricName) {
+    this.metricName = metricName;
+  }
+
+  public String getMetricName() {
+    return metricName;
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.googleads.common;
+
+import com.google.api.ads.adwords.axis.v201809.cm.ReportDefinitionField;
+import com.google.gson.ExclusionStrategy;
+import com.google.gson.FieldAttributes;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Cache of report definition fields keyed by API version and report type. Entries are kept in memory for the
+ * lifetime of the JVM and, if a directory is given, in local files, so that validation and schema building do
+ * not query ReportDefinitionService every time. Entries older than the given TTL are ignored.
+ */
+public class ReportDefinitionCache {
+
+  public static final String API_VERSION = "v201809";
+
+  private static final Logger log = LoggerFactory.getLogger(ReportDefinitionCache.class);
+  private static final ReportDefinitionCache INSTANCE = new ReportDefinitionCache();
+  // Axis beans keep equals/hashCode bookkeeping in fields prefixed with "__"
+  private static final Gson GSON = new GsonBuilder()
+    .setExclusionStrategies(new ExclusionStrategy() {
+      @Override
+      public boolean shouldSkipField(FieldAttributes field) {
+        return field.getName().startsWith("__");
+      }
+
+      @Override
+      public boolean shouldSkipClass(Class<?> clazz) {
+        return false;
+      }
+    })
+    .create();
+
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+  public static ReportDefinitionCache getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Returns the cached fields of the report type, or null if there is no entry younger than the TTL.
+   */
+  @Nullable
+  public ReportDefinitionField[] get(String reportType, long ttlMillis, @Nullable String cacheDirectory) {
+    if (ttlMillis <= 0) {
+      return null;
+    }
+    String key = getKey(reportType);
+    long now = System.currentTimeMillis();
+    Entry entry = entries.get(key);
+    if (entry == null && cacheDirectory != null) {
+      entry = readEntry(getPath(cacheDirectory, reportType));
+      if (entry != null) {
+        entries.put(key, entry);
+      }
+    }
+    if (entry == null || now - entry.loadedAt > ttlMillis) {
+      return null;
+    }
+    return entry.fields.clone();
+  }
+
+  public void put(String reportType, ReportDefinitionField[] fields, @Nullable String cacheDirectory) {
+    Entry entry = new Entry(System.currentTimeMillis(), fields.clone());
+    entries.put(getKey(reportType), entry);
+    if (cacheDirectory != null) {
+      writeEntry(getPath(cacheDirectory, reportType), entry);
+    }
+  }
+
+  /**
+   * Removes all in-memory entries.
+   */
+  public void invalidateAll() {
+    entries.clear();
+  }
+
+  private static String getKey(String reportType) {
+    return API_VERSION + "/" + reportType;
+  }
+
+  private static Path getPath(String cacheDirectory, String reportType) {
+    return Paths.get(cacheDirectory, API_VERSION, reportType + ".json");
+  }
+
+  @Nullable
+  private static Entry readEntry(Path path) {
+    if (!Files.isRegularFile(path)) {
+      return null;
+    }
+    try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+      Entry entry = GSON.fromJson(reader, Entry.class);
+      return entry == null || entry.fields == null ? null : entry;
+    } catch (IOException | JsonParseException e) {
+      log.warn("Ignoring unreadable report definition cache file {}", path, e);
+      return null;
+    }
+  }
+
+  private static void writeEntry(Path path, Entry entry) {
+    try {
+      Files.createDirectories(path.getParent());
+      Path tempPath = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+      try (Writer writer = Files.newBufferedWriter(tempPath, StandardCharsets.UTF_8)) {
+        GSON.toJson(entry, writer);
+      }
+      Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      log.warn("Failed to write report definition cache file {}", path, e);
+    }
+  }
+
+  /**
+   * Converts the TTL in minutes to milliseconds.
+   */
+  public static long toTtlMillis(long ttlMinutes) {
+    return TimeUnit.MINUTES.toMillis(ttlMinutes);
+  }
+
+  /**
+   * Cached report fields with the time they were loaded.
+   */
+  private static class Entry {
+    private final long loadedAt;
+    private final ReportDefinitionField[] fields;
+
+    private Entry(long loadedAt, ReportDefinitionField[] fields) {
+      this.loadedAt = loadedAt;
+      this.fields = fields;
+    }
+  }
+}
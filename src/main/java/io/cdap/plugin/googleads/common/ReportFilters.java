@@ -0,0 +1,171 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.googleads.common;
+
+import com.google.api.ads.adwords.lib.jaxb.v201809.Predicate;
+import com.google.api.ads.adwords.lib.jaxb.v201809.PredicateOperator;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+
+/**
+ * Parses report filters into selector predicates, so that rows are filtered by Google before they are downloaded.
+ * Filters are separated by semicolons. Every filter is a field name, an operator and a comma separated list of
+ * values, for example {@code CampaignStatus IN ENABLED,PAUSED; Impressions > 0}. Operators are the names of
+ * {@link PredicateOperator}s or one of =, !=, >, >=, < and <=. Values that contain commas or semicolons are enclosed
+ * in double or single quotes, for example {@code CampaignName = "Foo, Inc"}; a backslash escapes the next character
+ * inside quotes.
+ */
+public class ReportFilters {
+
+  private static final Pattern SYMBOL_FILTER = Pattern.compile("(\\w+)\\s*(!=|>=|<=|=|>|<)\\s*(.*)");
+  private static final Pattern NAMED_FILTER = Pattern.compile("(\\w+)\\s+([A-Za-z_]+)\\s+(.*)");
+  private static final Map<String, PredicateOperator> SYMBOL_OPERATORS =
+    ImmutableMap.<String, PredicateOperator>builder()
+    .put("=", PredicateOperator.EQUALS)
+    .put("!=", PredicateOperator.NOT_EQUALS)
+    .put(">", PredicateOperator.GREATER_THAN)
+    .put(">=", PredicateOperator.GREATER_THAN_EQUALS)
+    .put("<", PredicateOperator.LESS_THAN)
+    .put("<=", PredicateOperator.LESS_THAN_EQUALS)
+    .build();
+  private static final Set<PredicateOperator> MULTI_VALUE_OPERATORS = EnumSet.of(
+    PredicateOperator.IN, PredicateOperator.NOT_IN, PredicateOperator.CONTAINS_ANY, PredicateOperator.CONTAINS_ALL,
+    PredicateOperator.CONTAINS_NONE);
+
+  /**
+   * Parses the filters into predicates.
+   *
+   * @throws IllegalArgumentException if a filter is not valid
+   */
+  public static List<Predicate> parse(@Nullable String filters) {
+    if (Strings.isNullOrEmpty(filters)) {
+      return Collections.emptyList();
+    }
+    List<Predicate> predicates = new ArrayList<>();
+    for (String filter : split(filters, ';')) {
+      if (!filter.trim().isEmpty()) {
+        predicates.add(parseFilter(filter.trim()));
+      }
+    }
+    return predicates;
+  }
+
+  private static Predicate parseFilter(String filter) {
+    PredicateOperator operator;
+    Matcher matcher = SYMBOL_FILTER.matcher(filter);
+    if (matcher.matches()) {
+      operator = SYMBOL_OPERATORS.get(matcher.group(2));
+    } else {
+      matcher = NAMED_FILTER.matcher(filter);
+      if (!matcher.matches()) {
+        throw new IllegalArgumentException(
+          String.format("Invalid filter '%s', expected '<field> <operator> <values>'", filter));
+      }
+      operator = parseOperator(filter, matcher.group(2));
+    }
+    List<String> values = split(matcher.group(3), ',').stream()
+      .map(String::trim)
+      .filter(value -> !value.isEmpty())
+      .map(value -> unquote(filter, value))
+      .collect(Collectors.toList());
+    if (values.isEmpty()) {
+      throw new IllegalArgumentException(String.format("Filter '%s' has no value", filter));
+    }
+    if (values.size() > 1 && !MULTI_VALUE_OPERATORS.contains(operator)) {
+      throw new IllegalArgumentException(
+        String.format("Filter '%s' has several values, but operator %s takes a single value", filter, operator));
+    }
+    Predicate predicate = new Predicate();
+    predicate.setField(matcher.group(1));
+    predicate.setOperator(operator);
+    predicate.getValues().addAll(values);
+    return predicate;
+  }
+
+  /**
+   * Splits the text at the separators that are not enclosed in quotes. Quotes and escapes are kept in the parts.
+   */
+  private static List<String> split(String text, char separator) {
+    List<String> parts = new ArrayList<>();
+    int start = 0;
+    char quote = 0;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (quote != 0) {
+        if (c == '\\') {
+          i++;
+        } else if (c == quote) {
+          quote = 0;
+        }
+      } else if (c == '"' || c == '\'') {
+        quote = c;
+      } else if (c == separator) {
+        parts.add(text.substring(start, i));
+        start = i + 1;
+      }
+    }
+    if (quote != 0) {
+      throw new IllegalArgumentException(String.format("Filters '%s' have an unclosed quote", text));
+    }
+    parts.add(text.substring(start));
+    return parts;
+  }
+
+  private static String unquote(String filter, String value) {
+    char quote = value.charAt(0);
+    if (quote != '"' && quote != '\'') {
+      return value;
+    }
+    StringBuilder unquoted = new StringBuilder();
+    int i = 1;
+    for (; i < value.length() && value.charAt(i) != quote; i++) {
+      char c = value.charAt(i);
+      if (c == '\\' && i + 1 < value.length()) {
+        c = value.charAt(++i);
+      }
+      unquoted.append(c);
+    }
+    if (i != value.length() - 1) {
+      throw new IllegalArgumentException(
+        String.format("Filter '%s' has unexpected characters after the quoted value %s", filter, value));
+    }
+    return unquoted.toString();
+  }
+
+  private static PredicateOperator parseOperator(String filter, String name) {
+    try {
+      PredicateOperator operator = PredicateOperator.valueOf(name.toUpperCase());
+      if (operator != PredicateOperator.UNKNOWN) {
+        return operator;
+      }
+    } catch (IllegalArgumentException e) {
+      // reported below
+    }
+    throw new IllegalArgumentException(String.format("Filter '%s' has unknown operator '%s'", filter, name));
+  }
+}
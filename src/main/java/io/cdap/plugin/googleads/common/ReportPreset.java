@@ -2,19 +2,21 @@ package io.cdap.plugin.googleads.common;
 
 import com.google.api.ads.adwords.lib.jaxb.v201809.ReportDefinitionReportType;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
- *  Report preset definition
+ *  Report preset definition. Presets are immutable, so loaded presets are shared by all threads.
  */
 public class ReportPreset {
 
-  private ReportDefinitionReportType type;
-  private List<String> fields;
+  private final ReportDefinitionReportType type;
+  private final List<String> fields;
 
   public ReportPreset(ReportDefinitionReportType type, List<String> fields) {
     this.type = type;
-    this.fields = fields;
+    this.fields = Collections.unmodifiableList(new ArrayList<>(fields));
   }
 
   public ReportDefinitionReportType getType() {
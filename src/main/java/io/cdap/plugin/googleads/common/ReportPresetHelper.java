@@ -16,42 +16,191 @@
 
 package io.cdap.plugin.googleads.common;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
 import com.google.gson.reflect.TypeToken;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 
 /**
- * Helper class to incorporate Report presets definition
+ * Registry of report presets. The presets shipped with the plugin are loaded once per JVM. A custom presets file is
+ * loaded once per JVM and file, and again if its modification time or length has changed when it is checked, at
+ * most once a minute, so a long running JVM picks up edited presets. Loaded presets are kept in immutable maps,
+ * which are shared by all threads, so looking up a preset between checks never touches the file system, parses or
+ * locks.
  */
 public class ReportPresetHelper {
 
+  private static final Logger log = LoggerFactory.getLogger(ReportPresetHelper.class);
   private static final Gson GSON = new GsonBuilder().create();
+  private static final Type PRESETS_TYPE = new TypeToken<LinkedHashMap<String, ReportPreset>>() { }.getType();
+  private static final Map<String, FilePresets> FILE_PRESETS = new ConcurrentHashMap<>();
+  // the status of a presets file is a remote call on most file systems, so lookups only check it from time to time
+  static final long CHANGE_CHECK_MILLIS = TimeUnit.MINUTES.toMillis(1);
 
-  private static Map<String, ReportPreset> reportPresets = null;
+  private static volatile Map<String, ReportPreset> builtInPresets;
 
+  private final String presetsFile;
+
+  /**
+   * Creates a helper for the presets shipped with the plugin.
+   */
+  public ReportPresetHelper() {
+    this(null);
+  }
+
+  /**
+   * Creates a helper for the presets shipped with the plugin and the presets of the given file, which replace
+   * shipped presets with the same name.
+   */
+  public ReportPresetHelper(@Nullable String presetsFile) {
+    this.presetsFile = presetsFile;
+  }
+
+  /**
+   * Returns the immutable presets by name, in the order of the presets files.
+   */
   public Map<String, ReportPreset> getReportPresets() throws IOException {
-    if (reportPresets == null) {
-      initializePresets();
+    return getReportPresets(System.currentTimeMillis());
+  }
+
+  Map<String, ReportPreset> getReportPresets(long nowMillis) throws IOException {
+    Map<String, ReportPreset> presets = getBuiltInPresets();
+    if (presetsFile == null) {
+      return presets;
+    }
+    FilePresets filePresets = FILE_PRESETS.get(presetsFile);
+    if (filePresets != null && !filePresets.isCheckDue(nowMillis)) {
+      return filePresets.presets;
+    }
+    synchronized (FILE_PRESETS) {
+      filePresets = FILE_PRESETS.get(presetsFile);
+      if (filePresets != null && !filePresets.isCheckDue(nowMillis)) {
+        return filePresets.presets;
+      }
+      Path path = new Path(presetsFile);
+      FileSystem fileSystem = filePresets == null ? path.getFileSystem(new Configuration()) : filePresets.fileSystem;
+      FileStatus status = fileSystem.getFileStatus(path);
+      if (filePresets != null && filePresets.isReadFrom(status)) {
+        filePresets.checkedMillis = nowMillis;
+        return filePresets.presets;
+      }
+      Map<String, ReportPreset> customPresets = readPresetsFile(fileSystem, path);
+      Map<String, ReportPreset> mergedPresets = new LinkedHashMap<>(presets);
+      for (Map.Entry<String, ReportPreset> customPreset : customPresets.entrySet()) {
+        if (mergedPresets.put(customPreset.getKey(), customPreset.getValue()) != null) {
+          log.info("Report preset '{}' is replaced by the preset in {}", customPreset.getKey(), presetsFile);
+        }
+      }
+      // a change between the status check and the read is detected by the next check
+      filePresets = new FilePresets(fileSystem, status, ImmutableMap.copyOf(mergedPresets), nowMillis);
+      FILE_PRESETS.put(presetsFile, filePresets);
+      return filePresets.presets;
     }
-    return reportPresets;
   }
 
+  @Nullable
   public ReportPreset getReportPreset(String name) throws IOException {
     return getReportPresets().get(name);
   }
 
-  private void initializePresets() throws IOException {
-    ClassLoader classLoader = getClass().getClassLoader();
-    Type type = new TypeToken<Map<String, ReportPreset>>() {
-    }.getType();
-    try (InputStream inputStream = classLoader.getResourceAsStream("presets.json")) {
-      reportPresets = GSON.fromJson(new InputStreamReader(inputStream), type);
+  private static Map<String, ReportPreset> getBuiltInPresets() throws IOException {
+    Map<String, ReportPreset> presets = builtInPresets;
+    if (presets == null) {
+      synchronized (ReportPresetHelper.class) {
+        presets = builtInPresets;
+        if (presets == null) {
+          try (InputStream inputStream = ReportPresetHelper.class.getClassLoader()
+            .getResourceAsStream("presets.json")) {
+            if (inputStream == null) {
+              throw new IOException("Report presets resource 'presets.json' not found");
+            }
+            presets = readPresets(new InputStreamReader(inputStream, StandardCharsets.UTF_8), "presets.json");
+          }
+          builtInPresets = presets;
+        }
+      }
+    }
+    return presets;
+  }
+
+  private static Map<String, ReportPreset> readPresetsFile(FileSystem fileSystem, Path path) throws IOException {
+    try (Reader reader = new InputStreamReader(fileSystem.open(path), StandardCharsets.UTF_8)) {
+      return readPresets(reader, path.toString());
+    }
+  }
+
+  /**
+   * Reads presets in the format of the shipped presets.json file, a JSON object of preset names to presets
+   * with a report type and report fields.
+   */
+  static Map<String, ReportPreset> readPresets(Reader reader, String source) throws IOException {
+    Map<String, ReportPreset> presets;
+    try {
+      presets = GSON.fromJson(reader, PRESETS_TYPE);
+    } catch (JsonParseException e) {
+      throw new IOException(String.format("Report presets file '%s' is not valid", source), e);
+    }
+    if (presets == null) {
+      return ImmutableMap.of();
+    }
+    ImmutableMap.Builder<String, ReportPreset> immutablePresets = ImmutableMap.builder();
+    for (Map.Entry<String, ReportPreset> preset : presets.entrySet()) {
+      ReportPreset value = preset.getValue();
+      if (value == null || value.getType() == null || value.getFields() == null || value.getFields().isEmpty()) {
+        throw new IOException(String.format("Report preset '%s' in '%s' must have a type and fields",
+                                            preset.getKey(), source));
+      }
+      // Gson does not call the constructor, which makes the field list immutable
+      immutablePresets.put(preset.getKey(), new ReportPreset(value.getType(), value.getFields()));
+    }
+    return immutablePresets.build();
+  }
+
+  /**
+   * Presets of a presets file, with the status of the file they were read from and the time that status was last
+   * compared with the file.
+   */
+  private static class FilePresets {
+    private final FileSystem fileSystem;
+    private final long modificationTime;
+    private final long length;
+    private final Map<String, ReportPreset> presets;
+    private volatile long checkedMillis;
+
+    private FilePresets(FileSystem fileSystem, FileStatus status, Map<String, ReportPreset> presets,
+                        long checkedMillis) {
+      this.fileSystem = fileSystem;
+      this.modificationTime = status.getModificationTime();
+      this.length = status.getLen();
+      this.presets = presets;
+      this.checkedMillis = checkedMillis;
+    }
+
+    private boolean isCheckDue(long nowMillis) {
+      return nowMillis - checkedMillis >= CHANGE_CHECK_MILLIS;
+    }
+
+    private boolean isReadFrom(FileStatus status) {
+      return modificationTime == status.getModificationTime() && length == status.getLen();
     }
   }
 }
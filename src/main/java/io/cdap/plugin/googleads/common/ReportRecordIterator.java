@@ -0,0 +1,77 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.googleads.common;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Iterator which lazily converts CSV report rows into {@link StructuredRecord}s while reading them from the
+ * underlying reader, so only the current row is held in memory. Values are converted to the type of the
+ * corresponding schema field, values which can not be converted, such as "--" placeholders, are set to null.
+ */
+public class ReportRecordIterator implements Iterator<StructuredRecord>, Closeable {
+
+  private final CSVParser csvParser;
+  private final Iterator<CSVRecord> csvRecordIterator;
+  private final ReportRowMapper rowMapper;
+
+  public ReportRecordIterator(Reader reader, Schema schema, List<String> reportFields) throws IOException {
+    this(reader, new ReportRowMapper(schema, reportFields, Collections.emptyMap()));
+  }
+
+  /**
+   * Creates an iterator which additionally sets the given values, such as the client customer ID,
+   * on every record.
+   */
+  public ReportRecordIterator(Reader reader, Schema schema, List<String> reportFields,
+                              Map<String, String> constantValues) throws IOException {
+    this(reader, new ReportRowMapper(schema, reportFields, constantValues));
+  }
+
+  public ReportRecordIterator(Reader reader, ReportRowMapper rowMapper) throws IOException {
+    this.csvParser = new CSVParser(reader, CSVFormat.DEFAULT);
+    this.csvRecordIterator = csvParser.iterator();
+    this.rowMapper = rowMapper;
+  }
+
+  @Override
+  public boolean hasNext() {
+    return csvRecordIterator.hasNext();
+  }
+
+  @Override
+  public StructuredRecord next() {
+    return rowMapper.map(csvRecordIterator.next());
+  }
+
+  @Override
+  public void close() throws IOException {
+    csvParser.close();
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.googleads.common;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.apache.commons.csv.CSVRecord;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps CSV report rows to {@link StructuredRecord}s. The schema, the column to field mapping and the value
+ * conversion of every column are resolved once when the mapper is created, so mapping a row does no schema work.
+ * An instance reuses its parse state and is meant to be used by a single thread.
+ */
+public class ReportRowMapper {
+
+  private final Schema schema;
+  private final String[] fieldNames;
+  private final ValueType[] valueTypes;
+  private final int[] scales;
+  private final String[] constantNames;
+  private final String[] constantValues;
+  private final ReportValueParser valueParser = new ReportValueParser();
+
+  /**
+   * Creates a mapper for rows with the given columns.
+   *
+   * @param schema output schema, which contains all report fields and constant fields
+   * @param reportFields report field names in the same order as the CSV columns
+   * @param constantValues values, such as the client customer ID, which are set on every record
+   */
+  public ReportRowMapper(Schema schema, List<String> reportFields, Map<String, String> constantValues) {
+    this.schema = schema;
+    int columns = reportFields.size();
+    this.fieldNames = new String[columns];
+    this.valueTypes = new ValueType[columns];
+    this.scales = new int[columns];
+    for (int column = 0; column < columns; column++) {
+      String name = reportFields.get(column);
+      Schema fieldSchema = schema.getField(name).getSchema();
+      if (fieldSchema.isNullable()) {
+        fieldSchema = fieldSchema.getNonNullable();
+      }
+      fieldNames[column] = name;
+      valueTypes[column] = ValueType.of(fieldSchema);
+      scales[column] = fieldSchema.getLogicalType() == Schema.LogicalType.DECIMAL ? fieldSchema.getScale() : 0;
+    }
+    this.constantNames = new String[constantValues.size()];
+    this.constantValues = new String[constantValues.size()];
+    int index = 0;
+    for (Map.Entry<String, String> constantValue : constantValues.entrySet()) {
+      this.constantNames[index] = constantValue.getKey();
+      this.constantValues[index] = constantValue.getValue();
+      index++;
+    }
+  }
+
+  public Schema getSchema() {
+    return schema;
+  }
+
+  public StructuredRecord map(CSVRecord csvRecord) {
+    StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+    int columns = Math.min(csvRecord.size(), fieldNames.length);
+    for (int column = 0; column < columns; column++) {
+      setValue(builder, column, csvRecord.get(column));
+    }
+    for (int index = 0; index < constantNames.length; index++) {
+      builder.set(constantNames[index], constantValues[index]);
+    }
+    return builder.build();
+  }
+
+  private void setValue(StructuredRecord.Builder builder, int column, String value) {
+    String name = fieldNames[column];
+    switch (valueTypes[column]) {
+      case LONG:
+        if (valueParser.parseLong(value)) {
+          builder.set(name, valueParser.getLongValue());
+        }
+        break;
+      case DOUBLE:
+        if (valueParser.parseDouble(value)) {
+          builder.set(name, valueParser.getDoubleValue());
+        }
+        break;
+      case DECIMAL:
+        if (valueParser.parseLong(value)) {
+          builder.setDecimal(name, BigDecimal.valueOf(valueParser.getLongValue(), scales[column]));
+        }
+        break;
+      case DATE:
+        if (valueParser.parseDate(value)) {
+          builder.setDate(name, LocalDate.of(valueParser.getYear(), valueParser.getMonth(), valueParser.getDay()));
+        }
+        break;
+      default:
+        builder.set(name, value);
+    }
+  }
+
+  /**
+   * Conversion applied to a column value.
+   */
+  private enum ValueType {
+    STRING,
+    LONG,
+    DOUBLE,
+    DECIMAL,
+    DATE;
+
+    private static ValueType of(Schema fieldSchema) {
+      if (fieldSchema.getLogicalType() == Schema.LogicalType.DECIMAL) {
+        return DECIMAL;
+      }
+      if (fieldSchema.getLogicalType() == Schema.LogicalType.DATE) {
+        return DATE;
+      }
+      switch (fieldSchema.getType()) {
+        case LONG:
+          return LONG;
+        case DOUBLE:
+          return DOUBLE;
+        default:
+          return STRING;
+      }
+    }
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.googleads.common;
+
+import io.cdap.cdap.api.data.schema.Schema;
+
+import javax.annotation.Nullable;
+
+/**
+ * Helper class to map Google Ads report field types to {@link Schema}.
+ */
+public class ReportSchemaBuilder {
+
+  /**
+   * Money and bid values are reported in micros, so they are stored as decimals with 6 digit scale
+   * and the micros value as unscaled value.
+   */
+  public static final int MICROS_SCALE = 6;
+  private static final int MICROS_PRECISION = 19;
+
+  /**
+   * Returns nullable schema of the report field with the given ReportDefinitionField type.
+   * Fields with unknown type, such as enums and lists, are read as strings.
+   */
+  public static Schema getFieldSchema(@Nullable String fieldType) {
+    if (fieldType == null) {
+      return Schema.nullableOf(Schema.of(Schema.Type.STRING));
+    }
+    switch (fieldType) {
+      case "Long":
+      case "long":
+      case "Integer":
+      case "int":
+        return Schema.nullableOf(Schema.of(Schema.Type.LONG));
+      case "Double":
+      case "double":
+        return Schema.nullableOf(Schema.of(Schema.Type.DOUBLE));
+      case "Money":
+      case "Bid":
+        return Schema.nullableOf(Schema.decimalOf(MICROS_PRECISION, MICROS_SCALE));
+      case "Date":
+        return Schema.nullableOf(Schema.of(Schema.LogicalType.DATE));
+      default:
+        return Schema.nullableOf(Schema.of(Schema.Type.STRING));
+    }
+  }
+}
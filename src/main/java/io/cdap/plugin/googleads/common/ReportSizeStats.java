@@ -0,0 +1,192 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.googleads.common;
+
+import com.google.api.ads.adwords.lib.jaxb.v201809.DownloadFormat;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import javax.annotation.Nullable;
+
+/**
+ * Stores the number of rows and bytes of every report, customer and day in a JSON file on a Hadoop file system,
+ * so that splits can be balanced by the expected report size. Readers record the size of every completely read
+ * split in a file of their own, which avoids concurrent writes to the same file. These files are merged into the
+ * store by the driver once the run has finished. Pipelines sharing a directory merge one at a time, serialized by a
+ * lock file, and the store is replaced only once its new content has been written completely.
+ * <p>
+ * Sizes are downloaded bytes, so sizes of compressed and uncompressed downloads are kept apart. Sizes which were
+ * not recorded again for {@link #MAX_AGE_DAYS} days are dropped when the store is merged.
+ */
+public class ReportSizeStats {
+
+  public static final String FILE_NAME = "report-sizes.json";
+  public static final String PENDING_DIRECTORY = "pending";
+  static final String LOCK_FILE_NAME = StoreFile.getLockName(FILE_NAME);
+  static final long STALE_LOCK_MILLIS = StoreFile.STALE_LOCK_MILLIS;
+  static final int MAX_AGE_DAYS = 400;
+
+  private static final Logger log = LoggerFactory.getLogger(ReportSizeStats.class);
+  private static final Gson GSON = new GsonBuilder().create();
+  private static final Type SIZES_TYPE = new TypeToken<Map<String, DaySize>>() { }.getType();
+
+  private final StoreFile storeFile;
+  private final Path directory;
+  private final Path pendingPath;
+  private final Configuration conf;
+
+  public ReportSizeStats(String directory, Configuration conf) {
+    this.storeFile = new StoreFile(new Path(directory, FILE_NAME), conf);
+    this.directory = new Path(directory);
+    this.pendingPath = new Path(directory, PENDING_DIRECTORY);
+    this.conf = conf;
+  }
+
+  public static String getKey(String reportName, @Nullable String customerId, DownloadFormat downloadFormat,
+                              LocalDate day) {
+    return reportName + "/" + (customerId == null ? "" : customerId) + "/" + downloadFormat.value() + "/"
+      + day.format(DateTimeFormatter.BASIC_ISO_DATE);
+  }
+
+  /**
+   * Records the size of a completely read split. The size is divided evenly between the days of the split,
+   * so the sizes of single day splits are exact.
+   */
+  public void record(String reportName, @Nullable String customerId, DownloadFormat downloadFormat,
+                     LocalDate startDate, LocalDate endDate, long rows, long bytes) throws IOException {
+    long days = ChronoUnit.DAYS.between(startDate, endDate) + 1;
+    LocalDate today = LocalDate.now();
+    Map<String, DaySize> sizes = new HashMap<>();
+    for (LocalDate day = startDate; !day.isAfter(endDate); day = day.plusDays(1)) {
+      sizes.put(getKey(reportName, customerId, downloadFormat, day), new DaySize(rows / days, bytes / days, today));
+    }
+    write(new StoreFile(new Path(pendingPath, UUID.randomUUID() + ".json"), conf), sizes);
+  }
+
+  public Map<String, DaySize> load() throws IOException {
+    Map<String, DaySize> sizes = storeFile.read(reader -> parse(reader, FILE_NAME));
+    return sizes == null ? new HashMap<>() : sizes;
+  }
+
+  /**
+   * Merges the sizes recorded by readers into the store. Newer sizes replace the stored size of the same day.
+   * If another pipeline keeps merging into the same directory, the sizes are left for the next merge.
+   */
+  public void merge() throws IOException {
+    merge(LocalDate.now());
+  }
+
+  void merge(LocalDate today) throws IOException {
+    FileSystem fileSystem = pendingPath.getFileSystem(conf);
+    if (!fileSystem.exists(pendingPath)) {
+      return;
+    }
+    if (!storeFile.lock()) {
+      log.warn("Report sizes in {} are being merged by another run, recorded sizes are merged by the next run",
+               directory);
+      return;
+    }
+    try {
+      // files of readers which are still writing are hidden until they are complete
+      FileStatus[] pendingFiles = fileSystem.listStatus(pendingPath, file -> !file.getName().startsWith("."));
+      if (pendingFiles.length == 0) {
+        return;
+      }
+      Map<String, DaySize> sizes = new TreeMap<>(load());
+      for (FileStatus pendingFile : pendingFiles) {
+        try {
+          Map<String, DaySize> recordedSizes = new StoreFile(pendingFile.getPath(), conf)
+            .read(reader -> parse(reader, pendingFile.getPath().toString()));
+          if (recordedSizes != null) {
+            sizes.putAll(recordedSizes);
+          }
+        } catch (IOException e) {
+          // a reader may have failed while writing the file
+          log.warn("Ignoring unreadable report size file {}", pendingFile.getPath(), e);
+        }
+      }
+      // sizes of days which are no longer downloaded, and sizes written before they had a recorded day
+      LocalDate oldestRecordedDay = today.minusDays(MAX_AGE_DAYS);
+      sizes.values().removeIf(size -> size.getRecordedDay().isBefore(oldestRecordedDay));
+      write(storeFile, sizes);
+      for (FileStatus pendingFile : pendingFiles) {
+        fileSystem.delete(pendingFile.getPath(), false);
+      }
+    } finally {
+      storeFile.unlock();
+    }
+  }
+
+  private static Map<String, DaySize> parse(Reader reader, String source) throws IOException {
+    try {
+      Map<String, DaySize> sizes = GSON.fromJson(reader, SIZES_TYPE);
+      return sizes == null ? new HashMap<>() : sizes;
+    } catch (JsonParseException e) {
+      throw new IOException(String.format("Report size file '%s' is not valid", source), e);
+    }
+  }
+
+  private static void write(StoreFile file, Map<String, DaySize> sizes) throws IOException {
+    file.write(writer -> GSON.toJson(sizes, SIZES_TYPE, writer));
+  }
+
+  /**
+   * Number of rows and bytes of a report on one day.
+   */
+  public static class DaySize {
+    private final long rows;
+    private final long bytes;
+    // epoch day on which the size was recorded
+    private final long recordedDay;
+
+    public DaySize(long rows, long bytes, LocalDate recordedDay) {
+      this.rows = rows;
+      this.bytes = bytes;
+      this.recordedDay = recordedDay.toEpochDay();
+    }
+
+    public long getRows() {
+      return rows;
+    }
+
+    public long getBytes() {
+      return bytes;
+    }
+
+    public LocalDate getRecordedDay() {
+      return LocalDate.ofEpochDay(recordedDay);
+    }
+  }
+}
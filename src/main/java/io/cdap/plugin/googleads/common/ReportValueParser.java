@@ -0,0 +1,234 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.googleads.common;
+
+import java.time.Month;
+import java.time.Year;
+
+/**
+ * Parses numeric and date report values without intermediate objects and without throwing exceptions.
+ * Google placeholders, such as "--" for unavailable values, are reported as unparseable.
+ * Bounded values, such as "&lt; 10%" or "&gt; 90%", are parsed as their bound.
+ * An instance keeps the last parsed value and is meant to be reused by a single thread.
+ */
+public class ReportValueParser {
+
+  private static final double[] POWERS_OF_TEN = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+    1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+  // mantissas below 2^53 are exact doubles, so a single division by a power of ten is correctly rounded
+  private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+  private final StringBuilder fallbackBuffer = new StringBuilder();
+  private long longValue;
+  private double doubleValue;
+  private int year;
+  private int month;
+  private int day;
+
+  public long getLongValue() {
+    return longValue;
+  }
+
+  public double getDoubleValue() {
+    return doubleValue;
+  }
+
+  public int getYear() {
+    return year;
+  }
+
+  public int getMonth() {
+    return month;
+  }
+
+  public int getDay() {
+    return day;
+  }
+
+  /**
+   * Parses an integer value, ignoring surrounding whitespace and grouping separators.
+   *
+   * @return true if the value is a valid integer, in which case it is available from {@link #getLongValue()}
+   */
+  public boolean parseLong(CharSequence value) {
+    int end = trimEnd(value);
+    int index = trimStart(value, end);
+    if (index == end) {
+      return false;
+    }
+    boolean negative = value.charAt(index) == '-';
+    if (negative || value.charAt(index) == '+') {
+      index++;
+    }
+    long result = 0;
+    boolean hasDigits = false;
+    for (; index < end; index++) {
+      char c = value.charAt(index);
+      if (c == ',') {
+        continue;
+      }
+      if (c < '0' || c > '9') {
+        return false;
+      }
+      int digit = c - '0';
+      if (result > (Long.MAX_VALUE - digit) / 10) {
+        return false;
+      }
+      result = result * 10 + digit;
+      hasDigits = true;
+    }
+    if (!hasDigits) {
+      return false;
+    }
+    longValue = negative ? -result : result;
+    return true;
+  }
+
+  /**
+   * Parses a decimal value, ignoring surrounding whitespace, grouping separators, a trailing percent sign
+   * and a leading bound marker.
+   *
+   * @return true if the value is a valid number, in which case it is available from {@link #getDoubleValue()}
+   */
+  public boolean parseDouble(CharSequence value) {
+    int end = trimEnd(value);
+    int start = trimStart(value, end);
+    if (start < end && value.charAt(end - 1) == '%') {
+      end = trimEnd(value, end - 1);
+    }
+    if (start < end && (value.charAt(start) == '<' || value.charAt(start) == '>')) {
+      start = trimStart(value, start + 1, end);
+    }
+    if (start >= end) {
+      return false;
+    }
+    int index = start;
+    boolean negative = value.charAt(index) == '-';
+    if (negative || value.charAt(index) == '+') {
+      index++;
+    }
+    long mantissa = 0;
+    int scale = 0;
+    boolean hasDigits = false;
+    boolean hasDot = false;
+    boolean exact = true;
+    for (; index < end; index++) {
+      char c = value.charAt(index);
+      if (c == ',') {
+        continue;
+      }
+      if (c == '.') {
+        if (hasDot) {
+          return false;
+        }
+        hasDot = true;
+        continue;
+      }
+      if (c < '0' || c > '9') {
+        return false;
+      }
+      hasDigits = true;
+      if (mantissa >= MAX_EXACT_MANTISSA / 10) {
+        exact = false;
+        continue;
+      }
+      mantissa = mantissa * 10 + (c - '0');
+      if (hasDot) {
+        scale++;
+      }
+    }
+    if (!hasDigits) {
+      return false;
+    }
+    if (exact && scale < POWERS_OF_TEN.length) {
+      double result = mantissa / POWERS_OF_TEN[scale];
+      doubleValue = negative ? -result : result;
+      return true;
+    }
+    // too many significant digits for the fast path, the characters are already validated
+    fallbackBuffer.setLength(0);
+    for (index = start; index < end; index++) {
+      char c = value.charAt(index);
+      if (c != ',') {
+        fallbackBuffer.append(c);
+      }
+    }
+    doubleValue = Double.parseDouble(fallbackBuffer.toString());
+    return true;
+  }
+
+  /**
+   * Parses a date in YYYY-MM-DD format.
+   *
+   * @return true if the value is a valid date, in which case it is available from {@link #getYear()},
+   * {@link #getMonth()} and {@link #getDay()}
+   */
+  public boolean parseDate(CharSequence value) {
+    int end = trimEnd(value);
+    int start = trimStart(value, end);
+    if (end - start != 10 || value.charAt(start + 4) != '-' || value.charAt(start + 7) != '-') {
+      return false;
+    }
+    int parsedYear = parseDigits(value, start, start + 4);
+    int parsedMonth = parseDigits(value, start + 5, start + 7);
+    int parsedDay = parseDigits(value, start + 8, start + 10);
+    if (parsedYear < 0 || parsedMonth < 1 || parsedMonth > 12 || parsedDay < 1
+      || parsedDay > Month.of(parsedMonth).length(Year.isLeap(parsedYear))) {
+      return false;
+    }
+    year = parsedYear;
+    month = parsedMonth;
+    day = parsedDay;
+    return true;
+  }
+
+  private static int parseDigits(CharSequence value, int start, int end) {
+    int result = 0;
+    for (int index = start; index < end; index++) {
+      char c = value.charAt(index);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      result = result * 10 + (c - '0');
+    }
+    return result;
+  }
+
+  private static int trimStart(CharSequence value, int end) {
+    return trimStart(value, 0, end);
+  }
+
+  private static int trimStart(CharSequence value, int start, int end) {
+    while (start < end && Character.isWhitespace(value.charAt(start))) {
+      start++;
+    }
+    return start;
+  }
+
+  private static int trimEnd(CharSequence value) {
+    return trimEnd(value, value.length());
+  }
+
+  private static int trimEnd(CharSequence value, int end) {
+    while (end > 0 && Character.isWhitespace(value.charAt(end - 1))) {
+      end--;
+    }
+    return end;
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.googleads.common;
+
+import com.google.api.ads.adwords.axis.v201809.cm.ApiError;
+import com.google.api.ads.adwords.axis.v201809.cm.ApiException;
+import com.google.api.ads.adwords.axis.v201809.cm.RateExceededError;
+import com.google.api.ads.adwords.lib.utils.DetailedReportDownloadResponseException;
+import com.google.api.ads.adwords.lib.utils.ReportDownloadResponseException;
+import com.google.api.ads.adwords.lib.utils.ReportException;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Decides whether and how long to wait before a failed Google Ads call is retried. Transient failures are retried
+ * with exponential backoff and full jitter, rate limit failures wait at least as long as the API asks to.
+ * All retries of one call must finish before the deadline.
+ */
+public class RetryPolicy {
+
+  private static final long DEFAULT_INITIAL_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(1);
+  private static final long DEFAULT_MAX_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(1);
+  private static final long DEFAULT_DEADLINE_MILLIS = TimeUnit.MINUTES.toMillis(15);
+  private static final int DEFAULT_MAX_ATTEMPTS = 8;
+  // Google recommends waiting 30 seconds after a rate limit error if the response does not say how long
+  private static final long DEFAULT_RATE_LIMIT_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+  private final long initialBackoffMillis;
+  private final long maxBackoffMillis;
+  private final long deadlineMillis;
+  private final int maxAttempts;
+  private final long rateLimitBackoffMillis;
+
+  public RetryPolicy(long initialBackoffMillis, long maxBackoffMillis, long deadlineMillis, int maxAttempts) {
+    this(initialBackoffMillis, maxBackoffMillis, deadlineMillis, maxAttempts, DEFAULT_RATE_LIMIT_BACKOFF_MILLIS);
+  }
+
+  /**
+   * Creates a policy which waits the given time after rate limit errors which do not say how long to wait.
+   */
+  public RetryPolicy(long initialBackoffMillis, long maxBackoffMillis, long deadlineMillis, int maxAttempts,
+                     long rateLimitBackoffMillis) {
+    this.initialBackoffMillis = initialBackoffMillis;
+    this.maxBackoffMillis = maxBackoffMillis;
+    this.deadlineMillis = deadlineMillis;
+    this.maxAttempts = maxAttempts;
+    this.rateLimitBackoffMillis = rateLimitBackoffMillis;
+  }
+
+  public static RetryPolicy getDefault() {
+    return new RetryPolicy(DEFAULT_INITIAL_BACKOFF_MILLIS, DEFAULT_MAX_BACKOFF_MILLIS, DEFAULT_DEADLINE_MILLIS,
+                           DEFAULT_MAX_ATTEMPTS);
+  }
+
+  /**
+   * Starts tracking the attempts of one call.
+   */
+  public Attempts start() {
+    return new Attempts(System.currentTimeMillis(), ThreadLocalRandom.current());
+  }
+
+  /**
+   * Classifies a failure of a Google Ads call.
+   */
+  static ErrorType classify(Throwable error) {
+    if (getRateExceededError(error) != null) {
+      return ErrorType.RATE_LIMITED;
+    }
+    if (error instanceof DetailedReportDownloadResponseException) {
+      String type = ((DetailedReportDownloadResponseException) error).getType();
+      if (type != null && (type.contains("RATE_EXCEEDED") || type.startsWith("RateExceededError"))) {
+        return ErrorType.RATE_LIMITED;
+      }
+      if (type != null && (type.contains("INTERNAL_ERROR") || type.contains("ERROR_GETTING_RESPONSE_FROM_BACKEND")
+        || type.contains("CONCURRENT_MODIFICATION"))) {
+        return ErrorType.TRANSIENT;
+      }
+    }
+    if (error instanceof ReportDownloadResponseException) {
+      int httpStatus = ((ReportDownloadResponseException) error).getHttpStatus();
+      if (httpStatus == 429) {
+        return ErrorType.RATE_LIMITED;
+      }
+      return httpStatus >= 500 ? ErrorType.TRANSIENT : ErrorType.PERMANENT;
+    }
+    // report exceptions wrap I/O failures of the download connection
+    if (error instanceof ReportException) {
+      return ErrorType.TRANSIENT;
+    }
+    return ErrorType.PERMANENT;
+  }
+
+  /**
+   * Returns the delay requested by a rate limit error, or -1 if the error does not request one.
+   */
+  static long getRetryAfterMillis(Throwable error) {
+    RateExceededError rateExceededError = getRateExceededError(error);
+    if (rateExceededError == null || rateExceededError.getRetryAfterSeconds() == null) {
+      return -1;
+    }
+    return TimeUnit.SECONDS.toMillis(rateExceededError.getRetryAfterSeconds());
+  }
+
+  @Nullable
+  private static RateExceededError getRateExceededError(Throwable error) {
+    if (!(error instanceof ApiException) || ((ApiException) error).getErrors() == null) {
+      return null;
+    }
+    for (ApiError apiError : ((ApiException) error).getErrors()) {
+      if (apiError instanceof RateExceededError) {
+        return (RateExceededError) apiError;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Error categories which determine the retry behaviour.
+   */
+  enum ErrorType {
+    TRANSIENT,
+    RATE_LIMITED,
+    PERMANENT
+  }
+
+  /**
+   * Attempts of one call. Keeps the number of retries, the total wait time and the last failure,
+   * so they can be reported once the call succeeds or fails.
+   */
+  public class Attempts {
+    private final long startMillis;
+    private final Random random;
+    private int retries;
+    private long waitMillis;
+    private Throwable lastError;
+
+    private Attempts(long startMillis, Random random) {
+      this.startMillis = startMillis;
+      this.random = random;
+    }
+
+    /**
+     * Records a failed attempt and returns how long to wait before the next one, or -1 if the call should
+     * not be retried.
+     */
+    public long onFailure(Throwable error) {
+      return onFailure(error, System.currentTimeMillis());
+    }
+
+    long onFailure(Throwable error, long nowMillis) {
+      lastError = error;
+      ErrorType errorType = classify(error);
+      if (errorType == ErrorType.PERMANENT || retries + 1 >= maxAttempts) {
+        return -1;
+      }
+      long backoffCap = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(retries, 30));
+      // full jitter spreads retries of parallel splits which failed at the same time
+      long delay = (long) (random.nextDouble() * backoffCap);
+      if (errorType == ErrorType.RATE_LIMITED) {
+        long retryAfterMillis = getRetryAfterMillis(error);
+        delay += retryAfterMillis >= 0 ? retryAfterMillis : rateLimitBackoffMillis;
+      }
+      if (nowMillis - startMillis + delay > deadlineMillis) {
+        return -1;
+      }
+      retries++;
+      waitMillis += delay;
+      return delay;
+    }
+
+    public int getRetries() {
+      return retries;
+    }
+
+    public long getWaitMillis() {
+      return waitMillis;
+    }
+
+    public Throwable getLastError() {
+      return lastError;
+    }
+  }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.googleads.common;
+
+import com.google.common.io.CharStreams;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileAlreadyExistsException;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * File of a store on a Hadoop file system, which may be shared by several pipelines. The file is replaced only once
+ * its new content has been written completely, and the previous content is kept as a backup until then, so a
+ * failure never leaves the store without content. Updates are serialized by a lock file next to the store, which is
+ * taken over once it is stale.
+ */
+class StoreFile {
+
+  // updates take a few seconds at most, a lock older than this was left behind by a driver that died while updating
+  static final long STALE_LOCK_MILLIS = TimeUnit.MINUTES.toMillis(10);
+  private static final long LOCK_WAIT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+  private static final long LOCK_RETRY_MILLIS = 500;
+
+  private static final Logger log = LoggerFactory.getLogger(StoreFile.class);
+
+  private final Path path;
+  private final Path backupPath;
+  private final Path lockPath;
+  private final Configuration conf;
+  // token written to the lock file while this instance holds the lock
+  @Nullable
+  private String lockToken;
+
+  StoreFile(Path path, Configuration conf) {
+    this.path = path;
+    this.backupPath = new Path(path.getParent(), getBackupName(path.getName()));
+    this.lockPath = new Path(path.getParent(), getLockName(path.getName()));
+    this.conf = conf;
+  }
+
+  static String getBackupName(String fileName) {
+    return "." + fileName + ".bak";
+  }
+
+  static String getLockName(String fileName) {
+    return "." + fileName + ".lock";
+  }
+
+  /**
+   * Reads the content of the file, or returns null if the file does not exist.
+   */
+  @Nullable
+  <T> T read(ContentReader<T> contentReader) throws IOException {
+    FileSystem fileSystem = path.getFileSystem(conf);
+    Path file = path;
+    if (!fileSystem.exists(file)) {
+      // the file is only missing next to its backup if an update failed between replacing and restoring it
+      if (!fileSystem.exists(backupPath)) {
+        return null;
+      }
+      file = backupPath;
+    }
+    try (Reader reader = new InputStreamReader(fileSystem.open(file), StandardCharsets.UTF_8)) {
+      return contentReader.read(reader);
+    }
+  }
+
+  /**
+   * Replaces the content of the file. The content is written to a hidden temporary file first.
+   */
+  void write(ContentWriter contentWriter) throws IOException {
+    FileSystem fileSystem = path.getFileSystem(conf);
+    Path tempPath = new Path(path.getParent(), "." + path.getName() + "." + UUID.randomUUID() + ".tmp");
+    try (FSDataOutputStream outputStream = fileSystem.create(tempPath, true);
+         Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8)) {
+      contentWriter.write(writer);
+    } catch (IOException e) {
+      fileSystem.delete(tempPath, false);
+      throw e;
+    }
+    if (!fileSystem.exists(path)) {
+      rename(fileSystem, tempPath, path);
+      return;
+    }
+    // rename does not replace an existing file on every file system, so the old file is kept aside until the new
+    // file is in place
+    fileSystem.delete(backupPath, false);
+    rename(fileSystem, path, backupPath);
+    try {
+      rename(fileSystem, tempPath, path);
+    } catch (IOException e) {
+      fileSystem.rename(backupPath, path);
+      fileSystem.delete(tempPath, false);
+      throw e;
+    }
+    fileSystem.delete(backupPath, false);
+  }
+
+  private static void rename(FileSystem fileSystem, Path source, Path target) throws IOException {
+    if (!fileSystem.rename(source, target)) {
+      throw new IOException(String.format("Failed to write file '%s'", target));
+    }
+  }
+
+  /**
+   * Creates the lock file, waiting a bounded time while another run holds it. The lock file holds a token of its
+   * owner, so a stale lock is only removed by one run and a lock created in the meantime is kept.
+   *
+   * @return false if the lock is still held by another run
+   */
+  boolean lock() throws IOException {
+    FileSystem fileSystem = lockPath.getFileSystem(conf);
+    String token = UUID.randomUUID().toString();
+    long deadline = System.currentTimeMillis() + LOCK_WAIT_MILLIS;
+    while (!tryCreate(fileSystem, lockPath, token)) {
+      FileStatus lockStatus;
+      String lockToken;
+      try {
+        lockStatus = fileSystem.getFileStatus(lockPath);
+        lockToken = readToken(fileSystem, lockPath);
+      } catch (FileNotFoundException e) {
+        // released in the meantime
+        continue;
+      }
+      if (isStale(lockStatus)) {
+        removeStaleLock(fileSystem, lockToken);
+        continue;
+      }
+      if (System.currentTimeMillis() > deadline) {
+        return false;
+      }
+      try {
+        Thread.sleep(LOCK_RETRY_MILLIS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException(String.format("Interrupted while waiting for lock '%s'", lockPath));
+      }
+    }
+    lockToken = token;
+    return true;
+  }
+
+  /**
+   * Removes the lock if it still holds the token of the stale lock. Runs which found the same stale lock race to
+   * create a marker named after its token, so they check and remove the lock one at a time.
+   */
+  private void removeStaleLock(FileSystem fileSystem, String staleToken) throws IOException {
+    Path markerPath = new Path(lockPath.getParent(), lockPath.getName() + "." + staleToken + ".remove");
+    if (!tryCreate(fileSystem, markerPath, "")) {
+      try {
+        if (isStale(fileSystem.getFileStatus(markerPath))) {
+          // left behind by a run that died while removing the lock
+          fileSystem.delete(markerPath, false);
+        }
+      } catch (FileNotFoundException e) {
+        // the other run is done
+      }
+      return;
+    }
+    try {
+      if (staleToken.equals(readToken(fileSystem, lockPath))) {
+        log.warn("Removing stale lock {}", lockPath);
+        fileSystem.delete(lockPath, false);
+      }
+    } catch (FileNotFoundException e) {
+      // released in the meantime
+    } finally {
+      fileSystem.delete(markerPath, false);
+    }
+  }
+
+  /**
+   * Removes the lock file, unless the lock was taken over by another run after it became stale.
+   */
+  void unlock() throws IOException {
+    FileSystem fileSystem = lockPath.getFileSystem(conf);
+    try {
+      if (lockToken != null && lockToken.equals(readToken(fileSystem, lockPath))) {
+        fileSystem.delete(lockPath, false);
+      } else {
+        log.warn("Lock {} was taken over by another run", lockPath);
+      }
+    } catch (FileNotFoundException e) {
+      log.warn("Lock {} was removed by another run", lockPath);
+    } finally {
+      lockToken = null;
+    }
+  }
+
+  private static boolean isStale(FileStatus status) {
+    return System.currentTimeMillis() - status.getModificationTime() > STALE_LOCK_MILLIS;
+  }
+
+  private static boolean tryCreate(FileSystem fileSystem, Path file, String token) throws IOException {
+    try (FSDataOutputStream outputStream = fileSystem.create(file, false)) {
+      outputStream.write(token.getBytes(StandardCharsets.UTF_8));
+      return true;
+    } catch (FileAlreadyExistsException e) {
+      return false;
+    }
+  }
+
+  private static String readToken(FileSystem fileSystem, Path file) throws IOException {
+    try (Reader reader = new InputStreamReader(fileSystem.open(file), StandardCharsets.UTF_8)) {
+      return CharStreams.toString(reader);
+    }
+  }
+
+  /**
+   * Reads the content of a store file.
+   */
+  interface ContentReader<T> {
+    T read(Reader reader) throws IOException;
+  }
+
+  /**
+   * Writes the content of a store file.
+   */
+  interface ContentWriter {
+    void write(Writer writer) throws IOException;
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.googleads.common;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+
+/**
+ * Stores the last downloaded date of every report and customer in a JSON file on a Hadoop file system,
+ * so that incremental runs only download the days since the previous run. Pipelines sharing the store update it
+ * one at a time, serialized by a lock file, and the file is replaced only once its new content has been written
+ * completely.
+ */
+public class WatermarkStore {
+
+  public static final String FILE_NAME = "watermarks.json";
+
+  private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+  private static final Type WATERMARKS_TYPE = new TypeToken<Map<String, String>>() { }.getType();
+
+  private final StoreFile storeFile;
+  private final Path path;
+
+  public WatermarkStore(String directory, Configuration conf) {
+    this.path = new Path(directory, FILE_NAME);
+    this.storeFile = new StoreFile(path, conf);
+  }
+
+  public static String getKey(String reportName, @Nullable String customerId) {
+    return reportName + "/" + (customerId == null ? "" : customerId);
+  }
+
+  /**
+   * Returns the first date to download, in YYYYMMDD format, or null if the range is already downloaded.
+   *
+   * @param watermark last downloaded date, or null if the report was never downloaded
+   * @param startDate configured start date
+   * @param endDate configured end date
+   * @param lookbackDays number of days before the watermark which are downloaded again, since their data
+   *                     may still change, for example because of late conversions
+   */
+  @Nullable
+  public static String getStartDate(@Nullable String watermark, String startDate, String endDate, int lookbackDays) {
+    if (watermark == null) {
+      return startDate;
+    }
+    LocalDate start = LocalDate.parse(startDate, DateTimeFormatter.BASIC_ISO_DATE);
+    LocalDate incrementalStart = LocalDate.parse(watermark, DateTimeFormatter.BASIC_ISO_DATE)
+      .plusDays(1 - lookbackDays);
+    if (incrementalStart.isAfter(start)) {
+      start = incrementalStart;
+    }
+    if (start.isAfter(LocalDate.parse(endDate, DateTimeFormatter.BASIC_ISO_DATE))) {
+      return null;
+    }
+    return start.format(DateTimeFormatter.BASIC_ISO_DATE);
+  }
+
+  public Map<String, String> load() throws IOException {
+    Map<String, String> watermarks = storeFile.read(reader -> {
+      try {
+        return GSON.fromJson(reader, WATERMARKS_TYPE);
+      } catch (JsonParseException e) {
+        throw new IOException(String.format("Watermark file '%s' is not valid", path), e);
+      }
+    });
+    return watermarks == null ? new HashMap<>() : watermarks;
+  }
+
+  /**
+   * Sets the watermark of every report and customer to the end date of a completed run.
+   *
+   * @throws IOException if another run keeps the store locked, or the store can not be written
+   */
+  public void update(Collection<String> reportNames, Collection<String> customerIds, String endDate)
+    throws IOException {
+    if (!storeFile.lock()) {
+      throw new IOException(String.format("Watermark file '%s' is being updated by another run", path));
+    }
+    try {
+      Map<String, String> watermarks = new TreeMap<>(load());
+      for (String reportName : reportNames) {
+        for (String customerId : customerIds) {
+          watermarks.put(getKey(reportName, customerId), endDate);
+        }
+      }
+      storeFile.write(writer -> GSON.toJson(watermarks, writer));
+    } finally {
+      storeFile.unlock();
+    }
+  }
+}
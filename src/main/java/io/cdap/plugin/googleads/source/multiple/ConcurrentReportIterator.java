@@ -0,0 +1,184 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.googleads.source.multiple;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+import javax.annotation.Nullable;
+
+/**
+ * Iterator over the records of several reports, which are read concurrently by a bounded thread pool. Records are
+ * returned in the order the reports produce them, so reports which Google generates quickly are emitted while
+ * slower reports are still being generated. Every report is read by a single thread, which keeps the order of its
+ * own records. Records are handed over through a bounded queue, so readers wait while the consumer is behind.
+ */
+public class ConcurrentReportIterator implements Iterator<StructuredRecord>, Closeable {
+
+  private static final Logger log = LoggerFactory.getLogger(ConcurrentReportIterator.class);
+  // readers are interrupted on close, this only bounds the wait for readers blocked in reads that ignore interrupts
+  private static final long CLOSE_TIMEOUT_SECONDS = 30;
+
+  private final BlockingQueue<Item> queue;
+  private final ExecutorService executor;
+  private final IntConsumer onReportRead;
+  private final int reportCount;
+  private int reportsRead;
+  private StructuredRecord next;
+
+  /**
+   * Starts reading the reports.
+   *
+   * @param reports readers of the reports
+   * @param threads maximum number of reports read at the same time
+   * @param queueCapacity maximum number of records read ahead of the consumer
+   * @param onReportRead called by the consuming thread with the index of a report, once all its records have been
+   *                     returned
+   */
+  public ConcurrentReportIterator(List<ReportReader> reports, int threads, int queueCapacity,
+                                  IntConsumer onReportRead) {
+    this.queue = new ArrayBlockingQueue<>(Math.max(queueCapacity, 1));
+    this.executor = Executors.newFixedThreadPool(Math.max(Math.min(threads, reports.size()), 1),
+                                                 new ThreadFactoryBuilder()
+                                                   .setNameFormat("google-ads-report-reader-%d")
+                                                   .setDaemon(true)
+                                                   .build());
+    this.onReportRead = onReportRead;
+    this.reportCount = reports.size();
+    for (int index = 0; index < reports.size(); index++) {
+      ReportReader report = reports.get(index);
+      int reportIndex = index;
+      executor.execute(() -> read(report, reportIndex));
+    }
+  }
+
+  private void read(ReportReader report, int reportIndex) {
+    try {
+      report.read(record -> queue.put(new Item(reportIndex, record, null)));
+      queue.put(new Item(reportIndex, null, null));
+    } catch (InterruptedException e) {
+      // the iterator was closed
+      Thread.currentThread().interrupt();
+    } catch (Throwable e) {
+      // failures are passed to the consumer, which would otherwise wait for the report forever
+      try {
+        queue.put(new Item(reportIndex, null, e));
+      } catch (InterruptedException interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (next == null && reportsRead < reportCount) {
+      Item item;
+      try {
+        item = queue.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException("Interrupted while waiting for report records", e);
+      }
+      if (item.error != null) {
+        throw new RuntimeException("download report failed", item.error);
+      }
+      if (item.record == null) {
+        reportsRead++;
+        onReportRead.accept(item.reportIndex);
+      } else {
+        next = item.record;
+      }
+    }
+    return next != null;
+  }
+
+  @Override
+  public StructuredRecord next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    StructuredRecord record = next;
+    next = null;
+    return record;
+  }
+
+  /**
+   * Stops reading reports and waits a bounded time for the readers to finish. Readers waiting for the consumer are
+   * interrupted, and records read ahead are dropped.
+   */
+  @Override
+  public void close() {
+    executor.shutdownNow();
+    queue.clear();
+    try {
+      if (!executor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        log.warn("Report readers did not stop within {} seconds", CLOSE_TIMEOUT_SECONDS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Returns whether all readers have stopped. Readers blocked in reads that ignore interrupts may still be running
+   * once {@link #close()} has returned.
+   */
+  public boolean isTerminated() {
+    return executor.isTerminated();
+  }
+
+  /**
+   * Reads the records of one report.
+   */
+  public interface ReportReader {
+    void read(RecordSink sink) throws Exception;
+  }
+
+  /**
+   * Receives the records of a report, waiting while the consumer is behind.
+   */
+  public interface RecordSink {
+    void add(StructuredRecord record) throws InterruptedException;
+  }
+
+  /**
+   * Record of a report, end of a report if there is neither a record nor an error, or failure of a report.
+   */
+  private static class Item {
+    private final int reportIndex;
+    private final StructuredRecord record;
+    private final Throwable error;
+
+    private Item(int reportIndex, @Nullable StructuredRecord record, @Nullable Throwable error) {
+      this.reportIndex = reportIndex;
+      this.record = record;
+      this.error = error;
+    }
+  }
+}
@@ -25,11 +25,17 @@ import io.cdap.cdap.api.dataset.lib.KeyValue;
 import io.cdap.cdap.etl.api.Emitter;
 import io.cdap.cdap.etl.api.FailureCollector;
 import io.cdap.cdap.etl.api.PipelineConfigurer;
+import io.cdap.cdap.etl.api.StageMetrics;
+import io.cdap.cdap.etl.api.batch.BatchRuntimeContext;
 import io.cdap.cdap.etl.api.batch.BatchSource;
 import io.cdap.cdap.etl.api.batch.BatchSourceContext;
 import io.cdap.plugin.common.LineageRecorder;
+import io.cdap.plugin.googleads.common.GoogleAdsHelper;
+import io.cdap.plugin.googleads.common.ReportMetrics;
 import org.apache.hadoop.io.NullWritable;
 
+import java.io.IOException;
+import java.util.List;
 import java.util.stream.Collectors;
 
 /**
@@ -42,6 +48,16 @@ public class GoogleAdsMultiReportBatchSource extends BatchSource<NullWritable, S
 
   private final MultiReportBatchSourceGoogleAdsConfig config;
 
+  // end date of the current run, resolved once so that the watermark does not move past downloaded data
+  private String runEndDate;
+  // customers planned by the current run, so that only downloaded customers get a watermark
+  private List<String> runCustomerIds;
+  private StageMetrics stageMetrics;
+  private ReportMetrics reportMetrics;
+  private String runKey;
+
+  private static final long METRICS_INTERVAL_MILLIS = 1000;
+
   public static final String NAME = "GoogleAdsMultiReportBatchSource";
 
   public GoogleAdsMultiReportBatchSource(MultiReportBatchSourceGoogleAdsConfig config) {
@@ -53,20 +69,72 @@ public class GoogleAdsMultiReportBatchSource extends BatchSource<NullWritable, S
     FailureCollector failureCollector = pipelineConfigurer.getStageConfigurer().getFailureCollector();
     config.validate(failureCollector);
     failureCollector.getOrThrowException();
-    pipelineConfigurer.getStageConfigurer().setOutputSchema(config.getSchema());
+    // the fields depend on the output mode and, for rows, on the selected reports, so the schema is only known
+    // once the macros are evaluated
+    if (config.containsMacro(MultiReportBatchSourceGoogleAdsConfig.OUTPUT_MODE)) {
+      return;
+    }
+    if (config.getOutputMode() == OutputMode.ROWS
+      && (config.containsMacro(MultiReportBatchSourceGoogleAdsConfig.INCLUDE_REPORTS)
+      || config.containsMacro(MultiReportBatchSourceGoogleAdsConfig.EXCLUDE_REPORTS)
+      || config.containsMacro(MultiReportBatchSourceGoogleAdsConfig.TYPED_SCHEMA))) {
+      return;
+    }
+    try {
+      pipelineConfigurer.getStageConfigurer().setOutputSchema(config.getSchema());
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
   }
 
   public void prepareRun(BatchSourceContext context) throws Exception {
+    runEndDate = config.getEndDate();
+    runCustomerIds = new GoogleAdsHelper().getPlannedCustomerIds(config);
+    Schema schema = config.getSchema();
     LineageRecorder lineageRecorder = new LineageRecorder(context, config.referenceName);
-    lineageRecorder.createExternalDataset(config.getSchema());
+    lineageRecorder.createExternalDataset(schema);
     lineageRecorder.recordRead("Reads", "Reading Google AdWords report",
-                               config.getSchema().getFields().stream().map(Schema.Field::getName)
+                               schema.getFields().stream().map(Schema.Field::getName)
       .collect(Collectors.toList()));
-    context.setInput(Input.of(NAME, new GoogleAdsMultiReportInputFormatProvider(config)));
+    GoogleAdsMultiReportInputFormatProvider inputFormatProvider = new GoogleAdsMultiReportInputFormatProvider(
+      config, schema, runEndDate, runCustomerIds, ReportMetrics.getRunKey(context));
+    context.setInput(Input.of(NAME, inputFormatProvider));
+  }
+
+  @Override
+  public void onRunFinish(boolean succeeded, BatchSourceContext context) {
+    super.onRunFinish(succeeded, context);
+    if (!succeeded || !config.isIncremental()) {
+      return;
+    }
+    try {
+      new GoogleAdsHelper().updateWatermarks(config, config.getReportNames(), runCustomerIds, runEndDate);
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to update report watermarks", e);
+    }
+  }
+
+  @Override
+  public void initialize(BatchRuntimeContext context) throws Exception {
+    super.initialize(context);
+    stageMetrics = context.getMetrics();
+    runKey = ReportMetrics.getRunKey(context);
+    reportMetrics = ReportMetrics.attach(runKey);
   }
 
   @Override
   public void transform(KeyValue<NullWritable, StructuredRecord> input, Emitter<StructuredRecord> emitter) {
     emitter.emit(input.getValue());
+    // the readers run in the same JVM, their metrics are published while records are emitted
+    reportMetrics.drainTo(stageMetrics, METRICS_INTERVAL_MILLIS);
+  }
+
+  @Override
+  public void destroy() {
+    if (reportMetrics != null) {
+      reportMetrics.drainTo(stageMetrics);
+      ReportMetrics.detach(runKey);
+    }
+    super.destroy();
   }
 }
@@ -16,8 +16,12 @@
 
 package io.cdap.plugin.googleads.source.multiple;
 
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
 import io.cdap.plugin.googleads.common.GoogleAdsReportSplit;
-import io.cdap.plugin.googleads.common.ReportPresetHelper;
+import io.cdap.plugin.googleads.common.WatermarkStore;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.mapreduce.InputFormat;
 import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.JobContext;
@@ -25,24 +29,75 @@ import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 
 import java.io.IOException;
+import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * InputFormat for mapreduce job, which provides a splits of data.
  */
 public class GoogleAdsMultiReportInputFormat extends InputFormat {
+
+  private static final Gson GSON = new GsonBuilder().create();
+  private static final Type CUSTOMER_IDS_TYPE = new TypeToken<List<String>>() { }.getType();
+
   @Override
   public List<InputSplit> getSplits(JobContext jobContext) throws IOException {
+    Configuration conf = jobContext.getConfiguration();
+    String configJson = conf.get(GoogleAdsMultiReportInputFormatProvider.PROPERTY_CONFIG_JSON);
+    MultiReportBatchSourceGoogleAdsConfig config = GSON.fromJson(configJson,
+                                                                 MultiReportBatchSourceGoogleAdsConfig.class);
+    // the end date and the customers are resolved once in prepareRun, where the watermarks are updated from
+    String runEndDate = conf.get(GoogleAdsMultiReportInputFormatProvider.PROPERTY_END_DATE);
+    List<String> customerIds = GSON.fromJson(
+      conf.get(GoogleAdsMultiReportInputFormatProvider.PROPERTY_CUSTOMER_IDS_JSON), CUSTOMER_IDS_TYPE);
+    Map<String, String> watermarks = config.isIncremental()
+      ? new WatermarkStore(config.getWatermarkDirectory(), jobContext.getConfiguration()).load()
+      : Collections.emptyMap();
+    // only the selected reports are planned, so excluded reports cost neither requests nor tasks
+    List<String> reportNames = config.getReportNames();
+    List<GoogleAdsReportSplit> reportSplits = new ArrayList<>();
+    for (String customerId : customerIds) {
+      for (String report : reportNames) {
+        if (!config.isIncremental()) {
+          reportSplits.add(new GoogleAdsReportSplit(report, customerId, null, null));
+          continue;
+        }
+        String watermarkCustomerId = customerId == null ? config.getDefaultClientCustomerId() : customerId;
+        String startDate = WatermarkStore.getStartDate(
+          watermarks.get(WatermarkStore.getKey(report, watermarkCustomerId)), config.getStartDate(),
+          runEndDate, config.getLookbackDays());
+        // no split if everything up to the end date was downloaded by a previous run
+        if (startDate != null) {
+          reportSplits.add(new GoogleAdsReportSplit(report, customerId, startDate, runEndDate));
+        }
+      }
+    }
+    return packSplits(reportSplits, config.getReportsPerTask());
+  }
+
+  /**
+   * Packs the report splits into splits of the given number of reports, which one task downloads concurrently.
+   */
+  static List<InputSplit> packSplits(List<GoogleAdsReportSplit> reportSplits, int reportsPerTask) {
+    if (reportsPerTask <= 1) {
+      return new ArrayList<>(reportSplits);
+    }
     List<InputSplit> inputSplits = new ArrayList<>();
-    for (String report : new ReportPresetHelper().getReportPresets().keySet()) {
-      inputSplits.add(new GoogleAdsReportSplit(report));
+    for (int start = 0; start < reportSplits.size(); start += reportsPerTask) {
+      int end = Math.min(start + reportsPerTask, reportSplits.size());
+      inputSplits.add(new GoogleAdsPackedReportSplit(new ArrayList<>(reportSplits.subList(start, end))));
     }
     return inputSplits;
   }
 
   @Override
   public RecordReader createRecordReader(InputSplit inputSplit, TaskAttemptContext taskAttemptContext) {
+    if (inputSplit instanceof GoogleAdsPackedReportSplit) {
+      return new GoogleAdsMultiReportPackedRecordReader();
+    }
     return new GoogleAdsMultiReportRecordReader();
   }
 }
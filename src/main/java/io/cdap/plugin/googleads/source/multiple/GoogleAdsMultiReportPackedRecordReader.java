@@ -0,0 +1,198 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.googleads.source.multiple;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.googleads.common.DownloadProgress;
+import io.cdap.plugin.googleads.common.GoogleAdsReportSplit;
+import io.cdap.plugin.googleads.common.ReportCounter;
+import io.cdap.plugin.googleads.common.ReportMetrics;
+import io.cdap.plugin.googleads.source.single.GoogleAdsRecordReader;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * RecordReader implementation, which downloads the reports of a {@link GoogleAdsPackedReportSplit} concurrently
+ * and emits the records of whichever report is read first. Counters and metrics are published by the task
+ * thread once a report has been read completely. In REPORT and BYTES output modes every record is a whole report,
+ * so a task holds up to downloadThreads + 1 reports in memory: one per download thread and one handed over.
+ */
+public class GoogleAdsMultiReportPackedRecordReader extends RecordReader<NullWritable, StructuredRecord> {
+
+  private static final Gson GSON = new GsonBuilder().create();
+  private static final Logger log = LoggerFactory.getLogger(GoogleAdsMultiReportPackedRecordReader.class);
+  // rows are small, so several of them are read ahead per download to avoid handing over every row separately
+  private static final int ROWS_PER_DOWNLOAD_AHEAD = 256;
+
+  private ConcurrentReportIterator iterator;
+  private StructuredRecord currentValue;
+  private TaskAttemptContext taskAttemptContext;
+  private String runKey;
+  private List<GoogleAdsReportSplit> splits;
+  private List<DownloadProgress> progresses;
+  private long[] parseNanos;
+  private boolean[] metricsPublished;
+
+  @Override
+  public void initialize(InputSplit inputSplit, TaskAttemptContext taskAttemptContext)
+    throws IOException, InterruptedException {
+    Configuration conf = taskAttemptContext.getConfiguration();
+    String configJson = conf.get(GoogleAdsMultiReportInputFormatProvider.PROPERTY_CONFIG_JSON);
+    MultiReportBatchSourceGoogleAdsConfig config = GSON.fromJson(configJson,
+                                                                 MultiReportBatchSourceGoogleAdsConfig.class);
+    Schema schema = Schema.parseJson(conf.get(GoogleAdsMultiReportInputFormatProvider.PROPERTY_SCHEMA_JSON));
+    this.taskAttemptContext = taskAttemptContext;
+    this.runKey = conf.get(ReportMetrics.PROPERTY_RUN_KEY);
+    this.splits = ((GoogleAdsPackedReportSplit) inputSplit).getSplits();
+    this.progresses = new ArrayList<>();
+    this.parseNanos = new long[splits.size()];
+    this.metricsPublished = new boolean[splits.size()];
+    List<ConcurrentReportIterator.ReportReader> readers = new ArrayList<>();
+    for (int index = 0; index < splits.size(); index++) {
+      GoogleAdsReportSplit split = splits.get(index);
+      DownloadProgress progress = DownloadProgress.forDateRange(
+        split.getStartDate() == null ? config.getStartDate() : split.getStartDate(),
+        split.getEndDate() == null ? config.getEndDate() : split.getEndDate());
+      progresses.add(progress);
+      int splitIndex = index;
+      readers.add(sink -> readReport(config, schema, splitIndex, sink));
+    }
+    int threads = config.getDownloadThreads();
+    // whole reports are not read ahead, since each of them is held in memory until it is emitted
+    int queueCapacity = config.getOutputMode() == OutputMode.ROWS ? threads * ROWS_PER_DOWNLOAD_AHEAD
+      : config.getOutputMode() == OutputMode.CHUNKED ? threads : 1;
+    iterator = new ConcurrentReportIterator(readers, threads, queueCapacity, this::onReportRead);
+  }
+
+  /**
+   * Downloads the report of the split and passes its records to the sink. Runs in a download thread.
+   */
+  private void readReport(MultiReportBatchSourceGoogleAdsConfig config, Schema schema, int splitIndex,
+                          ConcurrentReportIterator.RecordSink sink) throws IOException, InterruptedException {
+    DownloadProgress progress = progresses.get(splitIndex);
+    Iterator<StructuredRecord> reportIterator =
+      GoogleAdsMultiReportRecordReader.buildIterator(config, schema, splits.get(splitIndex), progress);
+    try {
+      while (true) {
+        long start = System.nanoTime();
+        long readNanos = progress.getReadNanos();
+        StructuredRecord record = reportIterator.hasNext() ? reportIterator.next() : null;
+        // content is read while rows are parsed, the time spent waiting for it is download time
+        parseNanos[splitIndex] += System.nanoTime() - start - (progress.getReadNanos() - readNanos);
+        if (record == null) {
+          break;
+        }
+        progress.recordRead();
+        sink.add(record);
+      }
+      progress.finish();
+    } finally {
+      if (reportIterator instanceof Closeable) {
+        ((Closeable) reportIterator).close();
+      }
+    }
+  }
+
+  /**
+   * Publishes the counters and metrics of the report. Runs in the task thread.
+   */
+  private void onReportRead(int splitIndex) {
+    if (metricsPublished[splitIndex]) {
+      return;
+    }
+    metricsPublished[splitIndex] = true;
+    DownloadProgress progress = progresses.get(splitIndex);
+    taskAttemptContext.getCounter(ReportCounter.BYTES_DOWNLOADED).increment(progress.getBytesRead());
+    taskAttemptContext.getCounter(ReportCounter.RECORDS_READ).increment(progress.getRecordsRead());
+    GoogleAdsRecordReader.publishSplitMetrics(taskAttemptContext, runKey, splits.get(splitIndex), progress,
+                                              parseNanos[splitIndex]);
+  }
+
+  @Override
+  public boolean nextKeyValue() throws IOException, InterruptedException {
+    if (!iterator.hasNext()) {
+      return false;
+    }
+    currentValue = iterator.next();
+    return true;
+  }
+
+  @Override
+  public NullWritable getCurrentKey() throws IOException, InterruptedException {
+    return null;
+  }
+
+  @Override
+  public StructuredRecord getCurrentValue() throws IOException, InterruptedException {
+    return currentValue;
+  }
+
+  @Override
+  public float getProgress() throws IOException, InterruptedException {
+    if (progresses == null || progresses.isEmpty()) {
+      return 0;
+    }
+    float progress = 0;
+    for (DownloadProgress reportProgress : progresses) {
+      progress += reportProgress.getProgress();
+    }
+    return progress / progresses.size();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (progresses != null) {
+      // closing the downloads unblocks readers waiting for content, which do not react to interrupts
+      for (DownloadProgress progress : progresses) {
+        try {
+          progress.abort();
+        } catch (IOException e) {
+          // the reader of the download fails either way
+        }
+      }
+    }
+    if (iterator != null) {
+      iterator.close();
+      if (!iterator.isTerminated()) {
+        // readers which are still running keep updating the counts of their reports
+        log.warn("Report readers did not stop, metrics of reports which were not read completely are not published");
+        return;
+      }
+    }
+    if (splits == null) {
+      return;
+    }
+    // reports which were not read completely are published as well, so failing downloads show up in the metrics
+    for (int index = 0; index < splits.size(); index++) {
+      onReportRead(index);
+    }
+  }
+}
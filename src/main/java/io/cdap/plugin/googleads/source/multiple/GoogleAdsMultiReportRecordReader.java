@@ -20,16 +20,27 @@ import com.google.api.ads.adwords.lib.utils.ReportException;
 import com.google.api.ads.common.lib.exception.OAuthException;
 import com.google.api.ads.common.lib.exception.ValidationException;
 import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.googleads.common.DownloadProgress;
 import io.cdap.plugin.googleads.common.GoogleAdsHelper;
 import io.cdap.plugin.googleads.common.GoogleAdsReportSplit;
+import io.cdap.plugin.googleads.common.ReportChunkIterator;
+import io.cdap.plugin.googleads.common.ReportPreset;
+import io.cdap.plugin.googleads.common.ReportRecordIterator;
+import io.cdap.plugin.googleads.common.ReportRowMapper;
 import io.cdap.plugin.googleads.source.single.GoogleAdsRecordReader;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 /**
  * RecordReader implementation, which reads report instances from Google adWords using
@@ -46,17 +57,85 @@ public class GoogleAdsMultiReportRecordReader extends GoogleAdsRecordReader {
     MultiReportBatchSourceGoogleAdsConfig config = GSON.fromJson(
       configJson,
       MultiReportBatchSourceGoogleAdsConfig.class);
-    String report;
+    // the schema is resolved once by the driver, so typed row schemas do not query field types again
+    Schema schema = Schema.parseJson(conf.get(GoogleAdsMultiReportInputFormatProvider.PROPERTY_SCHEMA_JSON));
+    DownloadProgress progress = initializeProgress(taskAttemptContext, config, googleAdsReportSplit);
+    iterator = buildIterator(config, schema, googleAdsReportSplit, progress);
+  }
+
+  /**
+   * Downloads the report of the split and returns an iterator over its records in the configured output mode,
+   * counting the downloaded bytes in the given progress.
+   */
+  static Iterator<StructuredRecord> buildIterator(MultiReportBatchSourceGoogleAdsConfig config, Schema schema,
+                                                  GoogleAdsReportSplit split, DownloadProgress progress)
+    throws IOException {
+    if (config.getOutputMode() == OutputMode.CHUNKED) {
+      return buildChunkIterator(config, split, schema, progress);
+    }
+    if (config.getOutputMode() == OutputMode.ROWS) {
+      return buildRowIterator(config, split, schema, progress);
+    }
+    Object report;
     try {
-      report = new GoogleAdsHelper().downloadReport(config, googleAdsReportSplit.getReportName());
+      GoogleAdsHelper helper = new GoogleAdsHelper();
+      report = config.getOutputMode() == OutputMode.BYTES
+        ? ByteBuffer.wrap(helper.downloadSplitReportBytes(config, split, progress))
+        : helper.downloadSplitReport(config, split, progress);
     } catch (OAuthException | ValidationException | ReportException | ReportDownloadResponseException e) {
       throw new RuntimeException("download report failed", e);
     }
-    StructuredRecord.Builder builder = StructuredRecord.builder(config.getSchema());
-    builder.set("report_name" , googleAdsReportSplit.getReportName());
+    StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+    builder.set(MultiReportBatchSourceGoogleAdsConfig.REPORT_NAME_FIELD, split.getReportName());
     builder.set("report" , report);
+    if (config.isMultiCustomer()) {
+      builder.set(MultiReportBatchSourceGoogleAdsConfig.CLIENT_CUSTOMER_ID_FIELD, split.getCustomerId());
+    }
     List<StructuredRecord> reportStructure = new ArrayList<>();
     reportStructure.add(builder.build());
-    iterator = reportStructure.iterator();
+    return reportStructure.iterator();
+  }
+
+  /**
+   * Returns an iterator over chunks of the report, which are read from the download while records are emitted.
+   */
+  private static ReportChunkIterator buildChunkIterator(MultiReportBatchSourceGoogleAdsConfig config,
+                                                        GoogleAdsReportSplit split, Schema schema,
+                                                        DownloadProgress progress)
+    throws IOException {
+    Reader reader = openSplitReport(config, split, progress);
+    return new ReportChunkIterator(reader, schema, config.getChunkBytes(), getConstantValues(config, split));
+  }
+
+  /**
+   * Returns an iterator which parses the rows of the report into records while they are downloaded. Fields of
+   * other report presets are left empty.
+   */
+  private static ReportRecordIterator buildRowIterator(MultiReportBatchSourceGoogleAdsConfig config,
+                                                       GoogleAdsReportSplit split, Schema schema,
+                                                       DownloadProgress progress)
+    throws IOException {
+    ReportPreset preset = config.getReportPresetHelper().getReportPreset(split.getReportName());
+    ReportRowMapper rowMapper = new ReportRowMapper(schema, preset.getFields(), getConstantValues(config, split));
+    return new ReportRecordIterator(openSplitReport(config, split, progress), rowMapper);
+  }
+
+  private static Reader openSplitReport(MultiReportBatchSourceGoogleAdsConfig config, GoogleAdsReportSplit split,
+                                        DownloadProgress progress) throws IOException {
+    try {
+      return new GoogleAdsHelper().openSplitReport(config, split, progress);
+    } catch (OAuthException | ValidationException | ReportException | ReportDownloadResponseException e) {
+      throw new RuntimeException("download report failed", e);
+    }
+  }
+
+  private static Map<String, String> getConstantValues(MultiReportBatchSourceGoogleAdsConfig config,
+                                                       GoogleAdsReportSplit split) {
+    Map<String, String> constantValues = new HashMap<>();
+    constantValues.put(MultiReportBatchSourceGoogleAdsConfig.REPORT_NAME_FIELD, split.getReportName());
+    if (config.isMultiCustomer()) {
+      constantValues.put(MultiReportBatchSourceGoogleAdsConfig.CLIENT_CUSTOMER_ID_FIELD, split.getCustomerId());
+    }
+    return constantValues;
   }
 }
@@ -0,0 +1,87 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.googleads.source.multiple;
+
+import io.cdap.plugin.googleads.common.GoogleAdsReportSplit;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.InputSplit;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Split of several report splits, which are downloaded concurrently by one task.
+ */
+public class GoogleAdsPackedReportSplit extends InputSplit implements Writable {
+
+  private List<GoogleAdsReportSplit> splits;
+
+  public GoogleAdsPackedReportSplit() {
+    this(Collections.emptyList());
+  }
+
+  public GoogleAdsPackedReportSplit(List<GoogleAdsReportSplit> splits) {
+    this.splits = splits;
+  }
+
+  @Override
+  public void readFields(DataInput dataInput) throws IOException {
+    int count = dataInput.readInt();
+    splits = new ArrayList<>(count);
+    for (int index = 0; index < count; index++) {
+      GoogleAdsReportSplit split = new GoogleAdsReportSplit();
+      split.readFields(dataInput);
+      splits.add(split);
+    }
+  }
+
+  @Override
+  public void write(DataOutput dataOutput) throws IOException {
+    dataOutput.writeInt(splits.size());
+    for (GoogleAdsReportSplit split : splits) {
+      split.write(dataOutput);
+    }
+  }
+
+  @Override
+  public long getLength() {
+    long length = 0;
+    for (GoogleAdsReportSplit split : splits) {
+      length += split.getLength();
+    }
+    return length;
+  }
+
+  @Override
+  public String[] getLocations() {
+    return new String[0];
+  }
+
+  @Override
+  public String toString() {
+    return splits.stream().map(GoogleAdsReportSplit::toString).collect(Collectors.joining(", ", "[", "]"));
+  }
+
+  public List<GoogleAdsReportSplit> getSplits() {
+    return splits;
+  }
+}
@@ -15,16 +15,33 @@
  */
 package io.cdap.plugin.googleads.source.multiple;
 
+import com.google.api.ads.adwords.axis.v201809.cm.ReportDefinitionField;
 import com.google.api.ads.adwords.lib.jaxb.v201809.DownloadFormat;
+import com.google.api.ads.common.lib.exception.OAuthException;
+import com.google.api.ads.common.lib.exception.ValidationException;
 import io.cdap.cdap.api.annotation.Description;
 import io.cdap.cdap.api.annotation.Macro;
 import io.cdap.cdap.api.annotation.Name;
 import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.cdap.etl.api.FailureCollector;
 import io.cdap.plugin.googleads.common.BaseGoogleAdsConfig;
+import io.cdap.plugin.googleads.common.GoogleAdsHelper;
+import io.cdap.plugin.googleads.common.ReportChunkIterator;
+import io.cdap.plugin.googleads.common.ReportPreset;
+import io.cdap.plugin.googleads.common.ReportPresetHelper;
+import io.cdap.plugin.googleads.common.ReportSchemaBuilder;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import javax.annotation.Nullable;
 
 /**
  * Provides all required configuration for reading Google AdWords report
@@ -34,6 +51,17 @@ public class MultiReportBatchSourceGoogleAdsConfig extends BaseGoogleAdsConfig {
   private static final String REPORT_FORMAT = "reportFormat";
   public static final String INCLUDE_REPORT_HEADER = "includeReportHeader";
   public static final String INCLUDE_COLUMN_HEADER = "includeColumnHeader";
+  public static final String CLIENT_CUSTOMER_ID_FIELD = "client_customer_id";
+  public static final String INCLUDE_REPORTS = "includeReports";
+  public static final String EXCLUDE_REPORTS = "excludeReports";
+  public static final String OUTPUT_MODE = "outputMode";
+  public static final String CHUNK_SIZE = "chunkSize";
+  public static final int DEFAULT_CHUNK_SIZE_KB = 4096;
+  public static final String TYPED_SCHEMA = "typedSchema";
+  public static final String REPORT_NAME_FIELD = "report_name";
+  public static final String REPORTS_PER_TASK = "reportsPerTask";
+  public static final String DOWNLOAD_THREADS = "downloadThreads";
+  public static final int DEFAULT_DOWNLOAD_THREADS = 4;
 
   @Name(REPORT_FORMAT)
   @Description("Report format")
@@ -48,6 +76,52 @@ public class MultiReportBatchSourceGoogleAdsConfig extends BaseGoogleAdsConfig {
   @Description("Specifies whether to include a header row to a report. This row contains report field names.")
   @Macro
   public Boolean includeColumnHeader;
+  @Name(INCLUDE_REPORTS)
+  @Description("Comma separated names or regular expressions of the report presets to download, for example " +
+    "'Campaign Performance Report: .*'. All report presets are downloaded if empty.")
+  @Macro
+  @Nullable
+  public String includeReports;
+  @Name(EXCLUDE_REPORTS)
+  @Description("Comma separated names or regular expressions of the report presets not to download, even if " +
+    "they are included.")
+  @Macro
+  @Nullable
+  public String excludeReports;
+  @Name(OUTPUT_MODE)
+  @Description("How reports are emitted. REPORT emits one record holding the whole report. CHUNKED emits the " +
+    "report as a sequence of records of consecutive rows, which are read from the download as it arrives. " +
+    "Both decompress GZIPPED formats. " +
+    "BYTES emits one record holding the raw downloaded bytes, so GZIPPED formats are passed on compressed. " +
+    "ROWS parses the reports and emits one record per row, with the fields of all selected report presets. " +
+    "Default is REPORT.")
+  @Macro
+  @Nullable
+  public String outputMode;
+  @Name(CHUNK_SIZE)
+  @Description("Maximum size of a chunk in kilobytes in CHUNKED output mode. Chunks end at row boundaries, a row " +
+    "larger than the chunk size makes up a chunk of its own. Default is 4096.")
+  @Macro
+  @Nullable
+  public Integer chunkSize;
+  @Name(TYPED_SCHEMA)
+  @Description("Set to true to output numeric, money and date fields with their own types instead of strings " +
+    "in ROWS output mode. A field which has different types in different reports is read as string.")
+  @Macro
+  @Nullable
+  public Boolean typedSchema;
+  @Name(REPORTS_PER_TASK)
+  @Description("Number of reports downloaded by one task. Most of a download is spent waiting for Google to " +
+    "generate the report, so downloading several reports per task keeps small clusters busy. Default is 1.")
+  @Macro
+  @Nullable
+  public Integer reportsPerTask;
+  @Name(DOWNLOAD_THREADS)
+  @Description("Maximum number of reports a task downloads at the same time if it downloads several reports. " +
+    "In REPORT and BYTES output modes a task holds up to this number + 1 whole reports in memory. Default is 4.")
+  @Macro
+  @Nullable
+  public Integer downloadThreads;
 
   public MultiReportBatchSourceGoogleAdsConfig(String referenceName) {
     super(referenceName);
@@ -61,6 +135,154 @@ public class MultiReportBatchSourceGoogleAdsConfig extends BaseGoogleAdsConfig {
   public void validate(FailureCollector failureCollector) {
     super.validate(failureCollector);
     validateFormat(failureCollector);
+    validateReportSelection(failureCollector);
+    validateOutputMode(failureCollector);
+    validateConcurrency(failureCollector);
+  }
+
+  private void validateConcurrency(FailureCollector failureCollector) {
+    if (!containsMacro(REPORTS_PER_TASK) && reportsPerTask != null && reportsPerTask < 1) {
+      failureCollector.addFailure("reportsPerTask must be a positive number.", null)
+        .withConfigProperty(REPORTS_PER_TASK);
+    }
+    if (!containsMacro(DOWNLOAD_THREADS) && downloadThreads != null && downloadThreads < 1) {
+      failureCollector.addFailure("downloadThreads must be a positive number.", null)
+        .withConfigProperty(DOWNLOAD_THREADS);
+    }
+  }
+
+  private void validateOutputMode(FailureCollector failureCollector) {
+    if (!containsMacro(OUTPUT_MODE)) {
+      try {
+        getOutputMode();
+      } catch (IllegalArgumentException e) {
+        failureCollector.addFailure(String.format("outputMode '%s' is not a valid output mode", outputMode),
+                                    "Use one of REPORT, CHUNKED, BYTES, ROWS").withConfigProperty(OUTPUT_MODE);
+      }
+    }
+    if (!containsMacro(CHUNK_SIZE) && chunkSize != null && chunkSize < 1) {
+      failureCollector.addFailure("chunkSize must be a positive number.", null).withConfigProperty(CHUNK_SIZE);
+    }
+  }
+
+  public OutputMode getOutputMode() {
+    return outputMode == null || outputMode.isEmpty()
+      ? OutputMode.REPORT
+      : OutputMode.valueOf(outputMode.toUpperCase());
+  }
+
+  /**
+   * Returns the format reports are downloaded in. Rows are always parsed from CSV, whatever report format is set.
+   */
+  public DownloadFormat getDownloadFormat() {
+    return getOutputMode() == OutputMode.ROWS ? DownloadFormat.CSV : getReportFormat();
+  }
+
+  public int getReportsPerTask() {
+    return reportsPerTask == null ? 1 : reportsPerTask;
+  }
+
+  public int getDownloadThreads() {
+    return downloadThreads == null ? DEFAULT_DOWNLOAD_THREADS : downloadThreads;
+  }
+
+  public boolean isTypedSchema() {
+    return Boolean.TRUE.equals(typedSchema);
+  }
+
+  /**
+   * Returns the maximum size of a chunk in bytes.
+   */
+  public long getChunkBytes() {
+    return (chunkSize == null ? DEFAULT_CHUNK_SIZE_KB : chunkSize) * 1024L;
+  }
+
+  private void validateReportSelection(FailureCollector failureCollector) {
+    if (containsMacro(INCLUDE_REPORTS) || containsMacro(EXCLUDE_REPORTS)) {
+      return;
+    }
+    Set<String> presetNames;
+    try {
+      presetNames = getReportPresetHelper().getReportPresets().keySet();
+    } catch (IOException e) {
+      failureCollector.addFailure(String.format("Can`t read report presets: %s", e.getMessage()), null);
+      return;
+    }
+    List<Pattern> includePatterns;
+    try {
+      includePatterns = getReportPatterns(includeReports, presetNames);
+    } catch (PatternSyntaxException e) {
+      failureCollector.addFailure(String.format("'%s' is not a valid report name pattern", e.getPattern()),
+                                  "Enter report preset names or regular expressions.")
+        .withConfigProperty(INCLUDE_REPORTS);
+      return;
+    }
+    try {
+      getReportPatterns(excludeReports, presetNames);
+    } catch (PatternSyntaxException e) {
+      failureCollector.addFailure(String.format("'%s' is not a valid report name pattern", e.getPattern()),
+                                  "Enter report preset names or regular expressions.")
+        .withConfigProperty(EXCLUDE_REPORTS);
+      return;
+    }
+    try {
+      for (Pattern includePattern : includePatterns) {
+        if (presetNames.stream().noneMatch(name -> includePattern.matcher(name).matches())) {
+          failureCollector.addFailure(String.format("'%s' matches no report preset", includePattern.pattern()),
+                                      null).withConfigProperty(INCLUDE_REPORTS);
+        }
+      }
+      if (getReportNames().isEmpty()) {
+        failureCollector.addFailure("No report preset is selected",
+                                    "Change includeReports or excludeReports so that reports are downloaded.")
+          .withConfigProperty(EXCLUDE_REPORTS);
+      }
+    } catch (IOException e) {
+      failureCollector.addFailure(String.format("Can`t read report presets: %s", e.getMessage()), null);
+    }
+  }
+
+  /**
+   * Returns the names of the report presets which are included and not excluded, in preset order.
+   */
+  public List<String> getReportNames() throws IOException {
+    Set<String> presetNames = getReportPresetHelper().getReportPresets().keySet();
+    List<Pattern> includePatterns = getReportPatterns(includeReports, presetNames);
+    List<Pattern> excludePatterns = getReportPatterns(excludeReports, presetNames);
+    List<String> reportNames = new ArrayList<>();
+    for (String name : presetNames) {
+      if ((includePatterns.isEmpty() || matchesAny(includePatterns, name)) && !matchesAny(excludePatterns, name)) {
+        reportNames.add(name);
+      }
+    }
+    return reportNames;
+  }
+
+  /**
+   * Returns the patterns of the comma separated entries. An entry which is the name of a preset only matches that
+   * name, as custom preset names may contain regular expression characters; other entries are regular expressions.
+   */
+  private static List<Pattern> getReportPatterns(@Nullable String reports, Set<String> presetNames) {
+    if (reports == null || reports.trim().isEmpty()) {
+      return Collections.emptyList();
+    }
+    List<Pattern> patterns = new ArrayList<>();
+    for (String report : reports.split(",")) {
+      String entry = report.trim();
+      if (!entry.isEmpty()) {
+        patterns.add(Pattern.compile(presetNames.contains(entry) ? Pattern.quote(entry) : entry));
+      }
+    }
+    return patterns;
+  }
+
+  private static boolean matchesAny(List<Pattern> patterns, String name) {
+    for (Pattern pattern : patterns) {
+      if (pattern.matcher(name).matches()) {
+        return true;
+      }
+    }
+    return false;
   }
 
   private void validateFormat(FailureCollector failureCollector) {
@@ -75,14 +297,73 @@ public class MultiReportBatchSourceGoogleAdsConfig extends BaseGoogleAdsConfig {
     }
   }
 
-  public Schema getSchema() {
+  public Schema getSchema() throws IOException {
     Set<Schema.Field> schemaFields = new HashSet<>();
-    schemaFields.add(Schema.Field.of("report_name", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
-    schemaFields.add(Schema.Field.of("report", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+    schemaFields.add(Schema.Field.of(REPORT_NAME_FIELD, Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+    if (getOutputMode() == OutputMode.ROWS) {
+      for (Map.Entry<String, Schema> rowField : getRowFieldSchemas().entrySet()) {
+        schemaFields.add(Schema.Field.of(rowField.getKey(), rowField.getValue()));
+      }
+    } else if (getOutputMode() == OutputMode.CHUNKED) {
+      schemaFields.add(Schema.Field.of(ReportChunkIterator.CHUNK_INDEX_FIELD, Schema.of(Schema.Type.INT)));
+      schemaFields.add(Schema.Field.of(ReportChunkIterator.BYTE_OFFSET_FIELD, Schema.of(Schema.Type.LONG)));
+      schemaFields.add(Schema.Field.of(ReportChunkIterator.CHUNK_FIELD, Schema.of(Schema.Type.STRING)));
+    } else if (getOutputMode() == OutputMode.BYTES) {
+      schemaFields.add(Schema.Field.of("report", Schema.nullableOf(Schema.of(Schema.Type.BYTES))));
+    } else {
+      schemaFields.add(Schema.Field.of("report", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+    }
+    if (isMultiCustomer()) {
+      schemaFields.add(Schema.Field.of(CLIENT_CUSTOMER_ID_FIELD, Schema.of(Schema.Type.STRING)));
+    }
 
 
     return Schema.recordOf(
       "GoogleAdsReports",
       schemaFields);
   }
+
+  /**
+   * Returns the schemas of the fields of all selected report presets. Field types are queried once per report
+   * type, a field which has different types in different report types is read as string.
+   */
+  private Map<String, Schema> getRowFieldSchemas() throws IOException {
+    ReportPresetHelper presetHelper = getReportPresetHelper();
+    Map<String, Map<String, String>> reportTypeFieldTypes = new HashMap<>();
+    Map<String, Schema> fieldSchemas = new HashMap<>();
+    for (String reportName : getReportNames()) {
+      ReportPreset preset = presetHelper.getReportPreset(reportName);
+      Map<String, String> fieldTypes = Collections.emptyMap();
+      if (isTypedSchema()) {
+        String reportType = preset.getType().value();
+        fieldTypes = reportTypeFieldTypes.get(reportType);
+        if (fieldTypes == null) {
+          fieldTypes = getFieldTypes(reportType);
+          reportTypeFieldTypes.put(reportType, fieldTypes);
+        }
+      }
+      for (String field : preset.getFields()) {
+        Schema fieldSchema = ReportSchemaBuilder.getFieldSchema(fieldTypes.get(field));
+        Schema knownSchema = fieldSchemas.putIfAbsent(field, fieldSchema);
+        if (knownSchema != null && !knownSchema.equals(fieldSchema)) {
+          fieldSchemas.put(field, ReportSchemaBuilder.getFieldSchema(null));
+        }
+      }
+    }
+    return fieldSchemas;
+  }
+
+  private Map<String, String> getFieldTypes(String reportType) throws IOException {
+    ReportDefinitionField[] reportDefinitionFields;
+    try {
+      reportDefinitionFields = new GoogleAdsHelper().getReportDefinitionFields(this, reportType);
+    } catch (OAuthException | ValidationException e) {
+      throw new IOException("Failed to get report field types", e);
+    }
+    Map<String, String> fieldTypes = new HashMap<>();
+    for (ReportDefinitionField reportDefinitionField : reportDefinitionFields) {
+      fieldTypes.put(reportDefinitionField.getFieldName(), reportDefinitionField.getFieldType());
+    }
+    return fieldTypes;
+  }
 }
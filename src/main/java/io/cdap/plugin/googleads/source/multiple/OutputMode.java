@@ -0,0 +1,39 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.googleads.source.multiple;
+
+/**
+ * Defines how a downloaded report is emitted as records.
+ */
+public enum OutputMode {
+  /**
+   * One record per report, which holds the whole report.
+   */
+  REPORT,
+  /**
+   * One record per chunk of consecutive report rows.
+   */
+  CHUNKED,
+  /**
+   * One record per report, which holds the raw downloaded bytes without decoding or decompressing them.
+   */
+  BYTES,
+  /**
+   * One record per report row, with the fields of all selected report presets.
+   */
+  ROWS
+}
@@ -16,6 +16,8 @@
 package io.cdap.plugin.googleads.source.single;
 
 import com.google.api.ads.adwords.axis.v201809.cm.ReportDefinitionField;
+import com.google.api.ads.adwords.lib.jaxb.v201809.DownloadFormat;
+import com.google.api.ads.adwords.lib.jaxb.v201809.Predicate;
 import com.google.api.ads.adwords.lib.jaxb.v201809.ReportDefinitionReportType;
 import com.google.api.ads.common.lib.exception.OAuthException;
 import com.google.api.ads.common.lib.exception.ValidationException;
@@ -25,9 +27,12 @@ import io.cdap.cdap.api.annotation.Macro;
 import io.cdap.cdap.api.annotation.Name;
 import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.cdap.etl.api.FailureCollector;
+import io.cdap.plugin.googleads.common.AwqlQuery;
 import io.cdap.plugin.googleads.common.BaseGoogleAdsConfig;
 import io.cdap.plugin.googleads.common.GoogleAdsHelper;
+import io.cdap.plugin.googleads.common.ReportFilters;
 import io.cdap.plugin.googleads.common.ReportPresetHelper;
+import io.cdap.plugin.googleads.common.ReportSchemaBuilder;
 
 import java.io.IOException;
 import java.util.Arrays;
@@ -50,10 +55,21 @@ public class BatchSourceGoogleAdsConfig extends BaseGoogleAdsConfig {
 
   public static final String REPORT_TYPE = "reportType";
   public static final String REPORT_FIELDS = "reportFields";
+  public static final String CLIENT_CUSTOMER_ID_FIELD = "ClientCustomerId";
+  public static final String SPLIT_MODE = "splitMode";
+  public static final String SPLIT_DAYS = "splitDays";
+  public static final String MAX_PARALLEL_DOWNLOADS = "maxParallelDownloads";
+  public static final String TYPED_SCHEMA = "typedSchema";
+  public static final String COMPRESS_DOWNLOAD = "compressDownload";
+  public static final String SPILL_TO_DISK = "spillToDisk";
+  public static final String FILTERS = "filters";
+  public static final String AWQL_QUERY = "awqlQuery";
+  public static final String STATS_DIRECTORY = "statsDirectory";
 
   @Name(REPORT_TYPE)
-  @Description("Google Ads report type to retrieve.")
+  @Description("Google Ads report type to retrieve. Not used if an AWQL query is set.")
   @Macro
+  @Nullable
   protected String reportType;
 
   @Name(REPORT_FIELDS)
@@ -62,8 +78,81 @@ public class BatchSourceGoogleAdsConfig extends BaseGoogleAdsConfig {
   @Nullable
   protected String reportFields;
 
+  @Name(SPLIT_MODE)
+  @Description("Specifies how the date range is divided into splits which are downloaded in parallel. " +
+    "\"NONE\" downloads the whole range at once, \"DAY\" and \"WEEK\" download one split per day or week, " +
+    "\"DAYS\" downloads one split per 'Split Days' days.")
+  @Macro
+  @Nullable
+  protected String splitMode;
+
+  @Name(SPLIT_DAYS)
+  @Description("Number of days in one split when 'DAYS' split mode is selected.")
+  @Macro
+  @Nullable
+  protected Integer splitDays;
+
+  @Name(MAX_PARALLEL_DOWNLOADS)
+  @Description("Maximum number of splits downloaded in parallel, over all customers. Adjacent date windows " +
+    "are merged if the date ranges produce more splits. Every customer gets at least one split.")
+  @Macro
+  @Nullable
+  protected Integer maxParallelDownloads;
+
+  @Name(TYPED_SCHEMA)
+  @Description("Set to true to output numeric, money and date fields with their own types instead of strings. " +
+    "Money values are converted from micros to decimals. Placeholders for unavailable values, such as \"--\", " +
+    "are read as null.")
+  @Macro
+  @Nullable
+  protected Boolean typedSchema;
+
+  @Name(COMPRESS_DOWNLOAD)
+  @Description("Set to true to download the report gzip-compressed and decompress it while reading. " +
+    "Compressed reports are several times smaller, which reduces download time. Default is true.")
+  @Macro
+  @Nullable
+  protected Boolean compressDownload;
+
+  @Name(SPILL_TO_DISK)
+  @Description("Set to true to download the report into a local temporary file before reading it. " +
+    "Interrupted downloads are retried before any record is read, and the file is deleted after reading.")
+  @Macro
+  @Nullable
+  protected Boolean spillToDisk;
+
+  @Name(FILTERS)
+  @Description("Filters applied by Google before the report is downloaded, separated by semicolons. Each filter " +
+    "is a field, an operator and comma separated values, for example 'CampaignStatus IN ENABLED,PAUSED; " +
+    "Impressions > 0'. Values that contain commas or semicolons are quoted, for example " +
+    "'CampaignName = \"Foo, Inc\"'. Filtered fields must support filtering, but do not need to be report fields.")
+  @Macro
+  @Nullable
+  protected String filters;
+
+  @Name(AWQL_QUERY)
+  @Description("AWQL query of the report, used instead of the report type, report fields and filters, for example " +
+    "'SELECT CampaignId, Impressions FROM CAMPAIGN_PERFORMANCE_REPORT WHERE Impressions > 0'. The selected fields " +
+    "make up the output schema. The date range is set from the start and end dates, so the query has no DURING " +
+    "clause.")
+  @Macro
+  @Nullable
+  protected String awqlQuery;
+
+  @Name(STATS_DIRECTORY)
+  @Description("Directory, on any file system supported by Hadoop, that stores the number of rows and bytes of " +
+    "every report, customer and day read. If set, date splits are balanced by the sizes recorded by previous " +
+    "runs, so days with much data get splits of their own and quiet periods share a split.")
+  @Macro
+  @Nullable
+  protected String statsDirectory;
+
   public List<String> getReportFields() throws IOException {
-    ReportPresetHelper presetHelper = new ReportPresetHelper();
+    AwqlQuery query = getAwqlQuery();
+    if (query != null) {
+      return query.getFields();
+    }
+    ReportPresetHelper presetHelper = getReportPresetHelper();
     if (presetHelper.getReportPresets().containsKey(reportType)) {
       return presetHelper.getReportPreset(reportType).getFields();
     }
@@ -74,19 +163,61 @@ public class BatchSourceGoogleAdsConfig extends BaseGoogleAdsConfig {
   public void validate(FailureCollector failureCollector) {
     super.validate(failureCollector);
     GoogleAdsHelper googleAdsHelper = new GoogleAdsHelper();
+    validateFilterSyntax(failureCollector);
     validateReportTypeAndFields(failureCollector, googleAdsHelper);
+    validateSplitting(failureCollector);
+  }
+
+  protected void validateFilterSyntax(FailureCollector failureCollector) {
+    if (containsMacro(FILTERS)) {
+      return;
+    }
+    try {
+      getFilters();
+    } catch (IllegalArgumentException e) {
+      failureCollector.addFailure(e.getMessage(), "Use '<field> <operator> <values>' filters separated by ';'.")
+        .withConfigProperty(FILTERS);
+    }
+  }
+
+  protected void validateSplitting(FailureCollector failureCollector) {
+    if (!containsMacro(SPLIT_MODE)) {
+      SplitMode mode = null;
+      try {
+        mode = getSplitMode();
+      } catch (IllegalArgumentException e) {
+        failureCollector.addFailure(String.format("splitMode '%s' is not a valid split mode", splitMode),
+                                    "Use one of NONE, DAY, WEEK, DAYS").withConfigProperty(SPLIT_MODE);
+      }
+      if (mode == SplitMode.DAYS && !containsMacro(SPLIT_DAYS) && (splitDays == null || splitDays < 1)) {
+        failureCollector.addFailure("splitDays must be a positive number when 'DAYS' split mode is selected.",
+                                    null).withConfigProperty(SPLIT_DAYS);
+      }
+    }
+    if (!containsMacro(MAX_PARALLEL_DOWNLOADS) && maxParallelDownloads != null && maxParallelDownloads < 1) {
+      failureCollector.addFailure("maxParallelDownloads must be a positive number.", null)
+        .withConfigProperty(MAX_PARALLEL_DOWNLOADS);
+    }
   }
 
   protected void validateReportTypeAndFields(FailureCollector failureCollector, GoogleAdsHelper googleAdsHelper) {
-    if (containsMacro(REPORT_TYPE)) {
+    if (containsMacro(REPORT_TYPE) || containsMacro(AWQL_QUERY)) {
+      return;
+    }
+    if (Strings.isNullOrEmpty(reportType) && Strings.isNullOrEmpty(awqlQuery)) {
+      failureCollector.addFailure("reportType or awqlQuery must be set", null).withConfigProperty(REPORT_TYPE);
+      return;
+    }
+    if (!Strings.isNullOrEmpty(awqlQuery) && !validateAwqlQuery(failureCollector)) {
       return;
     }
     ReportDefinitionReportType reportDefinitionReportType = null;
     try {
       reportDefinitionReportType = getReportType();
     } catch (IllegalArgumentException ex) {
-      failureCollector.addFailure(String.format("reportType '%s' is not a valid report type", reportType),
-                                  null).withConfigProperty(REPORT_TYPE);
+      String type = Strings.isNullOrEmpty(awqlQuery) ? reportType : getAwqlQuery().getReportType();
+      failureCollector.addFailure(String.format("reportType '%s' is not a valid report type", type),
+                                  null).withConfigProperty(getReportTypeProperty());
       return;
     } catch (IOException e) {
       failureCollector.addFailure(String.format("Can`t evaluate repo type from preset :%s", e.getMessage()),
@@ -96,8 +227,31 @@ public class BatchSourceGoogleAdsConfig extends BaseGoogleAdsConfig {
     validateFields(failureCollector, googleAdsHelper);
   }
 
+  protected boolean validateAwqlQuery(FailureCollector failureCollector) {
+    AwqlQuery query;
+    try {
+      query = getAwqlQuery();
+    } catch (IllegalArgumentException e) {
+      failureCollector.addFailure(e.getMessage(), "Use 'SELECT <fields> FROM <report type> WHERE <conditions>'.")
+        .withConfigProperty(AWQL_QUERY);
+      return false;
+    }
+    if (query.getDuring() != null) {
+      failureCollector.addFailure("awqlQuery must not have a DURING clause",
+                                  "Remove the DURING clause and set the start and end dates instead.")
+        .withConfigProperty(AWQL_QUERY);
+    }
+    if (!containsMacro(FILTERS) && !Strings.isNullOrEmpty(filters)) {
+      failureCollector.addFailure("filters can not be combined with awqlQuery",
+                                  "Add the filters to the WHERE clause of the query.")
+        .withConfigProperty(FILTERS);
+    }
+    return true;
+  }
+
   protected void validateFields(FailureCollector failureCollector, GoogleAdsHelper googleAdsHelper) {
-    if (containsMacro(REPORT_FIELDS)) {
+    String fieldsProperty = Strings.isNullOrEmpty(awqlQuery) ? REPORT_FIELDS : AWQL_QUERY;
+    if (containsMacro(fieldsProperty)) {
       return;
     }
     List<String> reportFields = null;
@@ -105,18 +259,18 @@ public class BatchSourceGoogleAdsConfig extends BaseGoogleAdsConfig {
       reportFields = getReportFields();
     } catch (IOException e) {
       failureCollector.addFailure(String.format("Can`t evaluate repo fields from preset :%s", e.getMessage()),
-                                  null).withConfigProperty(REPORT_TYPE);
+                                  null).withConfigProperty(getReportTypeProperty());
       return;
     }
     if (reportFields == null || reportFields.isEmpty()) {
       failureCollector.addFailure("reportFields is empty",
                                   "Enter valid reportFields according to report type or select preset report type")
-        .withConfigProperty(REPORT_FIELDS);
+        .withConfigProperty(fieldsProperty);
     }
     Set<String> reportFieldsSet = new HashSet<>(reportFields);
     if (reportFieldsSet.size() != reportFields.size()) {
       failureCollector.addFailure("reportFields contains duplicates", null)
-        .withConfigProperty(REPORT_FIELDS);
+        .withConfigProperty(fieldsProperty);
     }
 
     ReportDefinitionField[] reportDefinitionFields;
@@ -125,7 +279,7 @@ public class BatchSourceGoogleAdsConfig extends BaseGoogleAdsConfig {
       reportType = getReportType().value();
     } catch (IOException e) {
       failureCollector.addFailure(String.format("Can`t evaluate repo type from preset :%s", e.getMessage()),
-                                  null).withConfigProperty(REPORT_TYPE);
+                                  null).withConfigProperty(getReportTypeProperty());
       return;
     }
     try {
@@ -148,7 +302,7 @@ public class BatchSourceGoogleAdsConfig extends BaseGoogleAdsConfig {
               failureCollector.addFailure(String.format("Field '%s' conflicts with field '%s'",
                                                         reportDefinitionField.getFieldName(),
                                                         exclusive), null)
-                .withConfigProperty(REPORT_FIELDS);
+                .withConfigProperty(fieldsProperty);
             }
           }
         }
@@ -158,15 +312,48 @@ public class BatchSourceGoogleAdsConfig extends BaseGoogleAdsConfig {
     if (!reportFieldsSet.isEmpty()) {
       for (String field : reportFieldsSet) {
         failureCollector.addFailure(String.format("Invalid Field '%s'", field), null)
-          .withConfigProperty(REPORT_FIELDS);
+          .withConfigProperty(fieldsProperty);
+      }
+    }
+    validateFilters(failureCollector, reportDefinitionFields);
+  }
+
+  protected void validateFilters(FailureCollector failureCollector, ReportDefinitionField[] reportDefinitionFields) {
+    if (containsMacro(FILTERS) || !Strings.isNullOrEmpty(awqlQuery)) {
+      return;
+    }
+    List<Predicate> predicates;
+    try {
+      predicates = getFilters();
+    } catch (IllegalArgumentException e) {
+      // reported by validateFilterSyntax
+      return;
+    }
+    Map<String, ReportDefinitionField> definitionFields = new HashMap<>();
+    for (ReportDefinitionField reportDefinitionField : reportDefinitionFields) {
+      definitionFields.put(reportDefinitionField.getFieldName(), reportDefinitionField);
+    }
+    for (Predicate predicate : predicates) {
+      ReportDefinitionField definitionField = definitionFields.get(predicate.getField());
+      if (definitionField == null) {
+        failureCollector.addFailure(String.format("Invalid filter field '%s'", predicate.getField()), null)
+          .withConfigProperty(FILTERS);
+      } else if (!Boolean.TRUE.equals(definitionField.getCanFilter())) {
+        failureCollector.addFailure(String.format("Field '%s' can not be filtered", predicate.getField()),
+                                    "Remove the filter or filter by another field.")
+          .withConfigProperty(FILTERS);
       }
     }
   }
 
   public Schema getSchema() throws IOException {
+    Map<String, String> fieldTypes = isTypedSchema() ? getFieldTypes() : Collections.emptyMap();
     Set<Schema.Field> schemaFields = new HashSet<>();
     for (String name : getReportFields()) {
-      schemaFields.add(Schema.Field.of(name, Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+      schemaFields.add(Schema.Field.of(name, ReportSchemaBuilder.getFieldSchema(fieldTypes.get(name))));
+    }
+    if (isMultiCustomer()) {
+      schemaFields.add(Schema.Field.of(CLIENT_CUSTOMER_ID_FIELD, Schema.of(Schema.Type.STRING)));
     }
 
     return Schema.recordOf(
@@ -174,8 +361,83 @@ public class BatchSourceGoogleAdsConfig extends BaseGoogleAdsConfig {
       schemaFields);
   }
 
+  private Map<String, String> getFieldTypes() throws IOException {
+    ReportDefinitionField[] reportDefinitionFields;
+    try {
+      reportDefinitionFields = new GoogleAdsHelper().getReportDefinitionFields(this, getReportType().value());
+    } catch (OAuthException | ValidationException e) {
+      throw new IOException("Failed to get report field types", e);
+    }
+    Map<String, String> fieldTypes = new HashMap<>();
+    for (ReportDefinitionField reportDefinitionField : reportDefinitionFields) {
+      fieldTypes.put(reportDefinitionField.getFieldName(), reportDefinitionField.getFieldType());
+    }
+    return fieldTypes;
+  }
+
+  public boolean isTypedSchema() {
+    return Boolean.TRUE.equals(typedSchema);
+  }
+
+  public SplitMode getSplitMode() {
+    return Strings.isNullOrEmpty(splitMode) ? SplitMode.NONE : SplitMode.valueOf(splitMode.toUpperCase());
+  }
+
+  @Nullable
+  public Integer getSplitDays() {
+    return splitDays;
+  }
+
+  public int getMaxParallelDownloads() {
+    return maxParallelDownloads == null ? Integer.MAX_VALUE : maxParallelDownloads;
+  }
+
+  public boolean isCompressDownload() {
+    return !Boolean.FALSE.equals(compressDownload);
+  }
+
+  public boolean isSpillToDisk() {
+    return Boolean.TRUE.equals(spillToDisk);
+  }
+
+  /**
+   * Returns the predicates of the filters.
+   *
+   * @throws IllegalArgumentException if a filter is not valid
+   */
+  public List<Predicate> getFilters() {
+    return ReportFilters.parse(filters);
+  }
+
+  @Nullable
+  public String getStatsDirectory() {
+    return Strings.isNullOrEmpty(statsDirectory) ? null : statsDirectory;
+  }
+
+  public DownloadFormat getDownloadFormat() {
+    return isCompressDownload() ? DownloadFormat.GZIPPED_CSV : DownloadFormat.CSV;
+  }
+
+  /**
+   * Returns the parsed AWQL query, or null if the report is defined by report type and fields.
+   *
+   * @throws IllegalArgumentException if the query is not valid
+   */
+  @Nullable
+  public AwqlQuery getAwqlQuery() {
+    return Strings.isNullOrEmpty(awqlQuery) ? null : AwqlQuery.parse(awqlQuery);
+  }
+
+  private String getReportTypeProperty() {
+    return Strings.isNullOrEmpty(awqlQuery) ? REPORT_TYPE : AWQL_QUERY;
+  }
+
   public ReportDefinitionReportType getReportType() throws IOException {
-    ReportPresetHelper presetHelper = new ReportPresetHelper();
+    AwqlQuery query = getAwqlQuery();
+    if (query != null) {
+      return ReportDefinitionReportType.fromValue(query.getReportType());
+    }
+    ReportPresetHelper presetHelper = getReportPresetHelper();
     if (presetHelper.getReportPresets().containsKey(reportType)) {
       return presetHelper.getReportPreset(reportType).getType();
     }
@@ -20,16 +20,27 @@ import io.cdap.cdap.api.annotation.Name;
 import io.cdap.cdap.api.annotation.Plugin;
 import io.cdap.cdap.api.data.batch.Input;
 import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.cdap.api.dataset.lib.KeyValue;
 import io.cdap.cdap.etl.api.Emitter;
 import io.cdap.cdap.etl.api.FailureCollector;
 import io.cdap.cdap.etl.api.PipelineConfigurer;
+import io.cdap.cdap.etl.api.StageMetrics;
+import io.cdap.cdap.etl.api.batch.BatchRuntimeContext;
 import io.cdap.cdap.etl.api.batch.BatchSource;
 import io.cdap.cdap.etl.api.batch.BatchSourceContext;
 import io.cdap.plugin.common.LineageRecorder;
+import io.cdap.plugin.googleads.common.GoogleAdsHelper;
+import io.cdap.plugin.googleads.common.ReportMetrics;
+import io.cdap.plugin.googleads.common.ReportSizeStats;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.NullWritable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Plugin read Google AdWords report in batch
@@ -39,8 +50,20 @@ import java.io.IOException;
 @Description("Reads Google AdWords report in batch")
 public class GoogleAdsBatchSource extends BatchSource<NullWritable, StructuredRecord, StructuredRecord> {
 
+  private static final Logger log = LoggerFactory.getLogger(GoogleAdsBatchSource.class);
+
   private final BatchSourceGoogleAdsConfig config;
 
+  // end date of the current run, resolved once so that the watermark does not move past downloaded data
+  private String runEndDate;
+  // customers planned by the current run, so that only downloaded customers get a watermark
+  private List<String> runCustomerIds;
+  private StageMetrics stageMetrics;
+  private ReportMetrics reportMetrics;
+  private String runKey;
+
+  private static final long METRICS_INTERVAL_MILLIS = 1000;
+
   public static final String NAME = "GoogleAdsBatchSource";
 
   public GoogleAdsBatchSource(BatchSourceGoogleAdsConfig config) {
@@ -60,14 +83,60 @@ public class GoogleAdsBatchSource extends BatchSource<NullWritable, StructuredRe
   }
 
   public void prepareRun(BatchSourceContext context) throws Exception {
+    runEndDate = config.getEndDate();
+    runCustomerIds = new GoogleAdsHelper().getPlannedCustomerIds(config);
+    Schema schema = config.getSchema();
     LineageRecorder lineageRecorder = new LineageRecorder(context, config.referenceName);
-    lineageRecorder.createExternalDataset(config.getSchema());
+    lineageRecorder.createExternalDataset(schema);
     lineageRecorder.recordRead("Reads", "Reading Google AdWords report", config.getReportFields());
-    context.setInput(Input.of(NAME, new GoogleAdsInputFormatProvider(config)));
+    GoogleAdsInputFormatProvider inputFormatProvider =
+      new GoogleAdsInputFormatProvider(config, schema, runEndDate, runCustomerIds, ReportMetrics.getRunKey(context));
+    context.setInput(Input.of(NAME, inputFormatProvider));
+  }
+
+  @Override
+  public void onRunFinish(boolean succeeded, BatchSourceContext context) {
+    super.onRunFinish(succeeded, context);
+    if (config.getStatsDirectory() != null) {
+      // sizes of completely read splits are valid even if the run failed
+      try {
+        new ReportSizeStats(config.getStatsDirectory(), new Configuration()).merge();
+      } catch (IOException e) {
+        log.warn("Failed to merge report sizes", e);
+      }
+    }
+    if (!succeeded || !config.isIncremental()) {
+      return;
+    }
+    try {
+      new GoogleAdsHelper().updateWatermarks(config, Collections.singletonList(config.getReportType().value()),
+                                             runCustomerIds, runEndDate);
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to update report watermarks", e);
+    }
+  }
+
+  @Override
+  public void initialize(BatchRuntimeContext context) throws Exception {
+    super.initialize(context);
+    stageMetrics = context.getMetrics();
+    runKey = ReportMetrics.getRunKey(context);
+    reportMetrics = ReportMetrics.attach(runKey);
   }
 
   @Override
   public void transform(KeyValue<NullWritable, StructuredRecord> input, Emitter<StructuredRecord> emitter) {
     emitter.emit(input.getValue());
+    // the readers run in the same JVM, their metrics are published while records are emitted
+    reportMetrics.drainTo(stageMetrics, METRICS_INTERVAL_MILLIS);
+  }
+
+  @Override
+  public void destroy() {
+    if (reportMetrics != null) {
+      reportMetrics.drainTo(stageMetrics);
+      ReportMetrics.detach(runKey);
+    }
+    super.destroy();
   }
 }
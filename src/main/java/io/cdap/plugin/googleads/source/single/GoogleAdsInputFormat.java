@@ -16,23 +16,251 @@
 
 package io.cdap.plugin.googleads.source.single;
 
+import com.google.api.ads.adwords.lib.jaxb.v201809.DownloadFormat;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
 import io.cdap.plugin.googleads.common.GoogleAdsReportSplit;
+import io.cdap.plugin.googleads.common.ReportSizeStats;
+import io.cdap.plugin.googleads.common.WatermarkStore;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.mapreduce.InputFormat;
 import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
 
 /**
- * InputFormat for mapreduce job, which provides a single split of data.
+ * InputFormat for mapreduce job, which provides one split per client customer and date window. If report sizes
+ * of previous runs are available, the windows are balanced by the expected report size instead of the number
+ * of days. The maximum number of parallel downloads limits the splits of all customers together.
  */
 public class GoogleAdsInputFormat extends InputFormat {
+
+  private static final Gson GSON = new GsonBuilder().create();
+  private static final Logger log = LoggerFactory.getLogger(GoogleAdsInputFormat.class);
+  private static final String NOOP = "noop";
+  private static final Type CUSTOMER_IDS_TYPE = new TypeToken<List<String>>() { }.getType();
+
   @Override
-  public List<InputSplit> getSplits(JobContext jobContext) {
-    return Collections.singletonList(new GoogleAdsReportSplit("noop"));
+  public List<InputSplit> getSplits(JobContext jobContext) throws IOException {
+    Configuration conf = jobContext.getConfiguration();
+    String configJson = conf.get(GoogleAdsInputFormatProvider.PROPERTY_CONFIG_JSON);
+    BatchSourceGoogleAdsConfig config = GSON.fromJson(configJson, BatchSourceGoogleAdsConfig.class);
+    // the end date and the customers are resolved once in prepareRun, where the watermarks are updated from
+    String runEndDate = conf.get(GoogleAdsInputFormatProvider.PROPERTY_END_DATE);
+    List<String> customerIds = GSON.fromJson(conf.get(GoogleAdsInputFormatProvider.PROPERTY_CUSTOMER_IDS_JSON),
+                                             CUSTOMER_IDS_TYPE);
+    Map<String, String> watermarks = config.isIncremental()
+      ? new WatermarkStore(config.getWatermarkDirectory(), jobContext.getConfiguration()).load()
+      : Collections.emptyMap();
+    Map<String, ReportSizeStats.DaySize> sizes = config.getStatsDirectory() == null
+      ? Collections.emptyMap()
+      : new ReportSizeStats(config.getStatsDirectory(), jobContext.getConfiguration()).load();
+    String reportName = config.getReportType().value();
+    int windowDays = config.getSplitMode().getWindowDays(config.getSplitDays());
+    List<InputSplit> splits = new ArrayList<>();
+    List<CustomerRange> ranges = new ArrayList<>();
+    for (String customerId : customerIds) {
+      String start = config.getStartDate();
+      if (config.isIncremental()) {
+        String watermarkCustomerId = customerId == null ? config.getDefaultClientCustomerId() : customerId;
+        start = WatermarkStore.getStartDate(watermarks.get(WatermarkStore.getKey(reportName, watermarkCustomerId)),
+                                            start, runEndDate, config.getLookbackDays());
+        if (start == null) {
+          // everything up to the end date was downloaded by a previous run
+          continue;
+        }
+      }
+      if (windowDays < 1) {
+        splits.add(config.isIncremental()
+                     ? new GoogleAdsReportSplit(NOOP, customerId, start, runEndDate)
+                     : new GoogleAdsReportSplit(NOOP, customerId, null, null));
+        continue;
+      }
+      LocalDate startDate = LocalDate.parse(start, DateTimeFormatter.BASIC_ISO_DATE);
+      LocalDate endDate = LocalDate.parse(runEndDate, DateTimeFormatter.BASIC_ISO_DATE);
+      String statsCustomerId = customerId == null ? config.getDefaultClientCustomerId() : customerId;
+      long[] dayBytes = getExpectedDayBytes(sizes, reportName, statsCustomerId, config.getDownloadFormat(),
+                                            startDate, endDate);
+      ranges.add(new CustomerRange(customerId, startDate, endDate, dayBytes, windowDays));
+    }
+    // the limit applies to all customers together, splits of unsplit customers count as well
+    int[] maxSplits = allocateSplits(ranges.stream().mapToInt(range -> range.windowCount).toArray(),
+                                     config.getMaxParallelDownloads() - splits.size());
+    for (int index = 0; index < ranges.size(); index++) {
+      CustomerRange range = ranges.get(index);
+      if (range.dayBytes == null) {
+        splits.addAll(getDateRangeSplits(range.customerId, range.startDate, range.endDate, windowDays,
+                                         maxSplits[index]));
+      } else {
+        // as many splits as a uniform plan has, but of about the same size instead of the same number of days
+        splits.addAll(getBalancedSplits(range.customerId, range.startDate, range.dayBytes, maxSplits[index]));
+      }
+    }
+    return splits;
+  }
+
+  /**
+   * Divides a total number of splits between customers which want the given numbers of splits. Customers which
+   * want less than an even share get what they want, and the rest is divided evenly between the others. Every
+   * customer gets at least one split, even if that exceeds the total.
+   */
+  static int[] allocateSplits(int[] wantedSplits, int totalSplits) {
+    Integer[] order = new Integer[wantedSplits.length];
+    for (int index = 0; index < order.length; index++) {
+      order[index] = index;
+    }
+    Arrays.sort(order, Comparator.comparingInt(index -> wantedSplits[index]));
+    int[] splits = new int[wantedSplits.length];
+    int remainingSplits = totalSplits;
+    for (int position = 0; position < order.length; position++) {
+      int index = order[position];
+      int share = Math.max(1, remainingSplits / (order.length - position));
+      splits[index] = Math.min(wantedSplits[index], share);
+      remainingSplits -= splits[index];
+    }
+    return splits;
+  }
+
+  /**
+   * Divides the inclusive date range into consecutive windows of the given size. If that produces more than
+   * maxSplits windows, the window size is increased so that no more than maxSplits splits are created.
+   */
+  static List<InputSplit> getDateRangeSplits(@Nullable String customerId, LocalDate startDate, LocalDate endDate,
+                                             int windowDays, int maxSplits) {
+    long totalDays = ChronoUnit.DAYS.between(startDate, endDate) + 1;
+    long windowSize = windowDays;
+    if ((totalDays + windowSize - 1) / windowSize > maxSplits) {
+      windowSize = (totalDays + maxSplits - 1) / maxSplits;
+    }
+    List<InputSplit> splits = new ArrayList<>();
+    for (LocalDate windowStart = startDate; !windowStart.isAfter(endDate);
+         windowStart = windowStart.plusDays(windowSize)) {
+      LocalDate windowEnd = windowStart.plusDays(windowSize - 1);
+      if (windowEnd.isAfter(endDate)) {
+        windowEnd = endDate;
+      }
+      splits.add(new GoogleAdsReportSplit(NOOP, customerId,
+                                          windowStart.format(DateTimeFormatter.BASIC_ISO_DATE),
+                                          windowEnd.format(DateTimeFormatter.BASIC_ISO_DATE)));
+    }
+    return splits;
+  }
+
+  /**
+   * Returns the expected number of bytes of every day of the range, or null if no day of the range has a
+   * recorded size. Days without a recorded size are expected to have the average size of the recorded days.
+   */
+  @Nullable
+  static long[] getExpectedDayBytes(Map<String, ReportSizeStats.DaySize> sizes, String reportName,
+                                    @Nullable String customerId, DownloadFormat downloadFormat,
+                                    LocalDate startDate, LocalDate endDate) {
+    if (sizes.isEmpty()) {
+      return null;
+    }
+    long[] dayBytes = new long[(int) ChronoUnit.DAYS.between(startDate, endDate) + 1];
+    long recordedBytes = 0;
+    int recordedDays = 0;
+    for (int day = 0; day < dayBytes.length; day++) {
+      ReportSizeStats.DaySize size = sizes.get(ReportSizeStats.getKey(reportName, customerId, downloadFormat,
+                                                                      startDate.plusDays(day)));
+      if (size == null) {
+        dayBytes[day] = -1;
+      } else {
+        dayBytes[day] = size.getBytes();
+        recordedBytes += size.getBytes();
+        recordedDays++;
+      }
+    }
+    if (recordedDays == 0 || recordedBytes == 0) {
+      return null;
+    }
+    long averageBytes = recordedBytes / recordedDays;
+    for (int day = 0; day < dayBytes.length; day++) {
+      if (dayBytes[day] < 0) {
+        dayBytes[day] = averageBytes;
+      }
+    }
+    return dayBytes;
+  }
+
+  /**
+   * Divides the days into at most splitCount consecutive windows of about the same expected size. A day larger
+   * than the target size gets a window of its own, while consecutive small days share one. The target size is
+   * recomputed from the remaining days after every window, so a large day does not unbalance the windows after it.
+   *
+   * @param dayBytes expected number of bytes of every day, starting at the start date
+   */
+  static List<InputSplit> getBalancedSplits(@Nullable String customerId, LocalDate startDate, long[] dayBytes,
+                                            int splitCount) {
+    long remainingBytes = 0;
+    for (long bytes : dayBytes) {
+      remainingBytes += bytes;
+    }
+    List<InputSplit> splits = new ArrayList<>();
+    int windowStart = 0;
+    long windowBytes = 0;
+    for (int day = 0; day < dayBytes.length; day++) {
+      int remainingSplits = Math.max(1, splitCount - splits.size());
+      long targetBytes = (remainingBytes + remainingSplits - 1) / remainingSplits;
+      // the window is closed if adding the day would take it further away from the target than it is now
+      long overshoot = windowBytes + dayBytes[day] - targetBytes;
+      if (day > windowStart && remainingSplits > 1 && overshoot > 0 && overshoot > targetBytes - windowBytes) {
+        splits.add(createSplit(customerId, startDate.plusDays(windowStart), startDate.plusDays(day - 1),
+                               windowBytes));
+        remainingBytes -= windowBytes;
+        windowStart = day;
+        windowBytes = 0;
+      }
+      windowBytes += dayBytes[day];
+    }
+    splits.add(createSplit(customerId, startDate.plusDays(windowStart), startDate.plusDays(dayBytes.length - 1),
+                           windowBytes));
+    log.debug("Planned {} balanced splits of customer {} for {} days", splits.size(), customerId, dayBytes.length);
+    return splits;
+  }
+
+  private static GoogleAdsReportSplit createSplit(@Nullable String customerId, LocalDate startDate,
+                                                  LocalDate endDate, long expectedBytes) {
+    return new GoogleAdsReportSplit(NOOP, customerId, startDate.format(DateTimeFormatter.BASIC_ISO_DATE),
+                                    endDate.format(DateTimeFormatter.BASIC_ISO_DATE), expectedBytes);
+  }
+
+  /**
+   * Date range of a customer which is split into date windows.
+   */
+  private static class CustomerRange {
+    private final String customerId;
+    private final LocalDate startDate;
+    private final LocalDate endDate;
+    private final long[] dayBytes;
+    private final int windowCount;
+
+    private CustomerRange(@Nullable String customerId, LocalDate startDate, LocalDate endDate,
+                          @Nullable long[] dayBytes, int windowDays) {
+      this.customerId = customerId;
+      this.startDate = startDate;
+      this.endDate = endDate;
+      this.dayBytes = dayBytes;
+      long days = ChronoUnit.DAYS.between(startDate, endDate) + 1;
+      this.windowCount = (int) Math.max(1, (days + windowDays - 1) / windowDays);
+    }
   }
 
   @Override
@@ -19,7 +19,10 @@ import com.google.common.collect.ImmutableMap;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import io.cdap.cdap.api.data.batch.InputFormatProvider;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.googleads.common.ReportMetrics;
 
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -30,10 +33,24 @@ public class GoogleAdsInputFormatProvider implements InputFormatProvider {
   private static final Gson GSON = new GsonBuilder().create();
   private final Map<String, String> conf;
   public static final String PROPERTY_CONFIG_JSON = "cdap.google.ads.config";
+  public static final String PROPERTY_SCHEMA_JSON = "cdap.google.ads.schema";
+  public static final String PROPERTY_END_DATE = "cdap.google.ads.end.date";
+  public static final String PROPERTY_CUSTOMER_IDS_JSON = "cdap.google.ads.customer.ids";
 
-  public GoogleAdsInputFormatProvider(BatchSourceGoogleAdsConfig config) {
+  /**
+   * @param endDate end date of the run, resolved once when the run is prepared
+   * @param customerIds customers the run is planned for, null for the default customer of a single customer
+   *                    config
+   * @param runKey key of the stage in the current run, under which the readers publish their metrics
+   */
+  public GoogleAdsInputFormatProvider(BatchSourceGoogleAdsConfig config, Schema schema, String endDate,
+                                      List<String> customerIds, String runKey) {
     this.conf = new ImmutableMap.Builder<String, String>()
       .put(PROPERTY_CONFIG_JSON, GSON.toJson(config))
+      .put(PROPERTY_SCHEMA_JSON, schema.toString())
+      .put(PROPERTY_END_DATE, endDate)
+      .put(PROPERTY_CUSTOMER_IDS_JSON, GSON.toJson(customerIds))
+      .put(ReportMetrics.PROPERTY_RUN_KEY, runKey)
       .build();
   }
 
@@ -15,6 +15,7 @@
  */
 package io.cdap.plugin.googleads.source.single;
 
+import com.google.api.ads.adwords.lib.jaxb.v201809.DownloadFormat;
 import com.google.api.ads.adwords.lib.utils.ReportDownloadResponseException;
 import com.google.api.ads.adwords.lib.utils.ReportException;
 import com.google.api.ads.common.lib.exception.OAuthException;
@@ -22,16 +23,30 @@ import com.google.api.ads.common.lib.exception.ValidationException;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.googleads.common.AdWordsCredentialPool;
+import io.cdap.plugin.googleads.common.BaseGoogleAdsConfig;
+import io.cdap.plugin.googleads.common.DownloadProgress;
 import io.cdap.plugin.googleads.common.GoogleAdsHelper;
+import io.cdap.plugin.googleads.common.GoogleAdsReportSplit;
+import io.cdap.plugin.googleads.common.ReportCounter;
+import io.cdap.plugin.googleads.common.ReportMetrics;
+import io.cdap.plugin.googleads.common.ReportSizeStats;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.Counter;
 import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
 import java.util.Iterator;
-import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * RecordReader implementation, which reads report instance from Google adWords using
@@ -40,9 +55,33 @@ import java.util.List;
 public class GoogleAdsRecordReader extends RecordReader<NullWritable, StructuredRecord> {
 
   protected static final Gson GSON = new GsonBuilder().create();
+  private static final Logger log = LoggerFactory.getLogger(GoogleAdsRecordReader.class);
+  // counters which are published once the split has been read, bytes and records are published while reading
+  private static final ReportCounter[] SPLIT_COUNTERS = {
+    ReportCounter.SPLITS_READ,
+    ReportCounter.TIME_TO_FIRST_BYTE_MILLIS,
+    ReportCounter.DOWNLOAD_MILLIS,
+    ReportCounter.PARSE_MILLIS,
+    ReportCounter.DOWNLOAD_RETRIES
+  };
 
   protected Iterator<StructuredRecord> iterator;
   private StructuredRecord currentValue;
+  private DownloadProgress progress;
+  private Counter bytesCounter;
+  private Counter recordsCounter;
+  private long countedBytes;
+  private TaskAttemptContext taskAttemptContext;
+  private String runKey;
+  private GoogleAdsReportSplit split;
+  private long parseNanos;
+  private boolean metricsPublished;
+  private ReportSizeStats sizeStats;
+  private String sizeReportName;
+  private DownloadFormat sizeDownloadFormat;
+  private String sizeCustomerId;
+  private LocalDate sizeStartDate;
+  private LocalDate sizeEndDate;
 
   @Override
   public void initialize(InputSplit inputSplit, TaskAttemptContext taskAttemptContext)
@@ -50,22 +89,125 @@ public class GoogleAdsRecordReader extends RecordReader<NullWritable, Structured
     Configuration conf = taskAttemptContext.getConfiguration();
     String configJson = conf.get(GoogleAdsInputFormatProvider.PROPERTY_CONFIG_JSON);
     BatchSourceGoogleAdsConfig googleAdsBatchSourceConfig = GSON.fromJson(configJson, BatchSourceGoogleAdsConfig.class);
-    List<StructuredRecord> reportStructure;
+    Schema schema = Schema.parseJson(conf.get(GoogleAdsInputFormatProvider.PROPERTY_SCHEMA_JSON));
+    GoogleAdsReportSplit split = (GoogleAdsReportSplit) inputSplit;
+    initializeProgress(taskAttemptContext, googleAdsBatchSourceConfig, split);
+    if (googleAdsBatchSourceConfig.getStatsDirectory() != null) {
+      sizeStats = new ReportSizeStats(googleAdsBatchSourceConfig.getStatsDirectory(), conf);
+      sizeReportName = googleAdsBatchSourceConfig.getReportType().value();
+      sizeDownloadFormat = googleAdsBatchSourceConfig.getDownloadFormat();
+      sizeCustomerId = split.getCustomerId() == null
+        ? googleAdsBatchSourceConfig.getDefaultClientCustomerId()
+        : split.getCustomerId();
+      sizeStartDate = LocalDate.parse(split.getStartDate() == null
+                                        ? googleAdsBatchSourceConfig.getStartDate()
+                                        : split.getStartDate(), DateTimeFormatter.BASIC_ISO_DATE);
+      sizeEndDate = LocalDate.parse(split.getEndDate() == null
+                                      ? googleAdsBatchSourceConfig.getEndDate()
+                                      : split.getEndDate(), DateTimeFormatter.BASIC_ISO_DATE);
+    }
     try {
-      reportStructure = new GoogleAdsHelper().buildReportStructure(googleAdsBatchSourceConfig);
+      iterator = new GoogleAdsHelper().buildReportIterator(googleAdsBatchSourceConfig, split, schema, progress);
     } catch (OAuthException | ValidationException | ReportDownloadResponseException | ReportException e) {
       throw new RuntimeException("download report failed", e);
     }
-    iterator = reportStructure.listIterator();
+  }
+
+  /**
+   * Starts tracking the progress of the split and publishing the reader counters.
+   */
+  protected DownloadProgress initializeProgress(TaskAttemptContext taskAttemptContext, BaseGoogleAdsConfig config,
+                                                GoogleAdsReportSplit split) {
+    progress = DownloadProgress.forDateRange(
+      split.getStartDate() == null ? config.getStartDate() : split.getStartDate(),
+      split.getEndDate() == null ? config.getEndDate() : split.getEndDate());
+    bytesCounter = taskAttemptContext.getCounter(ReportCounter.BYTES_DOWNLOADED);
+    recordsCounter = taskAttemptContext.getCounter(ReportCounter.RECORDS_READ);
+    this.taskAttemptContext = taskAttemptContext;
+    this.runKey = taskAttemptContext.getConfiguration().get(ReportMetrics.PROPERTY_RUN_KEY);
+    this.split = split;
+    return progress;
   }
 
   @Override
   public boolean nextKeyValue() throws IOException, InterruptedException {
-    if (iterator.hasNext()) {
+    long start = System.nanoTime();
+    long readNanos = progress.getReadNanos();
+    boolean hasNext = iterator.hasNext();
+    if (hasNext) {
       currentValue = iterator.next();
-      return true;
+      progress.recordRead();
+      recordsCounter.increment(1);
+    } else {
+      progress.finish();
+    }
+    // content is read while rows are parsed, the time spent waiting for it is download time
+    parseNanos += System.nanoTime() - start - (progress.getReadNanos() - readNanos);
+    updateBytesCounter();
+    if (!hasNext) {
+      publishMetrics();
+      recordSize();
+    }
+    return hasNext;
+  }
+
+  /**
+   * Records the size of the completely read split, so that later runs can balance their splits.
+   */
+  private void recordSize() {
+    if (sizeStats == null) {
+      return;
+    }
+    try {
+      sizeStats.record(sizeReportName, sizeCustomerId, sizeDownloadFormat, sizeStartDate, sizeEndDate,
+                       progress.getRecordsRead(), progress.getBytesRead());
+    } catch (IOException e) {
+      // the size is only used to plan later runs, so the split is not failed
+      log.warn("Failed to record the size of report {}", split, e);
     }
-    return false;
+  }
+
+  /**
+   * Publishes the metrics of the split as Hadoop counters and adds them to the metrics of the stage.
+   */
+  private void publishMetrics() {
+    if (metricsPublished || progress == null) {
+      return;
+    }
+    metricsPublished = true;
+    publishSplitMetrics(taskAttemptContext, runKey, split, progress, parseNanos);
+  }
+
+  /**
+   * Publishes the metrics of a read split as Hadoop counters and adds them to the metrics of the stage. Bytes and
+   * records are only added to the stage metrics, their counters are incremented while the split is read.
+   *
+   * @param runKey key of the stage in the current run, see {@link ReportMetrics#getRunKey}
+   */
+  public static void publishSplitMetrics(TaskAttemptContext taskAttemptContext, String runKey,
+                                         GoogleAdsReportSplit split, DownloadProgress progress, long parseNanos) {
+    ReportMetrics metrics = progress.getMetrics();
+    metrics.add(ReportCounter.SPLITS_READ, 1);
+    metrics.add(ReportCounter.DOWNLOAD_MILLIS, TimeUnit.NANOSECONDS.toMillis(progress.getReadNanos()));
+    metrics.add(ReportCounter.PARSE_MILLIS, TimeUnit.NANOSECONDS.toMillis(Math.max(parseNanos, 0)));
+    for (ReportCounter counter : SPLIT_COUNTERS) {
+      taskAttemptContext.getCounter(counter).increment(metrics.get(counter));
+    }
+    metrics.add(ReportCounter.BYTES_DOWNLOADED, progress.getBytesRead());
+    metrics.add(ReportCounter.RECORDS_READ, progress.getRecordsRead());
+    ReportMetrics.addToRun(runKey, metrics);
+    // the credentials of the JVM are shared by all stages, so their refreshes are only counted for the whole job
+    taskAttemptContext.getCounter(ReportCounter.OAUTH_REFRESHES)
+      .increment(AdWordsCredentialPool.getInstance().drainRefreshCount());
+    log.info("Read report {}: {} records, {} bytes, {} ms to first byte, {} ms downloading, {} ms parsing", split,
+             progress.getRecordsRead(), progress.getBytesRead(), metrics.get(ReportCounter.TIME_TO_FIRST_BYTE_MILLIS),
+             metrics.get(ReportCounter.DOWNLOAD_MILLIS), metrics.get(ReportCounter.PARSE_MILLIS));
+  }
+
+  private void updateBytesCounter() {
+    long bytesRead = progress.getBytesRead();
+    bytesCounter.increment(bytesRead - countedBytes);
+    countedBytes = bytesRead;
   }
 
   @Override
@@ -80,11 +222,15 @@ public class GoogleAdsRecordReader extends RecordReader<NullWritable, Structured
 
   @Override
   public float getProgress() throws IOException, InterruptedException {
-    return 0;
+    return progress == null ? 0 : progress.getProgress();
   }
 
   @Override
   public void close() throws IOException {
-
+    // splits which were not read completely are published as well, so failing downloads show up in the metrics
+    publishMetrics();
+    if (iterator instanceof Closeable) {
+      ((Closeable) iterator).close();
+    }
   }
 }
@@ -0,0 +1,43 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.googleads.source.single;
+
+/**
+ * Defines how the report date range is divided into splits.
+ */
+public enum SplitMode {
+  NONE,
+  DAY,
+  WEEK,
+  DAYS;
+
+  /**
+   * Returns the number of days covered by one split window, or 0 if the date range should not be split.
+   */
+  public int getWindowDays(Integer splitDays) {
+    switch (this) {
+      case DAY:
+        return 1;
+      case WEEK:
+        return 7;
+      case DAYS:
+        return splitDays == null ? 0 : splitDays;
+      default:
+        return 0;
+    }
+  }
+}
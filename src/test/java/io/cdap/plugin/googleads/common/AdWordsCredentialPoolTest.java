@@ -0,0 +1,80 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.googleads.common;
+
+import com.google.api.client.auth.oauth2.BearerToken;
+import com.google.api.client.auth.oauth2.Credential;
+import com.google.api.client.auth.oauth2.TokenResponse;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AdWordsCredentialPoolTest {
+
+  @Test
+  public void testGetCredentialRefreshesExpiringToken() throws Exception {
+    //setup mocks
+    Credential credential = new TestCredential()
+      .setAccessToken("token")
+      .setExpiresInSeconds(3600L);
+    AdWordsCredentialPool pool = new AdWordsCredentialPool();
+    pool.putCredential("clientId", "clientSecret", "refreshToken", credential);
+
+    //test
+    Credential first = pool.getCredential("clientId", "clientSecret", "refreshToken");
+    String firstToken = first.getAccessToken();
+    credential.setExpiresInSeconds(10L);
+    Credential second = pool.getCredential("clientId", "clientSecret", "refreshToken");
+
+    //assert
+    Assert.assertSame(credential, first);
+    Assert.assertSame(credential, second);
+    Assert.assertEquals("token", firstToken);
+    Assert.assertEquals("refreshed", second.getAccessToken());
+  }
+
+  @Test
+  public void testCredentialsAreKeyedByClientSecret() throws Exception {
+    //setup mocks
+    Credential oldCredential = new TestCredential().setAccessToken("old");
+    Credential newCredential = new TestCredential().setAccessToken("new");
+    AdWordsCredentialPool pool = new AdWordsCredentialPool();
+    pool.putCredential("clientId", "oldSecret", "refreshToken", oldCredential);
+    pool.putCredential("clientId", "newSecret", "refreshToken", newCredential);
+
+    //test
+    Credential first = pool.getCredential("clientId", "oldSecret", "refreshToken");
+    Credential second = pool.getCredential("clientId", "newSecret", "refreshToken");
+
+    //assert
+    Assert.assertSame(oldCredential, first);
+    Assert.assertSame(newCredential, second);
+  }
+
+  private static class TestCredential extends Credential {
+
+    private TestCredential() {
+      super(BearerToken.authorizationHeaderAccessMethod());
+    }
+
+    @Override
+    protected TokenResponse executeRefreshToken() {
+      return new TokenResponse()
+        .setAccessToken("refreshed")
+        .setExpiresInSeconds(3600L);
+    }
+  }
+}
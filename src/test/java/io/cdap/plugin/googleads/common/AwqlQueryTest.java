@@ -0,0 +1,77 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.googleads.common;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class AwqlQueryTest {
+
+  @Test
+  public void testParse() {
+    AwqlQuery query = AwqlQuery.parse(" select CampaignId,CampaignName , Impressions FROM CAMPAIGN_PERFORMANCE_REPORT"
+                                        + " WHERE Impressions > 0 AND CampaignName = 'Summer sale' during LAST_7_DAYS");
+
+    Assert.assertEquals(Arrays.asList("CampaignId", "CampaignName", "Impressions"), query.getFields());
+    Assert.assertEquals("CAMPAIGN_PERFORMANCE_REPORT", query.getReportType());
+    Assert.assertEquals("Impressions > 0 AND CampaignName = 'Summer sale'", query.getWhere());
+    Assert.assertEquals("LAST_7_DAYS", query.getDuring());
+  }
+
+  @Test
+  public void testParseIgnoresKeywordsInQuotedValues() {
+    AwqlQuery query = AwqlQuery.parse("SELECT CampaignId FROM CAMPAIGN_PERFORMANCE_REPORT "
+                                        + "WHERE CampaignName IN ['Sale DURING summer', \"It\\\"s FROM here\"]");
+
+    Assert.assertEquals("CampaignName IN ['Sale DURING summer', \"It\\\"s FROM here\"]", query.getWhere());
+    Assert.assertNull(query.getDuring());
+  }
+
+  @Test
+  public void testToQuery() {
+    AwqlQuery query = AwqlQuery.parse("SELECT CampaignId, Cost FROM CAMPAIGN_PERFORMANCE_REPORT "
+                                        + "WHERE Cost > 0 DURING 20180101,20181231");
+
+    Assert.assertEquals("SELECT CampaignId, Cost FROM CAMPAIGN_PERFORMANCE_REPORT WHERE Cost > 0 "
+                          + "DURING 20190101,20190107", query.toQuery("20190101", "20190107"));
+    Assert.assertEquals("SELECT CampaignId FROM AD_PERFORMANCE_REPORT DURING 20190101,20190101",
+                        AwqlQuery.parse("SELECT CampaignId FROM AD_PERFORMANCE_REPORT")
+                          .toQuery("20190101", "20190101"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParseWithoutFrom() {
+    AwqlQuery.parse("SELECT CampaignId");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParseClausesOutOfOrder() {
+    AwqlQuery.parse("SELECT CampaignId FROM CAMPAIGN_PERFORMANCE_REPORT DURING TODAY WHERE Cost > 0");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParseInvalidField() {
+    AwqlQuery.parse("SELECT CampaignId, FROM CAMPAIGN_PERFORMANCE_REPORT");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParseOrderBy() {
+    AwqlQuery.parse("SELECT CampaignId FROM CAMPAIGN_PERFORMANCE_REPORT ORDER BY CampaignId");
+  }
+}
@@ -22,6 +22,9 @@ import io.cdap.plugin.googleads.source.single.BatchSourceGoogleAdsConfig;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.Collections;
+
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.spy;
@@ -92,4 +95,27 @@ public class BaseGoogleAdsConfigTest {
     //assert
     Assert.assertEquals(2, failureCollector.getValidationFailures().size());
   }
+
+  @Test
+  public void testGetClientCustomerIds() {
+    //setup mocks
+    BatchSourceGoogleAdsConfig config = new BatchSourceGoogleAdsConfig("test");
+    config.clientCustomerId = "123-456-7890";
+    //test and assert
+    Assert.assertEquals(Collections.singletonList("123-456-7890"), config.getClientCustomerIds());
+    Assert.assertFalse(config.isMultiCustomer());
+
+    //setup mocks
+    config.clientCustomerId = "111, 222,,333 ";
+    //test and assert
+    Assert.assertEquals(Arrays.asList("111", "222", "333"), config.getClientCustomerIds());
+    Assert.assertEquals("111", config.getDefaultClientCustomerId());
+    Assert.assertTrue(config.isMultiCustomer());
+
+    //setup mocks
+    config.clientCustomerId = "111";
+    config.discoverClientCustomers = true;
+    //test and assert
+    Assert.assertTrue(config.isMultiCustomer());
+  }
 }
@@ -0,0 +1,102 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.googleads.common;
+
+import com.google.common.io.ByteStreams;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class DownloadProgressTest {
+
+  @Test
+  public void testGetProgress() throws Exception {
+    //setup mocks
+    DownloadProgress progress = new DownloadProgress(100, false);
+    InputStream inputStream = progress.track(new ByteArrayInputStream(new byte[50]));
+
+    //test
+    ByteStreams.toByteArray(inputStream);
+
+    //assert
+    Assert.assertEquals(50, progress.getBytesRead());
+    Assert.assertEquals(0.5f, progress.getProgress(), 0);
+    progress.finish();
+    Assert.assertEquals(1f, progress.getProgress(), 0);
+  }
+
+  @Test
+  public void testGetEstimatedProgress() throws Exception {
+    //setup mocks
+    DownloadProgress progress = DownloadProgress.forDateRange("20190101", "20190102");
+    InputStream inputStream = progress.track(
+      new ByteArrayInputStream(new byte[(int) DownloadProgress.ESTIMATED_BYTES_PER_DAY * 3]));
+
+    //test
+    ByteStreams.toByteArray(inputStream);
+
+    //assert
+    Assert.assertTrue(progress.getProgress() < 1f);
+    Assert.assertEquals(2, DownloadProgress.getDays("20190101", "20190102"));
+    Assert.assertEquals(1, DownloadProgress.getDays("LAST_30_DAYS", null));
+  }
+
+  @Test
+  public void testAbortClosesTrackedStream() throws Exception {
+    //setup mocks
+    DownloadProgress progress = new DownloadProgress(100, false);
+    AtomicBoolean closed = new AtomicBoolean();
+    progress.track(new ByteArrayInputStream(new byte[50]) {
+      @Override
+      public void close() {
+        closed.set(true);
+      }
+    });
+
+    //test
+    progress.abort();
+
+    //assert
+    Assert.assertTrue(closed.get());
+  }
+
+  @Test
+  public void testTrackAfterAbort() throws Exception {
+    //setup mocks
+    DownloadProgress progress = new DownloadProgress(100, false);
+    AtomicBoolean closed = new AtomicBoolean();
+    progress.abort();
+
+    //test
+    try {
+      progress.track(new ByteArrayInputStream(new byte[50]) {
+        @Override
+        public void close() {
+          closed.set(true);
+        }
+      });
+      Assert.fail("Download was tracked after it was aborted");
+    } catch (IOException e) {
+      //assert
+      Assert.assertTrue(closed.get());
+    }
+  }
+}
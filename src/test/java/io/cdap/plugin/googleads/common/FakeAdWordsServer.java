@@ -0,0 +1,463 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.googleads.common;
+
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.Nullable;
+
+/**
+ * Local stand-in for the AdWords API server, which serves synthetic reports, defined by report definitions or
+ * AWQL queries, from the report download endpoint and report fields from ReportDefinitionService. The report
+ * size, the response latency, rate limit errors and connections dropped in the middle of a report can be
+ * configured, so downloads can be tested end to end without an AdWords account. Sessions are pointed at the
+ * server through the endpoint property.
+ */
+public class FakeAdWordsServer implements Closeable {
+
+  public static final String REPORT_DOWNLOAD_PATH = "/api/adwords/reportdownload/" + ReportDefinitionCache.API_VERSION;
+  public static final String REPORT_DEFINITION_SERVICE_PATH =
+    "/api/adwords/cm/" + ReportDefinitionCache.API_VERSION + "/ReportDefinitionService";
+
+  private static final String CM_NAMESPACE = "https://adwords.google.com/api/adwords/cm/"
+    + ReportDefinitionCache.API_VERSION;
+  private static final Pattern FIELD_PATTERN = Pattern.compile("<(?:\\w+:)?fields>([^<]+)</(?:\\w+:)?fields>");
+  private static final Pattern MIN_DATE_PATTERN = Pattern.compile("<(?:\\w+:)?min>(\\d{8})</(?:\\w+:)?min>");
+  private static final Pattern MAX_DATE_PATTERN = Pattern.compile("<(?:\\w+:)?max>(\\d{8})</(?:\\w+:)?max>");
+  private static final Pattern DOWNLOAD_FORMAT_PATTERN =
+    Pattern.compile("<(?:\\w+:)?downloadFormat>([A-Z_]+)</(?:\\w+:)?downloadFormat>");
+  private static final DateTimeFormatter REQUEST_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+  private static final String RATE_EXCEEDED_ERROR = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+    + "<reportDownloadError><ApiError><type>RateExceededError.RATE_EXCEEDED</type><trigger>Too many requests"
+    + "</trigger><fieldPath></fieldPath></ApiError></reportDownloadError>";
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final Map<String, String> fieldTypes;
+  private final int rowsPerDay;
+  private final long latencyMillis;
+  private final long disconnectAfterBytes;
+  private final AtomicInteger remainingThrottledRequests;
+  private final AtomicInteger remainingDisconnects;
+  private final AtomicInteger reportRequests = new AtomicInteger();
+  private final AtomicInteger throttledRequests = new AtomicInteger();
+  private final AtomicInteger disconnects = new AtomicInteger();
+  private final AtomicInteger reportDefinitionRequests = new AtomicInteger();
+  private final AtomicInteger awqlRequests = new AtomicInteger();
+  private final AtomicLong rowsServed = new AtomicLong();
+
+  private FakeAdWordsServer(Builder builder) throws IOException {
+    this.fieldTypes = new LinkedHashMap<>(builder.fieldTypes);
+    this.rowsPerDay = builder.rowsPerDay;
+    this.latencyMillis = builder.latencyMillis;
+    this.disconnectAfterBytes = builder.disconnectAfterBytes;
+    this.remainingThrottledRequests = new AtomicInteger(builder.throttledRequests);
+    this.remainingDisconnects = new AtomicInteger(builder.disconnects);
+    this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    // concurrent downloads of parallel splits are served concurrently
+    this.executor = Executors.newCachedThreadPool();
+    server.setExecutor(executor);
+    server.createContext("/", this::handle);
+    server.start();
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Returns the URL to set as endpoint of sessions which should use this server.
+   */
+  public String getEndpoint() {
+    return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+  }
+
+  public int getReportRequests() {
+    return reportRequests.get();
+  }
+
+  public int getThrottledRequests() {
+    return throttledRequests.get();
+  }
+
+  public int getDisconnects() {
+    return disconnects.get();
+  }
+
+  public int getReportDefinitionRequests() {
+    return reportDefinitionRequests.get();
+  }
+
+  /**
+   * Returns the number of report requests which defined the report by an AWQL query.
+   */
+  public int getAwqlRequests() {
+    return awqlRequests.get();
+  }
+
+  /**
+   * Returns the number of report rows of all completely served reports.
+   */
+  public long getRowsServed() {
+    return rowsServed.get();
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    String body;
+    try (InputStream inputStream = exchange.getRequestBody()) {
+      body = new String(ByteStreams.toByteArray(inputStream), StandardCharsets.UTF_8);
+    }
+    // sessions may be configured with or without a trailing slash in the endpoint
+    String path = exchange.getRequestURI().toString().replaceAll("\\?.*", "").replaceAll("/+", "/");
+    sleep(latencyMillis);
+    if (path.equals(REPORT_DOWNLOAD_PATH)) {
+      handleReportDownload(exchange, body);
+    } else if (path.equals(REPORT_DEFINITION_SERVICE_PATH)) {
+      handleReportDefinition(exchange);
+    } else {
+      exchange.sendResponseHeaders(404, -1);
+    }
+    // exchanges which failed are not closed, the server then drops their connection
+    exchange.close();
+  }
+
+  private void handleReportDownload(HttpExchange exchange, String body) throws IOException {
+    reportRequests.incrementAndGet();
+    if (remainingThrottledRequests.getAndDecrement() > 0) {
+      throttledRequests.incrementAndGet();
+      send(exchange, 400, "text/xml; charset=UTF-8", RATE_EXCEEDED_ERROR);
+      return;
+    }
+    List<String> fields;
+    LocalDate startDate;
+    LocalDate endDate;
+    boolean gzipped;
+    String reportQuery = findFormParameter(body, "__rdquery");
+    if (reportQuery != null) {
+      awqlRequests.incrementAndGet();
+      AwqlQuery query = AwqlQuery.parse(reportQuery);
+      String[] dateRange = query.getDuring().split(",");
+      fields = query.getFields();
+      startDate = LocalDate.parse(dateRange[0].trim(), REQUEST_DATE_FORMAT);
+      endDate = LocalDate.parse(dateRange[1].trim(), REQUEST_DATE_FORMAT);
+      gzipped = getFormParameter(body, "__fmt").startsWith("GZIPPED");
+    } else {
+      String reportDefinition = getFormParameter(body, "__rdxml");
+      fields = find(FIELD_PATTERN, reportDefinition);
+      startDate = LocalDate.parse(find(MIN_DATE_PATTERN, reportDefinition).get(0), REQUEST_DATE_FORMAT);
+      endDate = LocalDate.parse(find(MAX_DATE_PATTERN, reportDefinition).get(0), REQUEST_DATE_FORMAT);
+      List<String> downloadFormats = find(DOWNLOAD_FORMAT_PATTERN, reportDefinition);
+      gzipped = !downloadFormats.isEmpty() && downloadFormats.get(0).startsWith("GZIPPED");
+    }
+    boolean disconnect = remainingDisconnects.getAndDecrement() > 0;
+
+    exchange.getResponseHeaders().set("Content-Type", gzipped ? "application/x-gzip" : "text/csv");
+    // a length of 0 streams the report with chunked encoding, so it is never held in memory
+    exchange.sendResponseHeaders(200, 0);
+    OutputStream outputStream = exchange.getResponseBody();
+    if (disconnect) {
+      outputStream = new DisconnectingOutputStream(outputStream, disconnectAfterBytes);
+    }
+    if (gzipped) {
+      outputStream = new GZIPOutputStream(outputStream, 64 * 1024);
+    }
+    long rows;
+    try (Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8))) {
+      rows = writeReport(writer, exchange, fields, startDate, endDate);
+    } catch (DisconnectException e) {
+      disconnects.incrementAndGet();
+      // the connection is dropped without the final chunk, so the client sees a truncated response
+      throw e;
+    }
+    rowsServed.addAndGet(rows);
+  }
+
+  private long writeReport(Writer writer, HttpExchange exchange, List<String> fields, LocalDate startDate,
+                           LocalDate endDate) throws IOException {
+    if (!isSkipped(exchange, "skipReportHeader")) {
+      writer.write("\"REPORT (" + startDate + "-" + endDate + ")\"\n");
+    }
+    if (!isSkipped(exchange, "skipColumnHeader")) {
+      writer.write(String.join(",", fields));
+      writer.write('\n');
+    }
+    long row = 0;
+    for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+      for (int dayRow = 0; dayRow < rowsPerDay; dayRow++) {
+        for (int column = 0; column < fields.size(); column++) {
+          if (column > 0) {
+            writer.write(',');
+          }
+          writer.write(getValue(fields.get(column), row, date));
+        }
+        writer.write('\n');
+        row++;
+      }
+    }
+    if (!isSkipped(exchange, "skipReportSummary")) {
+      writer.write("Total");
+      for (int column = 1; column < fields.size(); column++) {
+        writer.write(",--");
+      }
+      writer.write('\n');
+    }
+    return row;
+  }
+
+  private String getValue(String field, long row, LocalDate date) {
+    String type = fieldTypes.getOrDefault(field, "String");
+    switch (type) {
+      case "Long":
+      case "Integer":
+        return String.valueOf(row);
+      case "Money":
+      case "Bid":
+        return String.valueOf(row * 10000);
+      case "Double":
+        return (row % 100) + ".25%";
+      case "Date":
+        return date.toString();
+      default:
+        // quoted commas exercise the CSV parser like names entered by advertisers
+        return row % 10 == 0 ? "\"" + field + ", " + row + "\"" : field + " " + row;
+    }
+  }
+
+  private void handleReportDefinition(HttpExchange exchange) throws IOException {
+    reportDefinitionRequests.incrementAndGet();
+    StringBuilder response = new StringBuilder()
+      .append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>")
+      .append("<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\"><soap:Header>")
+      .append("<ResponseHeader xmlns=\"").append(CM_NAMESPACE).append("\">")
+      .append("<requestId>fake</requestId><serviceName>ReportDefinitionService</serviceName>")
+      .append("<methodName>getReportFields</methodName><operations>0</operations><responseTime>0</responseTime>")
+      .append("</ResponseHeader></soap:Header><soap:Body>")
+      .append("<getReportFieldsResponse xmlns=\"").append(CM_NAMESPACE).append("\">");
+    for (Map.Entry<String, String> field : fieldTypes.entrySet()) {
+      response.append("<rval><fieldName>").append(field.getKey()).append("</fieldName>")
+        .append("<displayFieldName>").append(field.getKey()).append("</displayFieldName>")
+        .append("<xmlAttributeName>").append(field.getKey()).append("</xmlAttributeName>")
+        .append("<fieldType>").append(field.getValue()).append("</fieldType>")
+        .append("<fieldBehavior>ATTRIBUTE</fieldBehavior><canSelect>true</canSelect><canFilter>true</canFilter>")
+        .append("<isEnumType>false</isEnumType><isBeta>false</isBeta>")
+        .append("<isZeroRowCompatible>true</isZeroRowCompatible></rval>");
+    }
+    response.append("</getReportFieldsResponse></soap:Body></soap:Envelope>");
+    send(exchange, 200, "text/xml; charset=UTF-8", response.toString());
+  }
+
+  private static boolean isSkipped(HttpExchange exchange, String header) {
+    return Boolean.parseBoolean(exchange.getRequestHeaders().getFirst(header));
+  }
+
+  private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", contentType);
+    exchange.sendResponseHeaders(status, bytes.length);
+    exchange.getResponseBody().write(bytes);
+  }
+
+  private static String getFormParameter(String body, String name) throws IOException {
+    String value = findFormParameter(body, name);
+    if (value == null) {
+      throw new IOException("Missing form parameter " + name);
+    }
+    return value;
+  }
+
+  @Nullable
+  private static String findFormParameter(String body, String name) throws IOException {
+    for (String parameter : body.split("&")) {
+      int separator = parameter.indexOf('=');
+      if (separator > 0 && parameter.substring(0, separator).equals(name)) {
+        return URLDecoder.decode(parameter.substring(separator + 1), StandardCharsets.UTF_8.name());
+      }
+    }
+    return null;
+  }
+
+  private static List<String> find(Pattern pattern, String value) {
+    List<String> matches = new ArrayList<>();
+    Matcher matcher = pattern.matcher(value);
+    while (matcher.find()) {
+      matches.add(matcher.group(1));
+    }
+    return matches;
+  }
+
+  private static void sleep(long millis) throws IOException {
+    if (millis <= 0) {
+      return;
+    }
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while delaying response", e);
+    }
+  }
+
+  /**
+   * Builds a {@link FakeAdWordsServer} and starts it.
+   */
+  public static class Builder {
+    private final Map<String, String> fieldTypes = new HashMap<>();
+    private int rowsPerDay = 100;
+    private long latencyMillis;
+    private int throttledRequests;
+    private int disconnects;
+    private long disconnectAfterBytes;
+
+    /**
+     * Adds a report field with its AdWords type, such as Long, Money, Double, Date or String. Fields which are
+     * requested but not added are served as strings.
+     */
+    public Builder field(String name, String type) {
+      fieldTypes.put(name, type);
+      return this;
+    }
+
+    public Builder rowsPerDay(int rowsPerDay) {
+      this.rowsPerDay = rowsPerDay;
+      return this;
+    }
+
+    /**
+     * Delays every response by the given time.
+     */
+    public Builder latency(long latencyMillis) {
+      this.latencyMillis = latencyMillis;
+      return this;
+    }
+
+    /**
+     * Answers the first report downloads with rate limit errors.
+     */
+    public Builder throttle(int throttledRequests) {
+      this.throttledRequests = throttledRequests;
+      return this;
+    }
+
+    /**
+     * Drops the connection of the first successful report downloads after the given number of body bytes.
+     */
+    public Builder disconnect(int disconnects, long afterBytes) {
+      this.disconnects = disconnects;
+      this.disconnectAfterBytes = afterBytes;
+      return this;
+    }
+
+    public FakeAdWordsServer start() throws IOException {
+      return new FakeAdWordsServer(this);
+    }
+  }
+
+  /**
+   * Fails writes once the given number of bytes has been written.
+   */
+  private static class DisconnectingOutputStream extends FilterOutputStream {
+    private long remainingBytes;
+    private boolean disconnected;
+
+    private DisconnectingOutputStream(OutputStream outputStream, long remainingBytes) {
+      super(outputStream);
+      this.remainingBytes = remainingBytes;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      if (disconnected) {
+        throw new DisconnectException();
+      }
+      if (remainingBytes <= 0) {
+        disconnect();
+      }
+      out.write(b);
+      remainingBytes--;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (disconnected) {
+        throw new DisconnectException();
+      }
+      int allowed = (int) Math.min(len, remainingBytes);
+      out.write(b, off, allowed);
+      remainingBytes -= allowed;
+      if (allowed < len) {
+        disconnect();
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      // closing the response stream would end the response properly
+      if (!disconnected) {
+        super.close();
+      }
+    }
+
+    private void disconnect() throws IOException {
+      out.flush();
+      disconnected = true;
+      throw new DisconnectException();
+    }
+  }
+
+  /**
+   * Signals that the connection of a report download is dropped on purpose.
+   */
+  private static class DisconnectException extends IOException {
+    private DisconnectException() {
+      super("Dropping report download connection");
+    }
+  }
+}
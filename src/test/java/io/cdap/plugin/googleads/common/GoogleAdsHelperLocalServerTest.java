@@ -0,0 +1,356 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.googleads.common;
+
+import com.google.api.ads.adwords.axis.v201809.cm.ReportDefinitionField;
+import com.google.api.ads.adwords.lib.jaxb.v201809.DownloadFormat;
+import com.google.api.ads.adwords.lib.jaxb.v201809.ReportDefinitionReportType;
+import com.google.api.ads.adwords.lib.utils.ReportDownloadResponse;
+import com.google.api.client.auth.oauth2.BearerToken;
+import com.google.api.client.auth.oauth2.Credential;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.plugin.googleads.source.multiple.MultiReportBatchSourceGoogleAdsConfig;
+import io.cdap.plugin.googleads.source.single.BatchSourceGoogleAdsConfig;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+
+/**
+ * Downloads and parses reports without an AdWords account, end to end from a {@link FakeAdWordsServer} or from
+ * mocked download responses.
+ */
+public class GoogleAdsHelperLocalServerTest {
+
+  private static final Logger log = LoggerFactory.getLogger(GoogleAdsHelperLocalServerTest.class);
+  private static final String CLIENT_ID = "local-client";
+  private static final String CLIENT_SECRET = "local-client-secret";
+  private static final String REFRESH_TOKEN = "local-refresh-token";
+  private static final List<String> FIELDS = Arrays.asList("CampaignId", "CampaignName", "Date", "Cost");
+
+  @BeforeClass
+  public static void setupTestClass() {
+    // the pooled credential is used as is, so no token is requested from Google
+    Credential credential = new Credential(BearerToken.authorizationHeaderAccessMethod())
+      .setAccessToken("local-access-token");
+    AdWordsCredentialPool.getInstance().putCredential(CLIENT_ID, CLIENT_SECRET, REFRESH_TOKEN, credential);
+  }
+
+  @Test
+  public void testParallelDownloads() throws Exception {
+    //setup mocks
+    try (FakeAdWordsServer server = startServer(FakeAdWordsServer.builder().rowsPerDay(2000).latency(50))) {
+      BatchSourceGoogleAdsConfig config = createConfig(server);
+      GoogleAdsHelper googleAdsHelper = createHelper();
+      ExecutorService executor = Executors.newFixedThreadPool(4);
+      //test
+      long start = System.nanoTime();
+      List<Future<Integer>> results = new ArrayList<>();
+      for (int day = 1; day <= 10; day++) {
+        String date = String.format("201901%02d", day);
+        GoogleAdsReportSplit split = new GoogleAdsReportSplit("local", date, date);
+        results.add(executor.submit(() -> countRecords(googleAdsHelper, config, split)));
+      }
+      int records = 0;
+      for (Future<Integer> result : results) {
+        records += result.get();
+      }
+      long elapsedMillis = (System.nanoTime() - start) / 1000000;
+      executor.shutdown();
+      //assert
+      log.info("Read {} records from 10 splits in {} ms", records, elapsedMillis);
+      Assert.assertEquals(20000, records);
+      Assert.assertEquals(20000, server.getRowsServed());
+      Assert.assertEquals(10, server.getReportRequests());
+    }
+  }
+
+  @Test
+  public void testThrottledDownloadIsRetried() throws Exception {
+    //setup mocks
+    try (FakeAdWordsServer server = startServer(FakeAdWordsServer.builder().rowsPerDay(100).throttle(2))) {
+      BatchSourceGoogleAdsConfig config = createConfig(server);
+      GoogleAdsReportSplit split = new GoogleAdsReportSplit("local", "20190101", "20190110");
+      //test
+      int records = countRecords(createHelper(), config, split);
+      //assert
+      Assert.assertEquals(1000, records);
+      Assert.assertEquals(2, server.getThrottledRequests());
+      Assert.assertEquals(3, server.getReportRequests());
+    }
+  }
+
+  @Test
+  public void testDroppedDownloadIsRetriedWhenSpilled() throws Exception {
+    //setup mocks
+    try (FakeAdWordsServer server = startServer(FakeAdWordsServer.builder().rowsPerDay(1000).disconnect(1, 16384))) {
+      BatchSourceGoogleAdsConfig config = createConfig(server);
+      doReturn(DownloadFormat.CSV).when(config).getDownloadFormat();
+      doReturn(true).when(config).isSpillToDisk();
+      GoogleAdsReportSplit split = new GoogleAdsReportSplit("local", "20190101", "20190110");
+      //test
+      int records = countRecords(createHelper(), config, split);
+      //assert
+      Assert.assertEquals(10000, records);
+      Assert.assertEquals(1, server.getDisconnects());
+      Assert.assertEquals(2, server.getReportRequests());
+    }
+  }
+
+  @Test
+  public void testAwqlQueryDownload() throws Exception {
+    //setup mocks
+    try (FakeAdWordsServer server = startServer(FakeAdWordsServer.builder().rowsPerDay(100))) {
+      BatchSourceGoogleAdsConfig config = createConfig(server);
+      AwqlQuery query = AwqlQuery.parse("SELECT CampaignId, Cost FROM CAMPAIGN_PERFORMANCE_REPORT "
+                                          + "WHERE CampaignName = 'Brand' DURING LAST_7_DAYS");
+      doReturn(query).when(config).getAwqlQuery();
+      doReturn(query.getFields()).when(config).getReportFields();
+      GoogleAdsReportSplit split = new GoogleAdsReportSplit("local", "20190101", "20190105");
+      //test
+      int records = countRecords(createHelper(), config, split);
+      //assert
+      Assert.assertEquals(500, records);
+      Assert.assertEquals(1, server.getAwqlRequests());
+      Assert.assertEquals(1, server.getReportRequests());
+    }
+  }
+
+  @Test
+  public void testFetchReportDefinitionFields() throws Exception {
+    //setup mocks
+    try (FakeAdWordsServer server = startServer(FakeAdWordsServer.builder())) {
+      BatchSourceGoogleAdsConfig config = createConfig(server);
+      //test
+      ReportDefinitionField[] fields = createHelper().fetchReportDefinitionFields(config,
+                                                                                 "CAMPAIGN_PERFORMANCE_REPORT");
+      //assert
+      Map<String, String> fieldTypes = new HashMap<>();
+      for (ReportDefinitionField field : fields) {
+        fieldTypes.put(field.getFieldName(), field.getFieldType());
+      }
+      Assert.assertEquals(4, fieldTypes.size());
+      Assert.assertEquals("Long", fieldTypes.get("CampaignId"));
+      Assert.assertEquals("Money", fieldTypes.get("Cost"));
+      Assert.assertEquals(1, server.getReportDefinitionRequests());
+    }
+  }
+
+  @Test
+  public void testGzippedMultiReportIsDecompressed() throws Exception {
+    //setup mocks
+    try (FakeAdWordsServer server = startServer(FakeAdWordsServer.builder().rowsPerDay(100))) {
+      MultiReportBatchSourceGoogleAdsConfig config = new MultiReportBatchSourceGoogleAdsConfig("test");
+      config.clientId = CLIENT_ID;
+      config.clientSecret = CLIENT_SECRET;
+      config.refreshToken = REFRESH_TOKEN;
+      config.developerToken = "local-developer-token";
+      config.clientCustomerId = "123-456-7890";
+      config.startDate = "20190101";
+      config.endDate = "20190110";
+      config.includeReportSummary = false;
+      config.useRawEnumValues = false;
+      config.includeZeroImpressions = true;
+      config.endpoint = server.getEndpoint();
+      config.reportFormat = "GZIPPED_CSV";
+      config.outputMode = "CHUNKED";
+      config.includeReportHeader = false;
+      config.includeColumnHeader = false;
+      GoogleAdsReportSplit split = new GoogleAdsReportSplit("Campaign Performance Report: Campaign table", null,
+                                                            "20190101", "20190110");
+      //test
+      List<String> lines;
+      try (BufferedReader reader = new BufferedReader(
+        createHelper().openSplitReport(config, split, new DownloadProgress(1, true)))) {
+        lines = reader.lines().collect(Collectors.toList());
+      }
+      //assert
+      Assert.assertEquals(1000, lines.size());
+      Assert.assertEquals(1000, server.getRowsServed());
+    }
+  }
+
+  @Test
+  public void testBuildReportIterator() throws Exception {
+    //setup mocks
+    BatchSourceGoogleAdsConfig config = spy(new BatchSourceGoogleAdsConfig("test"));
+    List<String> fields = new ArrayList<>();
+    fields.add("test1");
+    fields.add("test2");
+    doReturn(ReportDefinitionReportType.KEYWORDS_PERFORMANCE_REPORT).when(config).getReportType();
+    doReturn(fields).when(config).getReportFields();
+    doReturn(DownloadFormat.CSV).when(config).getDownloadFormat();
+    ReportDownloadResponse response = mock(ReportDownloadResponse.class);
+    doReturn(new ByteArrayInputStream("1,\"a,b\"\n6,7".getBytes(StandardCharsets.UTF_8)))
+      .when(response).getInputStream();
+    GoogleAdsReportSplit split = new GoogleAdsReportSplit("noop");
+    GoogleAdsHelper googleAdsHelper = spy(GoogleAdsHelper.class);
+    doReturn(response).when(googleAdsHelper).downloadReportResponse(config, split);
+    //test
+    try (ReportRecordIterator iterator = googleAdsHelper.buildReportIterator(config, split)) {
+      //assert
+      Assert.assertTrue(iterator.hasNext());
+      StructuredRecord record = iterator.next();
+      Assert.assertEquals("1", record.get("test1"));
+      Assert.assertEquals("a,b", record.get("test2"));
+      Assert.assertTrue(iterator.hasNext());
+      record = iterator.next();
+      Assert.assertEquals("6", record.get("test1"));
+      Assert.assertEquals("7", record.get("test2"));
+      Assert.assertFalse(iterator.hasNext());
+    }
+  }
+
+  @Test
+  public void testBuildReportIteratorGzipped() throws Exception {
+    //setup mocks
+    BatchSourceGoogleAdsConfig config = spy(new BatchSourceGoogleAdsConfig("test"));
+    List<String> fields = new ArrayList<>();
+    fields.add("test1");
+    fields.add("test2");
+    doReturn(ReportDefinitionReportType.KEYWORDS_PERFORMANCE_REPORT).when(config).getReportType();
+    doReturn(fields).when(config).getReportFields();
+    // reports are downloaded compressed unless compressDownload is disabled
+    Assert.assertEquals(DownloadFormat.GZIPPED_CSV, config.getDownloadFormat());
+    StringBuilder report = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      report.append(i).append(",keyword\n");
+    }
+    byte[] csv = report.toString().getBytes(StandardCharsets.UTF_8);
+    ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+    try (GZIPOutputStream outputStream = new GZIPOutputStream(gzipped)) {
+      outputStream.write(csv);
+    }
+    ReportDownloadResponse response = mock(ReportDownloadResponse.class);
+    doReturn(new ByteArrayInputStream(gzipped.toByteArray())).when(response).getInputStream();
+    GoogleAdsReportSplit split = new GoogleAdsReportSplit("noop");
+    GoogleAdsHelper googleAdsHelper = spy(GoogleAdsHelper.class);
+    doReturn(response).when(googleAdsHelper).downloadReportResponse(config, split);
+    //test
+    int count = 0;
+    try (ReportRecordIterator iterator = googleAdsHelper.buildReportIterator(config, split)) {
+      while (iterator.hasNext()) {
+        StructuredRecord record = iterator.next();
+        //assert
+        Assert.assertEquals(String.valueOf(count), record.get("test1"));
+        Assert.assertEquals("keyword", record.get("test2"));
+        count++;
+      }
+    }
+    Assert.assertEquals(1000, count);
+    Assert.assertTrue(gzipped.size() * 4 < csv.length);
+  }
+
+  @Test
+  public void testBuildReportIteratorSpilled() throws Exception {
+    //setup mocks
+    BatchSourceGoogleAdsConfig config = spy(new BatchSourceGoogleAdsConfig("test"));
+    List<String> fields = new ArrayList<>();
+    fields.add("test1");
+    fields.add("test2");
+    doReturn(ReportDefinitionReportType.KEYWORDS_PERFORMANCE_REPORT).when(config).getReportType();
+    doReturn(fields).when(config).getReportFields();
+    doReturn(DownloadFormat.CSV).when(config).getDownloadFormat();
+    doReturn(true).when(config).isSpillToDisk();
+    ReportDownloadResponse response = mock(ReportDownloadResponse.class);
+    doReturn(new ByteArrayInputStream("1,2\n3,4".getBytes(StandardCharsets.UTF_8))).when(response).getInputStream();
+    GoogleAdsReportSplit split = new GoogleAdsReportSplit("noop");
+    GoogleAdsHelper googleAdsHelper = spy(GoogleAdsHelper.class);
+    doReturn(response).when(googleAdsHelper).downloadReportResponse(config, split);
+    Path file = googleAdsHelper.downloadReportFile(config, split, new DownloadProgress(1, true));
+    doReturn(file).when(googleAdsHelper).downloadReportFile(eq(config), eq(split), any(DownloadProgress.class));
+    //test
+    List<StructuredRecord> records = new ArrayList<>();
+    try (ReportRecordIterator iterator = googleAdsHelper.buildReportIterator(config, split)) {
+      iterator.forEachRemaining(records::add);
+    }
+    //assert
+    Assert.assertEquals(2, records.size());
+    Assert.assertEquals("3", records.get(1).get("test1"));
+    Assert.assertEquals("4", records.get(1).get("test2"));
+    Assert.assertFalse(Files.exists(file));
+  }
+
+  private static FakeAdWordsServer startServer(FakeAdWordsServer.Builder builder) throws Exception {
+    return builder
+      .field("CampaignId", "Long")
+      .field("CampaignName", "String")
+      .field("Date", "Date")
+      .field("Cost", "Money")
+      .start();
+  }
+
+  private static GoogleAdsHelper createHelper() {
+    // short backoff, so rate limit errors of the server are retried immediately
+    return new GoogleAdsHelper(new RetryPolicy(10, 100, 60000, 5, 10));
+  }
+
+  private static BatchSourceGoogleAdsConfig createConfig(FakeAdWordsServer server) throws Exception {
+    BatchSourceGoogleAdsConfig config = spy(new BatchSourceGoogleAdsConfig("test"));
+    config.clientId = CLIENT_ID;
+    config.clientSecret = CLIENT_SECRET;
+    config.refreshToken = REFRESH_TOKEN;
+    config.developerToken = "local-developer-token";
+    config.clientCustomerId = "123-456-7890";
+    config.startDate = "20190101";
+    config.endDate = "20190110";
+    config.includeReportSummary = false;
+    config.useRawEnumValues = false;
+    config.includeZeroImpressions = true;
+    config.endpoint = server.getEndpoint();
+    doReturn(ReportDefinitionReportType.CAMPAIGN_PERFORMANCE_REPORT).when(config).getReportType();
+    doReturn(FIELDS).when(config).getReportFields();
+    return config;
+  }
+
+  private static int countRecords(GoogleAdsHelper googleAdsHelper, BatchSourceGoogleAdsConfig config,
+                                  GoogleAdsReportSplit split) throws Exception {
+    int records = 0;
+    try (ReportRecordIterator iterator = googleAdsHelper.buildReportIterator(config, split)) {
+      while (iterator.hasNext()) {
+        StructuredRecord record = iterator.next();
+        Assert.assertNotNull(record.get("CampaignId"));
+        records++;
+      }
+    }
+    return records;
+  }
+}
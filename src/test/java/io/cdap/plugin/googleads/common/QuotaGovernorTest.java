@@ -0,0 +1,151 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.googleads.common;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class QuotaGovernorTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testRateLimit() throws Exception {
+    //setup mocks
+    Path directory = temporaryFolder.newFolder().toPath();
+    QuotaGovernor quotaGovernor = new QuotaGovernor(directory, 20, 0);
+
+    //test
+    long start = System.nanoTime();
+    for (int i = 0; i < 25; i++) {
+      quotaGovernor.acquire().close();
+    }
+    long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+    //assert
+    // the first 20 requests use the full bucket, the next 5 wait 50 ms each
+    Assert.assertTrue(elapsedMillis >= 200);
+  }
+
+  @Test
+  public void testConcurrencyLimit() throws Exception {
+    //setup mocks
+    Path directory = temporaryFolder.newFolder().toPath();
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    // the first two holders wait for each other, so two permits are held at the same time
+    CountDownLatch overlap = new CountDownLatch(2);
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      threads.add(new Thread(() -> {
+        // separate instances share the limit through the lock directory
+        try (QuotaGovernor.Permit permit = new QuotaGovernor(directory, 0, 2).acquire()) {
+          maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+          overlap.countDown();
+          overlap.await(5, TimeUnit.SECONDS);
+          Thread.sleep(20);
+          running.decrementAndGet();
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+      }));
+    }
+
+    //test
+    threads.forEach(Thread::start);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    //assert
+    Assert.assertEquals(0, overlap.getCount());
+    Assert.assertTrue(maxRunning.get() <= 2);
+  }
+
+  @Test
+  public void testPermitHeldWhileReading() throws Exception {
+    //setup mocks
+    Path directory = temporaryFolder.newFolder().toPath();
+    QuotaGovernor quotaGovernor = new QuotaGovernor(directory, 0, 1);
+    InputStream body = quotaGovernor.acquire().holdWhileReading(new ByteArrayInputStream(new byte[] {1, 2}));
+    CountDownLatch acquired = new CountDownLatch(1);
+    Thread thread = new Thread(() -> {
+      try (QuotaGovernor.Permit permit = new QuotaGovernor(directory, 0, 1).acquire()) {
+        acquired.countDown();
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    });
+
+    //test
+    thread.start();
+    boolean acquiredWhileOpen = acquired.await(200, TimeUnit.MILLISECONDS);
+    body.read();
+    body.read();
+    boolean acquiredBeforeEnd = acquired.await(200, TimeUnit.MILLISECONDS);
+    // reading to the end releases the permit without closing the body
+    Assert.assertEquals(-1, body.read());
+    boolean acquiredAfterEnd = acquired.await(5, TimeUnit.SECONDS);
+    body.close();
+    thread.join();
+
+    //assert
+    Assert.assertFalse(acquiredWhileOpen);
+    Assert.assertFalse(acquiredBeforeEnd);
+    Assert.assertTrue(acquiredAfterEnd);
+  }
+
+  @Test
+  public void testPermitReleasedOnClose() throws Exception {
+    //setup mocks
+    Path directory = temporaryFolder.newFolder().toPath();
+    QuotaGovernor quotaGovernor = new QuotaGovernor(directory, 0, 1);
+    InputStream body = quotaGovernor.acquire().holdWhileReading(new ByteArrayInputStream(new byte[] {1, 2}));
+    CountDownLatch acquired = new CountDownLatch(1);
+    Thread thread = new Thread(() -> {
+      try (QuotaGovernor.Permit permit = new QuotaGovernor(directory, 0, 1).acquire()) {
+        acquired.countDown();
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    });
+
+    //test
+    thread.start();
+    boolean acquiredWhileOpen = acquired.await(200, TimeUnit.MILLISECONDS);
+    body.close();
+    boolean acquiredAfterClose = acquired.await(5, TimeUnit.SECONDS);
+    thread.join();
+
+    //assert
+    Assert.assertFalse(acquiredWhileOpen);
+    Assert.assertTrue(acquiredAfterClose);
+  }
+}
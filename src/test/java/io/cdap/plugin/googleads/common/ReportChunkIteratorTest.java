@@ -0,0 +1,105 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.googleads.common;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class ReportChunkIteratorTest {
+
+  private static final Schema SCHEMA = Schema.recordOf(
+    "chunks",
+    Schema.Field.of("report_name", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of(ReportChunkIterator.CHUNK_INDEX_FIELD, Schema.of(Schema.Type.INT)),
+    Schema.Field.of(ReportChunkIterator.BYTE_OFFSET_FIELD, Schema.of(Schema.Type.LONG)),
+    Schema.Field.of(ReportChunkIterator.CHUNK_FIELD, Schema.of(Schema.Type.STRING)));
+
+  @Test
+  public void testChunksEndAtRowBoundaries() throws IOException {
+    //test
+    List<StructuredRecord> chunks = readChunks("a,1\nb,2\nc,3\nd,4\ne,5", 9);
+    //assert
+    Assert.assertEquals(3, chunks.size());
+    assertChunk(chunks.get(0), 0, 0, "a,1\nb,2\n");
+    assertChunk(chunks.get(1), 1, 8, "c,3\nd,4\n");
+    assertChunk(chunks.get(2), 2, 16, "e,5");
+    Assert.assertEquals("report", chunks.get(2).get("report_name"));
+  }
+
+  @Test
+  public void testQuotedLineBreaksDoNotEndRows() throws IOException {
+    //test
+    List<StructuredRecord> chunks = readChunks("\"a\nb\",1\n\"c \"\"x\"\"\nd\",2\ne,3\n", 10);
+    //assert
+    Assert.assertEquals(3, chunks.size());
+    assertChunk(chunks.get(0), 0, 0, "\"a\nb\",1\n");
+    assertChunk(chunks.get(1), 1, 8, "\"c \"\"x\"\"\nd\",2\n");
+    assertChunk(chunks.get(2), 2, 22, "e,3\n");
+  }
+
+  @Test
+  public void testRowLargerThanChunk() throws IOException {
+    //test
+    List<StructuredRecord> chunks = readChunks("a\nbbbbbbbbbb\nc\n", 4);
+    //assert
+    Assert.assertEquals(3, chunks.size());
+    assertChunk(chunks.get(0), 0, 0, "a\n");
+    assertChunk(chunks.get(1), 1, 2, "bbbbbbbbbb\n");
+    assertChunk(chunks.get(2), 2, 13, "c\n");
+  }
+
+  @Test
+  public void testByteOffsetsOfMultiByteCharacters() throws IOException {
+    //setup mocks
+    String firstRow = "café,€,😀\n";
+    //test
+    List<StructuredRecord> chunks = readChunks(firstRow + "x\n", firstRow.getBytes(StandardCharsets.UTF_8).length);
+    //assert
+    Assert.assertEquals(2, chunks.size());
+    assertChunk(chunks.get(0), 0, 0, firstRow);
+    assertChunk(chunks.get(1), 1, firstRow.getBytes(StandardCharsets.UTF_8).length, "x\n");
+  }
+
+  @Test
+  public void testEmptyReport() throws IOException {
+    Assert.assertTrue(readChunks("", 10).isEmpty());
+  }
+
+  private static List<StructuredRecord> readChunks(String report, long chunkBytes) throws IOException {
+    List<StructuredRecord> chunks = new ArrayList<>();
+    try (ReportChunkIterator iterator = new ReportChunkIterator(new StringReader(report), SCHEMA, chunkBytes,
+                                                                Collections.singletonMap("report_name", "report"))) {
+      iterator.forEachRemaining(chunks::add);
+    }
+    return chunks;
+  }
+
+  private static void assertChunk(StructuredRecord record, int index, long byteOffset, String chunk) {
+    Assert.assertEquals(index, (int) record.get(ReportChunkIterator.CHUNK_INDEX_FIELD));
+    Assert.assertEquals(byteOffset, (long) record.get(ReportChunkIterator.BYTE_OFFSET_FIELD));
+    Assert.assertEquals(chunk, record.get(ReportChunkIterator.CHUNK_FIELD));
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.googleads.common;
+
+import com.google.api.ads.adwords.axis.v201809.cm.ReportDefinitionField;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.concurrent.TimeUnit;
+
+public class ReportDefinitionCacheTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testGetFromDisk() throws Exception {
+    //setup mocks
+    String directory = temporaryFolder.newFolder().getAbsolutePath();
+    ReportDefinitionField field = new ReportDefinitionField();
+    field.setFieldName("Clicks");
+    field.setFieldType("Long");
+    ReportDefinitionCache cache = new ReportDefinitionCache();
+    cache.put("KEYWORDS_PERFORMANCE_REPORT", new ReportDefinitionField[]{field}, directory);
+
+    //test
+    ReportDefinitionCache otherCache = new ReportDefinitionCache();
+    ReportDefinitionField[] fields = otherCache.get("KEYWORDS_PERFORMANCE_REPORT",
+                                                    TimeUnit.HOURS.toMillis(1), directory);
+
+    //assert
+    Assert.assertNotNull(fields);
+    Assert.assertEquals(1, fields.length);
+    Assert.assertEquals("Clicks", fields[0].getFieldName());
+    Assert.assertEquals("Long", fields[0].getFieldType());
+    Assert.assertNull(otherCache.get("AD_PERFORMANCE_REPORT", TimeUnit.HOURS.toMillis(1), directory));
+  }
+
+  @Test
+  public void testGetDisabled() {
+    //setup mocks
+    ReportDefinitionCache cache = new ReportDefinitionCache();
+    cache.put("KEYWORDS_PERFORMANCE_REPORT", new ReportDefinitionField[0], null);
+
+    //test and assert
+    Assert.assertNotNull(cache.get("KEYWORDS_PERFORMANCE_REPORT", TimeUnit.HOURS.toMillis(1), null));
+    Assert.assertNull(cache.get("KEYWORDS_PERFORMANCE_REPORT", 0, null));
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.googleads.common;
+
+import com.google.api.ads.adwords.lib.jaxb.v201809.Predicate;
+import com.google.api.ads.adwords.lib.jaxb.v201809.PredicateOperator;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class ReportFiltersTest {
+
+  @Test
+  public void testParse() {
+    List<Predicate> predicates = ReportFilters.parse(" CampaignStatus in ENABLED, PAUSED ;Impressions>0;; "
+                                                       + "CampaignName STARTS_WITH Brand");
+
+    Assert.assertEquals(3, predicates.size());
+    assertPredicate(predicates.get(0), "CampaignStatus", PredicateOperator.IN, "ENABLED", "PAUSED");
+    assertPredicate(predicates.get(1), "Impressions", PredicateOperator.GREATER_THAN, "0");
+    assertPredicate(predicates.get(2), "CampaignName", PredicateOperator.STARTS_WITH, "Brand");
+  }
+
+  @Test
+  public void testParseSymbolOperators() {
+    List<Predicate> predicates = ReportFilters.parse("A = 1; B != 2; C >= 3; D <= 4; E < 5");
+
+    assertPredicate(predicates.get(0), "A", PredicateOperator.EQUALS, "1");
+    assertPredicate(predicates.get(1), "B", PredicateOperator.NOT_EQUALS, "2");
+    assertPredicate(predicates.get(2), "C", PredicateOperator.GREATER_THAN_EQUALS, "3");
+    assertPredicate(predicates.get(3), "D", PredicateOperator.LESS_THAN_EQUALS, "4");
+    assertPredicate(predicates.get(4), "E", PredicateOperator.LESS_THAN, "5");
+  }
+
+  @Test
+  public void testParseQuotedValues() {
+    List<Predicate> predicates = ReportFilters.parse("CampaignName = \"Foo, Inc\"; "
+                                                       + "AdGroupName IN 'a;b', \"say \\\"hi\\\"\", plain");
+
+    Assert.assertEquals(2, predicates.size());
+    assertPredicate(predicates.get(0), "CampaignName", PredicateOperator.EQUALS, "Foo, Inc");
+    assertPredicate(predicates.get(1), "AdGroupName", PredicateOperator.IN, "a;b", "say \"hi\"", "plain");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParseUnclosedQuote() {
+    ReportFilters.parse("CampaignName = \"Foo, Inc");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParseTextAfterQuotedValue() {
+    ReportFilters.parse("CampaignName = \"Foo\" Inc");
+  }
+
+  @Test
+  public void testParseEmpty() {
+    Assert.assertEquals(Collections.emptyList(), ReportFilters.parse(null));
+    Assert.assertEquals(Collections.emptyList(), ReportFilters.parse(" ; "));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParseUnknownOperator() {
+    ReportFilters.parse("CampaignStatus LIKE ENABLED");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParseMissingValue() {
+    ReportFilters.parse("Impressions >");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParseSeveralValuesOfSingleValueOperator() {
+    ReportFilters.parse("CampaignStatus = ENABLED,PAUSED");
+  }
+
+  private static void assertPredicate(Predicate predicate, String field, PredicateOperator operator,
+                                      String... values) {
+    Assert.assertEquals(field, predicate.getField());
+    Assert.assertEquals(operator, predicate.getOperator());
+    Assert.assertEquals(Arrays.asList(values), predicate.getValues());
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.googleads.common;
+
+import io.cdap.cdap.etl.api.StageMetrics;
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class ReportMetricsTest {
+
+  @Test
+  public void testDrainTo() {
+    //setup mocks
+    StageMetrics stageMetrics = mock(StageMetrics.class);
+    ReportMetrics splitMetrics = new ReportMetrics();
+    splitMetrics.add(ReportCounter.RECORDS_READ, 5);
+    splitMetrics.add(ReportCounter.BYTES_DOWNLOADED, 100);
+    ReportMetrics reportMetrics = ReportMetrics.attach("testDrainTo");
+    ReportMetrics.addToRun("testDrainTo", splitMetrics);
+    ReportMetrics.addToRun("testDrainTo", splitMetrics);
+
+    //test
+    reportMetrics.drainTo(stageMetrics);
+
+    //assert
+    verify(stageMetrics).countLong("report.records.read", 10);
+    verify(stageMetrics).countLong("report.bytes.downloaded", 200);
+    verify(stageMetrics, never()).countLong(eq("report.parse.ms"), anyLong());
+    verify(stageMetrics, never()).countLong(eq("oauth.refreshes"), anyLong());
+    Assert.assertEquals(0, reportMetrics.get(ReportCounter.RECORDS_READ));
+    Assert.assertSame(reportMetrics, ReportMetrics.getAttached("testDrainTo"));
+    ReportMetrics.detach("testDrainTo");
+  }
+
+  @Test
+  public void testDrainToWithinInterval() {
+    //setup mocks
+    StageMetrics stageMetrics = mock(StageMetrics.class);
+    ReportMetrics reportMetrics = new ReportMetrics();
+    reportMetrics.drainTo(stageMetrics);
+    reportMetrics.add(ReportCounter.SPLITS_READ, 1);
+
+    //test
+    reportMetrics.drainTo(stageMetrics, 60000);
+
+    //assert
+    verify(stageMetrics, never()).countLong(eq("report.splits.read"), anyLong());
+    Assert.assertEquals(1, reportMetrics.get(ReportCounter.SPLITS_READ));
+  }
+
+  @Test
+  public void testRunMetricsAreReleasedByLastStage() {
+    //setup mocks
+    ReportMetrics first = ReportMetrics.attach("testRunMetricsAreReleasedByLastStage");
+    ReportMetrics second = ReportMetrics.attach("testRunMetricsAreReleasedByLastStage");
+
+    //test
+    ReportMetrics.detach("testRunMetricsAreReleasedByLastStage");
+    ReportMetrics afterFirstDetach = ReportMetrics.getAttached("testRunMetricsAreReleasedByLastStage");
+    ReportMetrics.detach("testRunMetricsAreReleasedByLastStage");
+    ReportMetrics afterSecondDetach = ReportMetrics.getAttached("testRunMetricsAreReleasedByLastStage");
+
+    //assert
+    Assert.assertSame(first, second);
+    Assert.assertSame(first, afterFirstDetach);
+    Assert.assertNull(afterSecondDetach);
+    Assert.assertNotSame(ReportMetrics.attach("otherRun"), first);
+    ReportMetrics.detach("otherRun");
+  }
+
+  @Test
+  public void testAddToRunWithoutAttachedStage() {
+    //setup mocks
+    ReportMetrics splitMetrics = new ReportMetrics();
+    splitMetrics.add(ReportCounter.RECORDS_READ, 5);
+    ReportMetrics.attach("testAddToRunWithoutAttachedStage");
+    ReportMetrics.detach("testAddToRunWithoutAttachedStage");
+
+    //test
+    boolean afterDetach = ReportMetrics.addToRun("testAddToRunWithoutAttachedStage", splitMetrics);
+    boolean withoutRunKey = ReportMetrics.addToRun(null, splitMetrics);
+
+    //assert
+    Assert.assertFalse(afterDetach);
+    Assert.assertFalse(withoutRunKey);
+    Assert.assertNull(ReportMetrics.getAttached("testAddToRunWithoutAttachedStage"));
+    Assert.assertNull(ReportMetrics.getAttached(null));
+  }
+}
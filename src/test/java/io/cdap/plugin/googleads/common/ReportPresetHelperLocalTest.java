@@ -0,0 +1,135 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.googleads.common;
+
+import com.google.api.ads.adwords.lib.jaxb.v201809.ReportDefinitionReportType;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ReportPresetHelperLocalTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testPresetsAreLoadedOnce() throws Exception {
+    //setup mocks
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    List<Callable<Map<String, ReportPreset>>> loads = new ArrayList<>();
+    for (int load = 0; load < 8; load++) {
+      loads.add(() -> new ReportPresetHelper().getReportPresets());
+    }
+    //test
+    List<Future<Map<String, ReportPreset>>> results;
+    try {
+      results = executor.invokeAll(loads);
+    } finally {
+      executor.shutdown();
+    }
+    //assert
+    Map<String, ReportPreset> presets = results.get(0).get();
+    Assert.assertFalse(presets.isEmpty());
+    for (Future<Map<String, ReportPreset>> result : results) {
+      Assert.assertSame(presets, result.get());
+    }
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testPresetsAreImmutable() throws IOException {
+    //setup mocks
+    ReportPreset preset = new ReportPresetHelper().getReportPresets().values().iterator().next();
+    //test
+    preset.getFields().add("Impressions");
+  }
+
+  @Test
+  public void testPresetsFile() throws IOException {
+    //setup mocks
+    Map<String, ReportPreset> shippedPresets = new ReportPresetHelper().getReportPresets();
+    String replacedName = shippedPresets.keySet().iterator().next();
+    File presetsFile = temporaryFolder.newFile("presets.json");
+    Files.write(presetsFile.toPath(), String.format(
+      "{\"Custom Campaign Report\": {\"type\": \"CAMPAIGN_PERFORMANCE_REPORT\", \"fields\": [\"CampaignId\"]}, " +
+        "\"%s\": {\"type\": \"ACCOUNT_PERFORMANCE_REPORT\", \"fields\": [\"Clicks\", \"Date\"]}}",
+      replacedName).getBytes(StandardCharsets.UTF_8));
+    //test
+    Map<String, ReportPreset> presets = new ReportPresetHelper(presetsFile.getAbsolutePath()).getReportPresets();
+    //assert
+    Assert.assertEquals(shippedPresets.size() + 1, presets.size());
+    Assert.assertEquals(ReportDefinitionReportType.CAMPAIGN_PERFORMANCE_REPORT,
+                        presets.get("Custom Campaign Report").getType());
+    Assert.assertEquals(ReportDefinitionReportType.ACCOUNT_PERFORMANCE_REPORT, presets.get(replacedName).getType());
+    Assert.assertSame(presets, new ReportPresetHelper(presetsFile.getAbsolutePath()).getReportPresets());
+    Assert.assertNotEquals(ReportDefinitionReportType.ACCOUNT_PERFORMANCE_REPORT,
+                           new ReportPresetHelper().getReportPreset(replacedName).getType());
+  }
+
+  @Test
+  public void testChangedPresetsFileIsReread() throws IOException {
+    //setup mocks
+    File presetsFile = temporaryFolder.newFile("changed-presets.json");
+    Files.write(presetsFile.toPath(),
+                "{\"Custom Report\": {\"type\": \"CAMPAIGN_PERFORMANCE_REPORT\", \"fields\": [\"CampaignId\"]}}"
+                  .getBytes(StandardCharsets.UTF_8));
+    ReportPresetHelper presetHelper = new ReportPresetHelper(presetsFile.getAbsolutePath());
+    long now = System.currentTimeMillis();
+    Map<String, ReportPreset> presets = presetHelper.getReportPresets(now);
+    //test
+    Files.write(presetsFile.toPath(),
+                "{\"Custom Report\": {\"type\": \"ACCOUNT_PERFORMANCE_REPORT\", \"fields\": [\"Clicks\", \"Date\"]}}"
+                  .getBytes(StandardCharsets.UTF_8));
+    Assert.assertTrue(presetsFile.setLastModified(presetsFile.lastModified() + 1000));
+    //assert
+    Assert.assertSame(presets, presetHelper.getReportPresets(now + 1));
+    Map<String, ReportPreset> changedPresets =
+      presetHelper.getReportPresets(now + ReportPresetHelper.CHANGE_CHECK_MILLIS);
+    Assert.assertEquals(ReportDefinitionReportType.CAMPAIGN_PERFORMANCE_REPORT, presets.get("Custom Report").getType());
+    Assert.assertEquals(ReportDefinitionReportType.ACCOUNT_PERFORMANCE_REPORT,
+                        changedPresets.get("Custom Report").getType());
+    Assert.assertSame(changedPresets,
+                      presetHelper.getReportPresets(now + ReportPresetHelper.CHANGE_CHECK_MILLIS * 2));
+  }
+
+  @Test(expected = IOException.class)
+  public void testPresetWithoutFieldsIsRejected() throws IOException {
+    //test
+    ReportPresetHelper.readPresets(
+      new StringReader("{\"Custom Report\": {\"type\": \"CAMPAIGN_PERFORMANCE_REPORT\", \"fields\": []}}"), "test");
+  }
+
+  @Test(expected = IOException.class)
+  public void testPresetWithUnknownTypeIsRejected() throws IOException {
+    //test
+    ReportPresetHelper.readPresets(
+      new StringReader("{\"Custom Report\": {\"type\": \"UNKNOWN_REPORT\", \"fields\": [\"Clicks\"]}}"), "test");
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.googleads.common;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class ReportRowMapperTest {
+
+  @Test
+  public void testMapTypedRow() throws IOException {
+    //setup mocks
+    Schema schema = Schema.recordOf(
+      "GoogleAdsRecords",
+      Schema.Field.of("CampaignName", ReportSchemaBuilder.getFieldSchema("String")),
+      Schema.Field.of("Impressions", ReportSchemaBuilder.getFieldSchema("Long")),
+      Schema.Field.of("Ctr", ReportSchemaBuilder.getFieldSchema("Double")),
+      Schema.Field.of("Cost", ReportSchemaBuilder.getFieldSchema("Money")),
+      Schema.Field.of("Date", ReportSchemaBuilder.getFieldSchema("Date")),
+      Schema.Field.of("ClientCustomerId", Schema.of(Schema.Type.STRING)));
+    List<String> fields = Arrays.asList("CampaignName", "Impressions", "Ctr", "Cost", "Date");
+    ReportRowMapper rowMapper = new ReportRowMapper(schema, fields,
+                                                    Collections.singletonMap("ClientCustomerId", "123"));
+    List<CSVRecord> rows = CSVParser.parse("Campaign #1,1200,1.5%,1230000,2019-03-01\n" +
+                                             "Campaign #2, --,< 10%, --, --", CSVFormat.DEFAULT).getRecords();
+    //test
+    StructuredRecord record = rowMapper.map(rows.get(0));
+    //assert
+    Assert.assertEquals("Campaign #1", record.get("CampaignName"));
+    Assert.assertEquals(1200L, (long) record.get("Impressions"));
+    Assert.assertEquals(1.5, (double) record.get("Ctr"), 0);
+    Assert.assertEquals(new BigDecimal("1.230000"), record.getDecimal("Cost"));
+    Assert.assertEquals(LocalDate.of(2019, 3, 1), record.getDate("Date"));
+    Assert.assertEquals("123", record.get("ClientCustomerId"));
+
+    //test
+    record = rowMapper.map(rows.get(1));
+    //assert
+    Assert.assertEquals("Campaign #2", record.get("CampaignName"));
+    Assert.assertNull(record.get("Impressions"));
+    Assert.assertEquals(10, (double) record.get("Ctr"), 0);
+    Assert.assertNull(record.get("Cost"));
+    Assert.assertNull(record.get("Date"));
+  }
+}
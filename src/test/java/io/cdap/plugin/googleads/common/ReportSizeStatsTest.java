@@ -0,0 +1,198 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.googleads.common;
+
+import com.google.api.ads.adwords.lib.jaxb.v201809.DownloadFormat;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.Map;
+
+public class ReportSizeStatsTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testRecordAndMerge() throws Exception {
+    //setup mocks
+    String directory = temporaryFolder.newFolder().getAbsolutePath();
+    ReportSizeStats stats = new ReportSizeStats(directory, new Configuration());
+    stats.record("AD_PERFORMANCE_REPORT", "1", DownloadFormat.CSV, LocalDate.of(2019, 1, 1),
+                 LocalDate.of(2019, 1, 2), 100, 2000);
+    stats.merge();
+
+    //test
+    stats.record("AD_PERFORMANCE_REPORT", "1", DownloadFormat.CSV, LocalDate.of(2019, 1, 2),
+                 LocalDate.of(2019, 1, 2), 70, 900);
+    stats.record("AD_PERFORMANCE_REPORT", "2", DownloadFormat.CSV, LocalDate.of(2019, 1, 1),
+                 LocalDate.of(2019, 1, 1), 5, 60);
+    Assert.assertEquals(2, new ReportSizeStats(directory, new Configuration()).load().size());
+    stats.merge();
+    Map<String, ReportSizeStats.DaySize> sizes = new ReportSizeStats(directory, new Configuration()).load();
+
+    //assert
+    Assert.assertEquals(3, sizes.size());
+    ReportSizeStats.DaySize size = sizes.get(ReportSizeStats.getKey("AD_PERFORMANCE_REPORT", "1", DownloadFormat.CSV,
+                                                                    LocalDate.of(2019, 1, 1)));
+    Assert.assertEquals(50, size.getRows());
+    Assert.assertEquals(1000, size.getBytes());
+    size = sizes.get(ReportSizeStats.getKey("AD_PERFORMANCE_REPORT", "1", DownloadFormat.CSV,
+                                            LocalDate.of(2019, 1, 2)));
+    Assert.assertEquals(70, size.getRows());
+    Assert.assertEquals(900, size.getBytes());
+    Assert.assertEquals(60, sizes.get(ReportSizeStats.getKey("AD_PERFORMANCE_REPORT", "2", DownloadFormat.CSV,
+                                                             LocalDate.of(2019, 1, 1))).getBytes());
+    String[] pendingFiles = new File(directory, ReportSizeStats.PENDING_DIRECTORY).list();
+    Assert.assertNotNull(pendingFiles);
+    Assert.assertEquals(0, pendingFiles.length);
+  }
+
+  @Test
+  public void testMergeWithoutRecordedSizes() throws Exception {
+    //setup mocks
+    String directory = temporaryFolder.newFolder().getAbsolutePath();
+    ReportSizeStats stats = new ReportSizeStats(directory, new Configuration());
+    //test
+    stats.merge();
+    //assert
+    Assert.assertTrue(stats.load().isEmpty());
+  }
+
+  @Test
+  public void testMergeRemovesStaleLock() throws Exception {
+    //setup mocks
+    String directory = temporaryFolder.newFolder().getAbsolutePath();
+    ReportSizeStats stats = new ReportSizeStats(directory, new Configuration());
+    stats.record("AD_PERFORMANCE_REPORT", "1", DownloadFormat.CSV, LocalDate.of(2019, 1, 1),
+                 LocalDate.of(2019, 1, 1), 5, 60);
+    File lockFile = new File(directory, ReportSizeStats.LOCK_FILE_NAME);
+    Assert.assertTrue(lockFile.createNewFile());
+    Assert.assertTrue(lockFile.setLastModified(System.currentTimeMillis() - ReportSizeStats.STALE_LOCK_MILLIS * 2));
+    //test
+    stats.merge();
+    //assert
+    Assert.assertEquals(1, stats.load().size());
+    Assert.assertFalse(lockFile.exists());
+  }
+
+  @Test
+  public void testMergeSkipsFilesBeingWritten() throws Exception {
+    //setup mocks
+    String directory = temporaryFolder.newFolder().getAbsolutePath();
+    ReportSizeStats stats = new ReportSizeStats(directory, new Configuration());
+    stats.record("AD_PERFORMANCE_REPORT", "1", DownloadFormat.CSV, LocalDate.of(2019, 1, 1),
+                 LocalDate.of(2019, 1, 1), 5, 60);
+    File partialFile = new File(new File(directory, ReportSizeStats.PENDING_DIRECTORY), ".partial.json.tmp");
+    Files.write(partialFile.toPath(), "{\"AD_PERF".getBytes(StandardCharsets.UTF_8));
+    //test
+    stats.merge();
+    //assert
+    Assert.assertEquals(1, stats.load().size());
+    Assert.assertTrue(partialFile.exists());
+  }
+
+  @Test
+  public void testLoadFallsBackToBackup() throws Exception {
+    //setup mocks
+    String directory = temporaryFolder.newFolder().getAbsolutePath();
+    ReportSizeStats stats = new ReportSizeStats(directory, new Configuration());
+    stats.record("AD_PERFORMANCE_REPORT", "1", DownloadFormat.CSV, LocalDate.of(2019, 1, 1),
+                 LocalDate.of(2019, 1, 1), 5, 60);
+    stats.merge();
+    File file = new File(directory, ReportSizeStats.FILE_NAME);
+    //test
+    Assert.assertTrue(file.renameTo(new File(directory, "." + ReportSizeStats.FILE_NAME + ".bak")));
+    //assert
+    Assert.assertEquals(1, stats.load().size());
+  }
+
+  @Test
+  public void testCompressedSizesAreKeptApart() throws Exception {
+    //setup mocks
+    String directory = temporaryFolder.newFolder().getAbsolutePath();
+    ReportSizeStats stats = new ReportSizeStats(directory, new Configuration());
+    stats.record("AD_PERFORMANCE_REPORT", "1", DownloadFormat.CSV, LocalDate.of(2019, 1, 1),
+                 LocalDate.of(2019, 1, 1), 5, 600);
+    stats.record("AD_PERFORMANCE_REPORT", "1", DownloadFormat.GZIPPED_CSV, LocalDate.of(2019, 1, 1),
+                 LocalDate.of(2019, 1, 1), 5, 60);
+    //test
+    stats.merge();
+    Map<String, ReportSizeStats.DaySize> sizes = stats.load();
+    //assert
+    Assert.assertEquals(600, sizes.get(ReportSizeStats.getKey("AD_PERFORMANCE_REPORT", "1", DownloadFormat.CSV,
+                                                              LocalDate.of(2019, 1, 1))).getBytes());
+    Assert.assertEquals(60, sizes.get(ReportSizeStats.getKey("AD_PERFORMANCE_REPORT", "1", DownloadFormat.GZIPPED_CSV,
+                                                             LocalDate.of(2019, 1, 1))).getBytes());
+  }
+
+  @Test
+  public void testMergeDropsOldSizes() throws Exception {
+    //setup mocks
+    String directory = temporaryFolder.newFolder().getAbsolutePath();
+    ReportSizeStats stats = new ReportSizeStats(directory, new Configuration());
+    stats.record("AD_PERFORMANCE_REPORT", "1", DownloadFormat.CSV, LocalDate.of(2019, 1, 1),
+                 LocalDate.of(2019, 1, 1), 5, 60);
+    stats.merge();
+    // written before sizes had a recorded day
+    File olderFile = new File(new File(directory, ReportSizeStats.PENDING_DIRECTORY), "older.json");
+    Files.write(olderFile.toPath(), "{\"AD_PERFORMANCE_REPORT/2/20190101\": {\"rows\": 5, \"bytes\": 60}}"
+      .getBytes(StandardCharsets.UTF_8));
+    stats.record("AD_PERFORMANCE_REPORT", "3", DownloadFormat.CSV, LocalDate.of(2019, 1, 1),
+                 LocalDate.of(2019, 1, 1), 5, 60);
+    //test
+    stats.merge(LocalDate.now().plusDays(ReportSizeStats.MAX_AGE_DAYS));
+    Map<String, ReportSizeStats.DaySize> keptSizes = stats.load();
+    stats.record("AD_PERFORMANCE_REPORT", "4", DownloadFormat.CSV, LocalDate.of(2019, 1, 1),
+                 LocalDate.of(2019, 1, 1), 5, 60);
+    stats.merge(LocalDate.now().plusDays(ReportSizeStats.MAX_AGE_DAYS + 1));
+    Map<String, ReportSizeStats.DaySize> droppedSizes = stats.load();
+    //assert
+    Assert.assertEquals(2, keptSizes.size());
+    Assert.assertFalse(keptSizes.containsKey("AD_PERFORMANCE_REPORT/2/20190101"));
+    Assert.assertTrue(droppedSizes.isEmpty());
+  }
+
+  @Test
+  public void testUnlockKeepsLockTakenOverByAnotherRun() throws Exception {
+    //setup mocks
+    String directory = temporaryFolder.newFolder().getAbsolutePath();
+    Configuration conf = new Configuration();
+    StoreFile storeFile = new StoreFile(new Path(directory, ReportSizeStats.FILE_NAME), conf);
+    Path lockPath = new Path(directory, ReportSizeStats.LOCK_FILE_NAME);
+    FileSystem fileSystem = lockPath.getFileSystem(conf);
+    Assert.assertTrue(storeFile.lock());
+    //test
+    fileSystem.delete(lockPath, false);
+    try (FSDataOutputStream outputStream = fileSystem.create(lockPath, false)) {
+      outputStream.write("other".getBytes(StandardCharsets.UTF_8));
+    }
+    storeFile.unlock();
+    //assert
+    Assert.assertTrue(fileSystem.exists(lockPath));
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.googleads.common;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ReportValueParserTest {
+
+  @Test
+  public void testParseLong() {
+    ReportValueParser parser = new ReportValueParser();
+    Assert.assertTrue(parser.parseLong("1230000"));
+    Assert.assertEquals(1230000L, parser.getLongValue());
+    Assert.assertTrue(parser.parseLong(" -1,234 "));
+    Assert.assertEquals(-1234L, parser.getLongValue());
+    Assert.assertFalse(parser.parseLong(" --"));
+    Assert.assertFalse(parser.parseLong(""));
+    Assert.assertFalse(parser.parseLong("12a"));
+    Assert.assertFalse(parser.parseLong("99999999999999999999"));
+  }
+
+  @Test
+  public void testParseDouble() {
+    ReportValueParser parser = new ReportValueParser();
+    Assert.assertTrue(parser.parseDouble("1.23%"));
+    Assert.assertEquals(1.23, parser.getDoubleValue(), 0);
+    Assert.assertTrue(parser.parseDouble("< 10%"));
+    Assert.assertEquals(10, parser.getDoubleValue(), 0);
+    Assert.assertTrue(parser.parseDouble("> 90.5%"));
+    Assert.assertEquals(90.5, parser.getDoubleValue(), 0);
+    Assert.assertTrue(parser.parseDouble("-0.1"));
+    Assert.assertEquals(-0.1, parser.getDoubleValue(), 0);
+    Assert.assertTrue(parser.parseDouble("12345678901234567890.123"));
+    Assert.assertEquals(12345678901234567890.123, parser.getDoubleValue(), 0);
+    Assert.assertFalse(parser.parseDouble(" --"));
+    Assert.assertFalse(parser.parseDouble("%"));
+    Assert.assertFalse(parser.parseDouble("1.2.3"));
+  }
+
+  @Test
+  public void testParseDate() {
+    ReportValueParser parser = new ReportValueParser();
+    Assert.assertTrue(parser.parseDate("2020-02-29"));
+    Assert.assertEquals(2020, parser.getYear());
+    Assert.assertEquals(2, parser.getMonth());
+    Assert.assertEquals(29, parser.getDay());
+    Assert.assertFalse(parser.parseDate("2019-02-29"));
+    Assert.assertFalse(parser.parseDate(" --"));
+    Assert.assertFalse(parser.parseDate("20190301"));
+  }
+}
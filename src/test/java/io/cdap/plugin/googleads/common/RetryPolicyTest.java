@@ -0,0 +1,109 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.googleads.common;
+
+import com.google.api.ads.adwords.axis.v201809.cm.ApiError;
+import com.google.api.ads.adwords.axis.v201809.cm.ApiException;
+import com.google.api.ads.adwords.axis.v201809.cm.RateExceededError;
+import com.google.api.ads.adwords.lib.utils.DetailedReportDownloadResponseException;
+import com.google.api.ads.adwords.lib.utils.ReportDownloadResponseException;
+import com.google.api.ads.adwords.lib.utils.ReportException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class RetryPolicyTest {
+
+  @Test
+  public void testClassify() {
+    Assert.assertEquals(RetryPolicy.ErrorType.TRANSIENT,
+                        RetryPolicy.classify(new ReportException("error", new IOException())));
+    Assert.assertEquals(RetryPolicy.ErrorType.TRANSIENT,
+                        RetryPolicy.classify(new ReportDownloadResponseException(503)));
+    Assert.assertEquals(RetryPolicy.ErrorType.PERMANENT,
+                        RetryPolicy.classify(new ReportDownloadResponseException(400)));
+    Assert.assertEquals(RetryPolicy.ErrorType.RATE_LIMITED, RetryPolicy.classify(
+      new DetailedReportDownloadResponseException(400, "RateExceededError.RATE_EXCEEDED")));
+    Assert.assertEquals(RetryPolicy.ErrorType.PERMANENT, RetryPolicy.classify(
+      new DetailedReportDownloadResponseException(400, "ReportDefinitionError.INVALID_FIELD_NAME_FOR_REPORT")));
+  }
+
+  @Test
+  public void testOnFailureBackoff() {
+    //setup mocks
+    RetryPolicy retryPolicy = new RetryPolicy(100, 1000, 10000, 4);
+    RetryPolicy.Attempts attempts = retryPolicy.start();
+    ReportDownloadResponseException error = new ReportDownloadResponseException(500);
+
+    //test and assert
+    for (int retry = 0; retry < 3; retry++) {
+      long delay = attempts.onFailure(error);
+      Assert.assertTrue(delay >= 0);
+      Assert.assertTrue(delay <= Math.min(1000, 100 << retry));
+    }
+    Assert.assertEquals(-1, attempts.onFailure(error));
+    Assert.assertEquals(3, attempts.getRetries());
+    Assert.assertSame(error, attempts.getLastError());
+  }
+
+  @Test
+  public void testOnFailureRetryAfter() {
+    //setup mocks
+    RetryPolicy retryPolicy = new RetryPolicy(100, 1000, 60000, 4);
+    RateExceededError rateExceededError = new RateExceededError();
+    rateExceededError.setRetryAfterSeconds(20);
+    ApiException error = new ApiException();
+    error.setErrors(new ApiError[]{rateExceededError});
+
+    //test
+    long delay = retryPolicy.start().onFailure(error);
+
+    //assert
+    Assert.assertTrue(delay >= 20000);
+    Assert.assertTrue(delay <= 20100);
+  }
+
+  @Test
+  public void testOnFailureRateLimitWithoutRetryAfter() {
+    //setup mocks
+    RetryPolicy retryPolicy = new RetryPolicy(100, 1000, 60000, 4, 5000);
+    ApiException error = new ApiException();
+    error.setErrors(new ApiError[]{new RateExceededError()});
+
+    //test
+    long delay = retryPolicy.start().onFailure(error);
+
+    //assert
+    Assert.assertEquals(RetryPolicy.ErrorType.RATE_LIMITED, RetryPolicy.classify(error));
+    Assert.assertEquals(-1, RetryPolicy.getRetryAfterMillis(error));
+    Assert.assertTrue(delay >= 5000);
+    Assert.assertTrue(delay <= 5100);
+  }
+
+  @Test
+  public void testOnFailureDeadline() {
+    //setup mocks
+    RetryPolicy retryPolicy = new RetryPolicy(100, 1000, 10000, 4);
+    RetryPolicy.Attempts attempts = retryPolicy.start();
+
+    //test and assert
+    Assert.assertEquals(-1, attempts.onFailure(new ReportDownloadResponseException(500),
+                                               System.currentTimeMillis() + 10000));
+    Assert.assertEquals(-1, attempts.onFailure(new ReportDownloadResponseException(401)));
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.googleads.common;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocalFileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+public class WatermarkStoreTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testGetStartDate() {
+    Assert.assertEquals("20190101", WatermarkStore.getStartDate(null, "20190101", "20190131", 3));
+    Assert.assertEquals("20190118", WatermarkStore.getStartDate("20190120", "20190101", "20190131", 3));
+    Assert.assertEquals("20190121", WatermarkStore.getStartDate("20190120", "20190101", "20190131", 0));
+    Assert.assertEquals("20190110", WatermarkStore.getStartDate("20181231", "20190110", "20190131", 3));
+    Assert.assertNull(WatermarkStore.getStartDate("20190131", "20190101", "20190131", 0));
+  }
+
+  @Test
+  public void testUpdate() throws Exception {
+    //setup mocks
+    String directory = temporaryFolder.newFolder().getAbsolutePath();
+    WatermarkStore store = new WatermarkStore(directory, new Configuration());
+
+    //test
+    store.update(Collections.singletonList("ACCOUNT_PERFORMANCE_REPORT"), Arrays.asList("1", "2"), "20190110");
+    store.update(Collections.singletonList("ACCOUNT_PERFORMANCE_REPORT"), Collections.singletonList("2"),
+                 "20190120");
+    Map<String, String> watermarks = new WatermarkStore(directory, new Configuration()).load();
+
+    //assert
+    Assert.assertEquals(2, watermarks.size());
+    Assert.assertEquals("20190110", watermarks.get(WatermarkStore.getKey("ACCOUNT_PERFORMANCE_REPORT", "1")));
+    Assert.assertEquals("20190120", watermarks.get(WatermarkStore.getKey("ACCOUNT_PERFORMANCE_REPORT", "2")));
+  }
+
+  @Test
+  public void testFailedRenameKeepsWatermarks() throws Exception {
+    //setup mocks
+    String directory = temporaryFolder.newFolder().getAbsolutePath();
+    new WatermarkStore(directory, new Configuration())
+      .update(Collections.singletonList("ACCOUNT_PERFORMANCE_REPORT"), Arrays.asList("1", "2"), "20190110");
+    Configuration failingConf = new Configuration();
+    failingConf.setClass("fs.file.impl", FailingRenameFileSystem.class, FileSystem.class);
+    failingConf.setBoolean("fs.file.impl.disable.cache", true);
+
+    //test
+    try {
+      new WatermarkStore(directory, failingConf)
+        .update(Collections.singletonList("ACCOUNT_PERFORMANCE_REPORT"), Collections.singletonList("2"), "20190120");
+      Assert.fail("Expected the rename to fail");
+    } catch (IOException e) {
+      // expected
+    }
+    Map<String, String> watermarks = new WatermarkStore(directory, new Configuration()).load();
+
+    //assert
+    Assert.assertEquals(2, watermarks.size());
+    Assert.assertEquals("20190110", watermarks.get(WatermarkStore.getKey("ACCOUNT_PERFORMANCE_REPORT", "2")));
+    Assert.assertTrue(new File(directory, WatermarkStore.FILE_NAME).exists());
+    Assert.assertFalse(new File(directory, StoreFile.getLockName(WatermarkStore.FILE_NAME)).exists());
+  }
+
+  @Test
+  public void testLoadFallsBackToBackup() throws Exception {
+    //setup mocks
+    String directory = temporaryFolder.newFolder().getAbsolutePath();
+    WatermarkStore store = new WatermarkStore(directory, new Configuration());
+    store.update(Collections.singletonList("ACCOUNT_PERFORMANCE_REPORT"), Collections.singletonList("1"), "20190110");
+
+    //test
+    // a driver which died after moving the file aside leaves only the backup
+    Assert.assertTrue(new File(directory, WatermarkStore.FILE_NAME)
+                        .renameTo(new File(directory, StoreFile.getBackupName(WatermarkStore.FILE_NAME))));
+
+    //assert
+    Assert.assertEquals("20190110", store.load().get(WatermarkStore.getKey("ACCOUNT_PERFORMANCE_REPORT", "1")));
+  }
+
+  /**
+   * Local file system which fails to move new content into place.
+   */
+  public static class FailingRenameFileSystem extends LocalFileSystem {
+    @Override
+    public boolean rename(Path src, Path dst) throws IOException {
+      if (src.getName().endsWith(".tmp")) {
+        return false;
+      }
+      return super.rename(src, dst);
+    }
+  }
+}
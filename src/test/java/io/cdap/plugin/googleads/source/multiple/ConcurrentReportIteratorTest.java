@@ -0,0 +1,153 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.googleads.source.multiple;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class ConcurrentReportIteratorTest {
+
+  private static final Schema SCHEMA = Schema.recordOf(
+    "test",
+    Schema.Field.of("report_name", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("row", Schema.of(Schema.Type.INT)));
+
+  @Test
+  public void testReportsAreEmittedInTheOrderTheyAreRead() throws Exception {
+    //setup mocks
+    CountDownLatch fastReportRead = new CountDownLatch(1);
+    ConcurrentReportIterator.ReportReader slowReport = sink -> {
+      // the slow report is only generated once the fast report has been emitted
+      Assert.assertTrue(fastReportRead.await(10, TimeUnit.SECONDS));
+      sink.add(record("slow", 0));
+    };
+    ConcurrentReportIterator.ReportReader fastReport = sink -> {
+      sink.add(record("fast", 0));
+      sink.add(record("fast", 1));
+    };
+    List<Integer> reportsRead = new ArrayList<>();
+    //test
+    List<String> records = new ArrayList<>();
+    try (ConcurrentReportIterator iterator = new ConcurrentReportIterator(
+      Arrays.asList(slowReport, fastReport), 2, 1, reportIndex -> {
+        reportsRead.add(reportIndex);
+        fastReportRead.countDown();
+      })) {
+      while (iterator.hasNext()) {
+        StructuredRecord record = iterator.next();
+        records.add(record.get("report_name") + "-" + record.get("row"));
+      }
+    }
+    //assert
+    Assert.assertEquals(Arrays.asList("fast-0", "fast-1", "slow-0"), records);
+    Assert.assertEquals(Arrays.asList(1, 0), reportsRead);
+  }
+
+  @Test
+  public void testRecordsOfAReportKeepTheirOrder() throws Exception {
+    //setup mocks
+    List<ConcurrentReportIterator.ReportReader> reports = new ArrayList<>();
+    for (int report = 0; report < 5; report++) {
+      String reportName = "report" + report;
+      reports.add(sink -> {
+        for (int row = 0; row < 100; row++) {
+          sink.add(record(reportName, row));
+        }
+      });
+    }
+    //test
+    int[] nextRows = new int[5];
+    int count = 0;
+    try (ConcurrentReportIterator iterator = new ConcurrentReportIterator(reports, 3, 4, reportIndex -> { })) {
+      while (iterator.hasNext()) {
+        StructuredRecord record = iterator.next();
+        int report = Integer.parseInt(((String) record.get("report_name")).substring("report".length()));
+        //assert
+        Assert.assertEquals(nextRows[report]++, (int) record.get("row"));
+        count++;
+      }
+    }
+    Assert.assertEquals(500, count);
+  }
+
+  @Test
+  public void testFailedReportFailsTheIterator() {
+    //setup mocks
+    ConcurrentReportIterator.ReportReader failingReport = sink -> {
+      throw new IllegalStateException("report failed");
+    };
+    //test
+    try (ConcurrentReportIterator iterator = new ConcurrentReportIterator(
+      Arrays.asList(failingReport), 1, 1, reportIndex -> { })) {
+      iterator.hasNext();
+      Assert.fail("Expected the report failure");
+    } catch (RuntimeException e) {
+      //assert
+      Assert.assertEquals("report failed", e.getCause().getMessage());
+    }
+  }
+
+  @Test
+  public void testCloseWaitsForReaders() throws Exception {
+    //setup mocks
+    CountDownLatch readerStarted = new CountDownLatch(1);
+    AtomicBoolean readerFinished = new AtomicBoolean();
+    ConcurrentReportIterator.ReportReader blockedReport = sink -> {
+      try {
+        readerStarted.countDown();
+        // the consumer never takes more than the first record
+        for (int row = 0; ; row++) {
+          sink.add(record("blocked", row));
+        }
+      } finally {
+        readerFinished.set(true);
+      }
+    };
+    ConcurrentReportIterator iterator = new ConcurrentReportIterator(
+      Arrays.asList(blockedReport), 1, 1, reportIndex -> { });
+    Assert.assertTrue(iterator.hasNext());
+    Assert.assertTrue(readerStarted.await(10, TimeUnit.SECONDS));
+    //test
+    iterator.close();
+    //assert
+    Assert.assertTrue(readerFinished.get());
+    Assert.assertTrue(iterator.isTerminated());
+  }
+
+  @Test
+  public void testNoReports() {
+    //test
+    try (ConcurrentReportIterator iterator = new ConcurrentReportIterator(
+      new ArrayList<>(), 2, 1, reportIndex -> { })) {
+      //assert
+      Assert.assertFalse(iterator.hasNext());
+    }
+  }
+
+  private static StructuredRecord record(String reportName, int row) {
+    return StructuredRecord.builder(SCHEMA).set("report_name", reportName).set("row", row).build();
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.googleads.source.multiple;
+
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.googleads.common.GoogleAdsReportSplit;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobID;
+import org.apache.hadoop.mapreduce.task.JobContextImpl;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+public class GoogleAdsMultiReportInputFormatTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testGetSplitsOfPlannedRun() throws Exception {
+    //setup mocks
+    MultiReportBatchSourceGoogleAdsConfig config = new MultiReportBatchSourceGoogleAdsConfig("test");
+    config.clientCustomerId = "111-111-1111, 222-222-2222, 333-333-3333";
+    config.includeReports = "Budget Performance Report: Budget table";
+    config.watermarkDirectory = temporaryFolder.newFolder().getPath();
+    config.startDate = "20190101";
+    config.endDate = "TODAY";
+    Schema schema = Schema.recordOf("report", Schema.Field.of("report", Schema.of(Schema.Type.STRING)));
+    Configuration conf = new Configuration();
+    // the run was planned before midnight, for two of the customers
+    Map<String, String> providerConf = new GoogleAdsMultiReportInputFormatProvider(
+      config, schema, "20190131", Arrays.asList("111-111-1111", "222-222-2222"), "default/pipeline/source/0")
+      .getInputFormatConfiguration();
+    providerConf.forEach(conf::set);
+    //test
+    List<InputSplit> splits = new GoogleAdsMultiReportInputFormat().getSplits(new JobContextImpl(conf, new JobID()));
+    //assert
+    Assert.assertEquals(2, splits.size());
+    for (InputSplit inputSplit : splits) {
+      GoogleAdsReportSplit split = (GoogleAdsReportSplit) inputSplit;
+      Assert.assertEquals("20190101", split.getStartDate());
+      Assert.assertEquals("20190131", split.getEndDate());
+    }
+    Assert.assertEquals("111-111-1111", ((GoogleAdsReportSplit) splits.get(0)).getCustomerId());
+    Assert.assertEquals("222-222-2222", ((GoogleAdsReportSplit) splits.get(1)).getCustomerId());
+  }
+
+  @Test
+  public void testPackSplits() throws Exception {
+    //setup mocks
+    List<GoogleAdsReportSplit> reportSplits = new ArrayList<>();
+    for (int report = 0; report < 5; report++) {
+      reportSplits.add(new GoogleAdsReportSplit("report" + report));
+    }
+    //test
+    List<InputSplit> inputSplits = GoogleAdsMultiReportInputFormat.packSplits(reportSplits, 2);
+    //assert
+    Assert.assertEquals(3, inputSplits.size());
+    Assert.assertEquals(reportSplits.subList(0, 2), ((GoogleAdsPackedReportSplit) inputSplits.get(0)).getSplits());
+    Assert.assertEquals(reportSplits.subList(4, 5), ((GoogleAdsPackedReportSplit) inputSplits.get(2)).getSplits());
+  }
+
+  @Test
+  public void testSplitsAreNotPackedByDefault() {
+    //setup mocks
+    List<GoogleAdsReportSplit> reportSplits = new ArrayList<>();
+    reportSplits.add(new GoogleAdsReportSplit("report"));
+    //test
+    List<InputSplit> inputSplits = GoogleAdsMultiReportInputFormat.packSplits(reportSplits, 1);
+    //assert
+    Assert.assertEquals(new ArrayList<InputSplit>(reportSplits), inputSplits);
+  }
+
+  @Test
+  public void testPackedSplitSerialization() throws Exception {
+    //setup mocks
+    List<GoogleAdsReportSplit> reportSplits = new ArrayList<>();
+    reportSplits.add(new GoogleAdsReportSplit("report0", "123-456-7890", "20190101", "20190131"));
+    reportSplits.add(new GoogleAdsReportSplit("report1"));
+    GoogleAdsPackedReportSplit split = new GoogleAdsPackedReportSplit(reportSplits);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    split.write(new DataOutputStream(bytes));
+    //test
+    GoogleAdsPackedReportSplit readSplit = new GoogleAdsPackedReportSplit();
+    readSplit.readFields(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    //assert
+    Assert.assertEquals(split.toString(), readSplit.toString());
+    Assert.assertEquals(2, readSplit.getSplits().size());
+  }
+}
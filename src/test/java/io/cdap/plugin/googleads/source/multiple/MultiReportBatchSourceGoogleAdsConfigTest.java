@@ -0,0 +1,126 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.googleads.source.multiple;
+
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.googleads.common.ReportPresetHelper;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+public class MultiReportBatchSourceGoogleAdsConfigTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testGetReportNamesWithoutSelection() throws IOException {
+    //setup mocks
+    MultiReportBatchSourceGoogleAdsConfig config = new MultiReportBatchSourceGoogleAdsConfig("test");
+    //test
+    List<String> reportNames = config.getReportNames();
+    //assert
+    Assert.assertEquals(new ArrayList<>(new ReportPresetHelper().getReportPresets().keySet()), reportNames);
+  }
+
+  @Test
+  public void testGetReportNames() throws IOException {
+    //setup mocks
+    MultiReportBatchSourceGoogleAdsConfig config = new MultiReportBatchSourceGoogleAdsConfig("test");
+    config.includeReports = "Campaign Performance Report: .*, Budget Performance Report: Budget table";
+    config.excludeReports = ".*BasicStats table";
+    //test
+    List<String> reportNames = config.getReportNames();
+    //assert
+    Assert.assertTrue(reportNames.containsAll(Arrays.asList("Campaign Performance Report: CampaignStats table",
+                                                            "Campaign Performance Report: Campaign table",
+                                                            "Budget Performance Report: Budget table")));
+    Assert.assertFalse(reportNames.contains("Campaign Performance Report: CampaignBasicStats table"));
+    for (String reportName : reportNames) {
+      Assert.assertTrue(reportName, reportName.startsWith("Campaign Performance Report: ")
+        || reportName.equals("Budget Performance Report: Budget table"));
+    }
+  }
+
+  @Test
+  public void testGetReportNamesWithRegexCharacters() throws IOException {
+    //setup mocks
+    File presetsFile = temporaryFolder.newFile("presets.json");
+    Files.write(presetsFile.toPath(), (
+      "{\"Clicks (all)\": {\"type\": \"CAMPAIGN_PERFORMANCE_REPORT\", \"fields\": [\"Clicks\"]}, " +
+        "\"Clicks all\": {\"type\": \"CAMPAIGN_PERFORMANCE_REPORT\", \"fields\": [\"Clicks\"]}, " +
+        "\"Cost+ (micros\": {\"type\": \"CAMPAIGN_PERFORMANCE_REPORT\", \"fields\": [\"Cost\"]}}")
+      .getBytes(StandardCharsets.UTF_8));
+    MultiReportBatchSourceGoogleAdsConfig config = new MultiReportBatchSourceGoogleAdsConfig("test");
+    config.presetsFile = presetsFile.getAbsolutePath();
+    config.includeReports = "Clicks (all), Cost+ (micros, Campaign Performance Report: .*";
+    config.excludeReports = "Campaign Performance Report: .*";
+    //test
+    List<String> reportNames = config.getReportNames();
+    //assert
+    Assert.assertEquals(Arrays.asList("Clicks (all)", "Cost+ (micros"), reportNames);
+  }
+
+  @Test
+  public void testGetSchemaInBytesOutputMode() throws IOException {
+    //setup mocks
+    MultiReportBatchSourceGoogleAdsConfig config = new MultiReportBatchSourceGoogleAdsConfig("test");
+    config.clientCustomerId = "123-456-7890";
+    config.outputMode = "bytes";
+    //test
+    Schema schema = config.getSchema();
+    //assert
+    Assert.assertEquals(Schema.nullableOf(Schema.of(Schema.Type.BYTES)), schema.getField("report").getSchema());
+    Assert.assertNotNull(schema.getField("report_name"));
+  }
+
+  @Test
+  public void testGetSchemaInRowsOutputMode() throws IOException {
+    //setup mocks
+    MultiReportBatchSourceGoogleAdsConfig config = new MultiReportBatchSourceGoogleAdsConfig("test");
+    config.clientCustomerId = "123-456-7890";
+    config.outputMode = "ROWS";
+    config.includeReports = "Campaign Performance Report: .*, Budget Performance Report: Budget table";
+    //test
+    Schema schema = config.getSchema();
+    //assert
+    ReportPresetHelper presetHelper = new ReportPresetHelper();
+    int fieldCount = 0;
+    for (String reportName : config.getReportNames()) {
+      for (String field : presetHelper.getReportPreset(reportName).getFields()) {
+        Assert.assertEquals(field, Schema.nullableOf(Schema.of(Schema.Type.STRING)),
+                            schema.getField(field).getSchema());
+      }
+      fieldCount += presetHelper.getReportPreset(reportName).getFields().size();
+    }
+    Assert.assertNotNull(schema.getField(MultiReportBatchSourceGoogleAdsConfig.REPORT_NAME_FIELD));
+    Assert.assertNull(schema.getField("report"));
+    // fields shared by several presets appear once
+    Assert.assertTrue(schema.getFields().size() <= fieldCount + 1);
+    Assert.assertEquals(schema.getFields().size(), new HashSet<>(schema.getFields()).size());
+  }
+}
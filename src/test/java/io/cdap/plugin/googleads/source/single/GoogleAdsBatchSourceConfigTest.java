@@ -16,6 +16,7 @@
 package io.cdap.plugin.googleads.source.single;
 
 import com.google.api.ads.adwords.axis.v201809.cm.ReportDefinitionField;
+import com.google.api.ads.adwords.lib.jaxb.v201809.ReportDefinitionReportType;
 import com.google.api.ads.common.lib.exception.OAuthException;
 import com.google.api.ads.common.lib.exception.ValidationException;
 import io.cdap.cdap.api.data.schema.Schema;
@@ -113,4 +114,44 @@ public class GoogleAdsBatchSourceConfigTest {
       Schema.Field.of("test2", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
     Assert.assertTrue(schema.isCompatible(expectedSchema));
   }
+
+  @Test
+  public void testValidateAwqlQuery() {
+    //setup mocks
+    BatchSourceGoogleAdsConfig config = new BatchSourceGoogleAdsConfig("test");
+    config.awqlQuery = "SELECT CampaignId, Impressions FROM CAMPAIGN_PERFORMANCE_REPORT WHERE Impressions > 0";
+    MockFailureCollector failureCollector = new MockFailureCollector();
+    //test
+    config.validateAwqlQuery(failureCollector);
+    //assert
+    Assert.assertTrue(failureCollector.getValidationFailures().isEmpty());
+
+    //setup mocks failure
+    config.awqlQuery = "SELECT CampaignId FROM CAMPAIGN_PERFORMANCE_REPORT DURING LAST_7_DAYS";
+    config.filters = "Impressions > 0";
+    //test
+    config.validateAwqlQuery(failureCollector);
+    //assert
+    Assert.assertEquals(2, failureCollector.getValidationFailures().size());
+    Assert.assertEquals("awqlQuery must not have a DURING clause",
+                        failureCollector.getValidationFailures().get(0).getMessage());
+    Assert.assertEquals("filters can not be combined with awqlQuery",
+                        failureCollector.getValidationFailures().get(1).getMessage());
+  }
+
+  @Test
+  public void testGetSchemaOfAwqlQuery() throws IOException {
+    //setup mocks
+    BatchSourceGoogleAdsConfig config = new BatchSourceGoogleAdsConfig("test");
+    config.reportType = "UNKNOWN";
+    config.awqlQuery = "SELECT test1, test2 FROM CAMPAIGN_PERFORMANCE_REPORT";
+    //test
+    Schema schema = config.getSchema();
+    //assert
+    Schema expectedSchema = Schema.recordOf("TestSchema",
+      Schema.Field.of("test1", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+      Schema.Field.of("test2", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+    Assert.assertTrue(schema.isCompatible(expectedSchema));
+    Assert.assertEquals(ReportDefinitionReportType.CAMPAIGN_PERFORMANCE_REPORT, config.getReportType());
+  }
 }
@@ -0,0 +1,133 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.googleads.source.single;
+
+import com.google.api.ads.adwords.lib.jaxb.v201809.DownloadFormat;
+import io.cdap.plugin.googleads.common.GoogleAdsReportSplit;
+import io.cdap.plugin.googleads.common.ReportSizeStats;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class GoogleAdsInputFormatTest {
+
+  @Test
+  public void testGetDateRangeSplits() {
+    //test
+    List<InputSplit> splits = GoogleAdsInputFormat.getDateRangeSplits("123", LocalDate.of(2019, 3, 1),
+                                                                      LocalDate.of(2019, 3, 17),
+                                                                      7, Integer.MAX_VALUE);
+    //assert
+    Assert.assertEquals(3, splits.size());
+    assertSplit("20190301", "20190307", splits.get(0));
+    assertSplit("20190308", "20190314", splits.get(1));
+    assertSplit("20190315", "20190317", splits.get(2));
+  }
+
+  @Test
+  public void testGetDateRangeSplitsLimited() {
+    //test
+    List<InputSplit> splits = GoogleAdsInputFormat.getDateRangeSplits("123", LocalDate.of(2019, 3, 1),
+                                                                      LocalDate.of(2019, 3, 10),
+                                                                      1, 3);
+    //assert
+    Assert.assertEquals(3, splits.size());
+    assertSplit("20190301", "20190304", splits.get(0));
+    assertSplit("20190305", "20190308", splits.get(1));
+    assertSplit("20190309", "20190310", splits.get(2));
+  }
+
+  @Test
+  public void testAllocateSplits() {
+    //test
+    int[] splits = GoogleAdsInputFormat.allocateSplits(new int[] {30, 2, 30, 30}, 10);
+    int[] unlimitedSplits = GoogleAdsInputFormat.allocateSplits(new int[] {30, 2}, Integer.MAX_VALUE);
+    int[] exceededSplits = GoogleAdsInputFormat.allocateSplits(new int[] {5, 5, 5}, 2);
+    //assert
+    Assert.assertArrayEquals(new int[] {2, 2, 3, 3}, splits);
+    Assert.assertArrayEquals(new int[] {30, 2}, unlimitedSplits);
+    Assert.assertArrayEquals(new int[] {1, 1, 1}, exceededSplits);
+  }
+
+  @Test
+  public void testGetBalancedSplits() throws Exception {
+    //setup mocks
+    long[] dayBytes = {10, 10, 10, 10, 200, 10, 10, 10, 10, 10, 10, 10, 10, 10};
+    //test
+    List<InputSplit> splits = GoogleAdsInputFormat.getBalancedSplits("123", LocalDate.of(2019, 11, 26), dayBytes,
+                                                                     4);
+    //assert
+    Assert.assertEquals(4, splits.size());
+    assertSplit("20191126", "20191129", splits.get(0));
+    assertSplit("20191130", "20191130", splits.get(1));
+    assertSplit("20191201", "20191205", splits.get(2));
+    assertSplit("20191206", "20191209", splits.get(3));
+    Assert.assertEquals(200, splits.get(1).getLength());
+  }
+
+  @Test
+  public void testGetBalancedSplitsOfAlternatingDays() throws Exception {
+    //setup mocks
+    long[] dayBytes = {100, 1, 100, 1, 100, 1, 100};
+    //test
+    List<InputSplit> splits = GoogleAdsInputFormat.getBalancedSplits("123", LocalDate.of(2019, 3, 1), dayBytes, 3);
+    //assert
+    Assert.assertEquals(3, splits.size());
+    assertSplit("20190301", "20190302", splits.get(0));
+    assertSplit("20190303", "20190305", splits.get(1));
+    assertSplit("20190306", "20190307", splits.get(2));
+    Assert.assertEquals(101, splits.get(0).getLength());
+    Assert.assertEquals(201, splits.get(1).getLength());
+    Assert.assertEquals(101, splits.get(2).getLength());
+  }
+
+  @Test
+  public void testGetExpectedDayBytes() {
+    //setup mocks
+    Map<String, ReportSizeStats.DaySize> sizes = new HashMap<>();
+    sizes.put(ReportSizeStats.getKey("AD_PERFORMANCE_REPORT", "123", DownloadFormat.GZIPPED_CSV,
+                                     LocalDate.of(2019, 3, 1)),
+              new ReportSizeStats.DaySize(10, 100, LocalDate.now()));
+    sizes.put(ReportSizeStats.getKey("AD_PERFORMANCE_REPORT", "123", DownloadFormat.GZIPPED_CSV,
+                                     LocalDate.of(2019, 3, 3)),
+              new ReportSizeStats.DaySize(30, 300, LocalDate.now()));
+    //test
+    long[] dayBytes = GoogleAdsInputFormat.getExpectedDayBytes(sizes, "AD_PERFORMANCE_REPORT", "123",
+                                                               DownloadFormat.GZIPPED_CSV, LocalDate.of(2019, 3, 1),
+                                                               LocalDate.of(2019, 3, 4));
+    //assert
+    Assert.assertArrayEquals(new long[]{100, 200, 300, 200}, dayBytes);
+    Assert.assertNull(GoogleAdsInputFormat.getExpectedDayBytes(sizes, "AD_PERFORMANCE_REPORT", "456",
+                                                               DownloadFormat.GZIPPED_CSV, LocalDate.of(2019, 3, 1),
+                                                               LocalDate.of(2019, 3, 4)));
+    Assert.assertNull(GoogleAdsInputFormat.getExpectedDayBytes(sizes, "AD_PERFORMANCE_REPORT", "123",
+                                                               DownloadFormat.CSV, LocalDate.of(2019, 3, 1),
+                                                               LocalDate.of(2019, 3, 4)));
+  }
+
+  private static void assertSplit(String startDate, String endDate, InputSplit inputSplit) {
+    GoogleAdsReportSplit split = (GoogleAdsReportSplit) inputSplit;
+    Assert.assertEquals("123", split.getCustomerId());
+    Assert.assertEquals(startDate, split.getStartDate());
+    Assert.assertEquals(endDate, split.getEndDate());
+  }
+}